@@ -0,0 +1,126 @@
+package com.insightlens.core.repository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of reading one page of segments at increasing depth into a 100k-segment document, with
+ * keyset paging (what {@link DocumentSegmentReader} does) against LIMIT/OFFSET. Keyset pages should
+ * cost the same at every depth; offset pages grow with it. Needs a PostgreSQL database, by default
+ * the one from application.properties (override with BENCHMARK_JDBC_URL, BENCHMARK_JDBC_USER and
+ * BENCHMARK_JDBC_PASSWORD). Rows go to a temporary table with the same index as document_segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SegmentPagingBenchmark {
+
+    private static final String DOCUMENT_ID = "benchmark-document";
+    private static final int SEGMENT_COUNT = 100_000;
+    private static final int PAGE_SIZE = 100;
+
+    private static final String KEYSET_PAGE_SQL = "SELECT id, segment_order, segment_text FROM benchmark_segments "
+            + "WHERE document_id = ? AND segment_order > ? ORDER BY segment_order LIMIT " + PAGE_SIZE;
+
+    private static final String OFFSET_PAGE_SQL = "SELECT id, segment_order, segment_text FROM benchmark_segments "
+            + "WHERE document_id = ? ORDER BY segment_order LIMIT " + PAGE_SIZE + " OFFSET ?";
+
+    @Param({"0", "10000", "50000", "99900"})
+    private int depth;
+
+    private Connection connection;
+    private PreparedStatement keysetPage;
+    private PreparedStatement offsetPage;
+
+    @Setup(Level.Trial)
+    public void createSegments() throws SQLException {
+        connection = DriverManager.getConnection(
+                env("BENCHMARK_JDBC_URL", "jdbc:postgresql://localhost:5433/insightlens_db?reWriteBatchedInserts=true"),
+                env("BENCHMARK_JDBC_USER", "insightlens_user"),
+                env("BENCHMARK_JDBC_PASSWORD", "insightlens"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMPORARY TABLE benchmark_segments (id varchar(255) PRIMARY KEY, "
+                    + "document_id varchar(255) NOT NULL, segment_order int NOT NULL, segment_text text NOT NULL)");
+            statement.execute("CREATE INDEX ON benchmark_segments (document_id, segment_order)");
+        }
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO benchmark_segments (id, document_id, segment_order, segment_text) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < SEGMENT_COUNT; i++) {
+                insert.setString(1, "segment-" + i);
+                insert.setString(2, DOCUMENT_ID);
+                insert.setInt(3, i);
+                insert.setString(4, "Segment " + i + " of the benchmark document, about as long as a short paragraph.");
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE benchmark_segments");
+        }
+        keysetPage = connection.prepareStatement(KEYSET_PAGE_SQL);
+        offsetPage = connection.prepareStatement(OFFSET_PAGE_SQL);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int keyset() throws SQLException {
+        keysetPage.setString(1, DOCUMENT_ID);
+        // The last segment_order of the previous page
+        keysetPage.setInt(2, depth - 1);
+        return readPage(keysetPage);
+    }
+
+    @Benchmark
+    public int offset() throws SQLException {
+        offsetPage.setString(1, DOCUMENT_ID);
+        offsetPage.setInt(2, depth);
+        return readPage(offsetPage);
+    }
+
+    private static int readPage(PreparedStatement statement) throws SQLException {
+        int textLength = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                textLength += resultSet.getString(3).length();
+            }
+        }
+        return textLength;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+}
@@ -0,0 +1,159 @@
+package com.insightlens.core.repository;
+
+import com.insightlens.core.model.Document;
+import com.insightlens.core.model.DocumentSegment;
+import com.insightlens.core.model.DocumentStatus;
+import com.insightlens.core.model.SegmentBody;
+import com.insightlens.core.service.PipelineMetrics;
+import com.insightlens.core.service.ResourcePermits;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to persist one 50k-segment document: the original path (Spring Data {@code save()} per
+ * segment, which merges, i.e. SELECTs then INSERTs, every row with an assigned id, all in one
+ * transaction and without JDBC batching) against {@link DocumentSegmentBatchWriter} (JDBC batches
+ * of {@code segment.writer.batch-size}, one transaction each). Segments per second is 50,000
+ * divided by the score. Needs a PostgreSQL database, by default the one from
+ * application.properties (override with BENCHMARK_JDBC_URL, BENCHMARK_JDBC_USER and
+ * BENCHMARK_JDBC_PASSWORD); the schema is created or updated as the application would, and the
+ * benchmark document is deleted again afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SegmentWriteBenchmark {
+
+    private static final String DOCUMENT_ID = "benchmark-write-document";
+    private static final int SEGMENT_COUNT = 50_000;
+    private static final int BATCH_SIZE = 500;
+
+    private SessionFactory sessionFactory;
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private DocumentSegmentBatchWriter batchWriter;
+    private List<DocumentSegment> segments;
+
+    @Setup(Level.Trial)
+    public void createDocument() {
+        String url = env("BENCHMARK_JDBC_URL", "jdbc:postgresql://localhost:5433/insightlens_db?reWriteBatchedInserts=true");
+        String user = env("BENCHMARK_JDBC_USER", "insightlens_user");
+        String password = env("BENCHMARK_JDBC_PASSWORD", "insightlens");
+
+        // Hibernate settings of the original configuration: no JDBC batching, no insert ordering.
+        // Column names as Spring Boot derives them
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Document.class)
+                .addAnnotatedClass(DocumentSegment.class)
+                .addAnnotatedClass(SegmentBody.class)
+                .setProperty("hibernate.connection.url", url)
+                .setProperty("hibernate.connection.username", user)
+                .setProperty("hibernate.connection.password", password)
+                .setPhysicalNamingStrategy(new CamelCaseToUnderscoresNamingStrategy())
+                .setProperty("hibernate.hbm2ddl.auto", "update")
+                .buildSessionFactory();
+
+        // One reused connection, as from the application's pool
+        dataSource = new SingleConnectionDataSource(url, user, password, true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        batchWriter = new DocumentSegmentBatchWriter(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                new ResourcePermits(1, 1),
+                event -> { },
+                new SegmentBodyStore(jdbcTemplate, sessionFactory),
+                new PipelineMetrics(ObservationRegistry.NOOP, meterRegistry));
+
+        deleteDocument();
+        sessionFactory.inTransaction(session -> session.persist(Document.builder()
+                .id(DOCUMENT_ID)
+                .originalFileName("benchmark.txt")
+                .storedFilePath("/dev/null")
+                .fileContentType("text/plain")
+                .status(DocumentStatus.EMBEDDING_COMPLETED)
+                .build()));
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareSegments() {
+        jdbcTemplate.update("DELETE FROM document_segments WHERE document_id = ?", DOCUMENT_ID);
+        segments = new ArrayList<>(SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments.add(DocumentSegment.builder()
+                    .id(UUID.randomUUID().toString())
+                    .segmentOrder(i)
+                    .segmentText("Segment " + i + " of the benchmark document. It is about as long as a short "
+                            + "paragraph cut by the default segmenter, with a few sentences of ordinary prose "
+                            + "so that row width matches what the pipeline writes for typical documents.")
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        deleteDocument();
+        dataSource.destroy();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public int jpaSavePerSegment() {
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            Document document = session.getReference(Document.class, DOCUMENT_ID);
+            for (DocumentSegment segment : segments) {
+                segment.setDocument(document);
+                session.merge(segment);
+            }
+            transaction.commit();
+        }
+        return segments.size();
+    }
+
+    @Benchmark
+    public int batchWriter() {
+        for (int from = 0; from < segments.size(); from += BATCH_SIZE) {
+            batchWriter.writeBatch(DOCUMENT_ID, segments.subList(from, Math.min(from + BATCH_SIZE, segments.size())));
+        }
+        return segments.size();
+    }
+
+    private void deleteDocument() {
+        jdbcTemplate.update("DELETE FROM document_segments WHERE document_id = ?", DOCUMENT_ID);
+        jdbcTemplate.update("DELETE FROM documents WHERE id = ?", DOCUMENT_ID);
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+}
@@ -0,0 +1,124 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.config.TikaProperties;
+import com.insightlens.core.model.Document;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.parser.ParseContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall time to extract a generated 400-page PDF into a counting sink: one sequential Tika parse
+ * against {@link ParallelPdfExtractor} with 50-page ranges, at one and at four threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelPdfExtractorBenchmark {
+
+    private static final int PAGES = 400;
+    private static final int LINES_PER_PAGE = 60;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private Path pdf;
+    private TikaParserRegistry registry;
+    private ParallelPdfExtractor extractor;
+    private Document document;
+
+    @Setup
+    public void setUp() throws Exception {
+        pdf = Files.createTempFile("insightlens-benchmark-", ".pdf");
+        writePdf(pdf);
+        registry = new TikaParserRegistry(new TikaProperties());
+        extractor = new ParallelPdfExtractor(registry, parallelism);
+        ReflectionTestUtils.setField(extractor, "pagesPerRange", 50);
+        document = Document.builder()
+                .id("benchmark")
+                .originalFileName("report.pdf")
+                .fileContentType("application/pdf")
+                .fileSize(Files.size(pdf))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        extractor.shutdown();
+        registry.close();
+        Files.deleteIfExists(pdf);
+    }
+
+    @Benchmark
+    public long sequential() throws Exception {
+        CountingSink sink = new CountingSink();
+        try (InputStream stream = TikaInputStream.get(pdf)) {
+            registry.parserFor(document).parse(stream, new StreamingSegmentContentHandler(document, sink),
+                    registry.metadataFor(document), new ParseContext());
+        }
+        return sink.characters;
+    }
+
+    @Benchmark
+    public long parallelRanges() throws Exception {
+        CountingSink sink = new CountingSink();
+        extractor.extract(document, pdf, sink, 1);
+        return sink.characters;
+    }
+
+    private static void writePdf(Path file) throws Exception {
+        try (PDDocument pdf = new PDDocument()) {
+            for (int page = 1; page <= PAGES; page++) {
+                PDPage pdPage = new PDPage(PDRectangle.A4);
+                pdf.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(pdf, pdPage)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 9);
+                    content.setLeading(12);
+                    content.newLineAtOffset(40, 800);
+                    for (int line = 1; line <= LINES_PER_PAGE; line++) {
+                        content.showText("Page " + page + ", line " + line
+                                + ": revenue in the region increased while operating costs remained stable.");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            pdf.save(file.toFile());
+        }
+    }
+
+    private static final class CountingSink implements SegmentSink {
+
+        private long characters;
+
+        @Override
+        public void accept(String chunk) {
+            characters += chunk.length();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.insightlens.core.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the cursor-based segmenter against the legacy split/stream implementation.
+ * Run with the gc profiler (the default in the benchmark profile) to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextSegmenterBenchmark {
+
+    private static final int TEXT_LENGTH = 1_000_000;
+    private static final String[] WORDS = {
+            "the", "quarterly", "revenue", "increased", "while", "operating", "costs", "remained",
+            "stable", "across", "all", "regions", "and", "segments", "of", "business"
+    };
+
+    @Param({"prose", "code", "no-punctuation"})
+    private String corpus;
+
+    private String text;
+    private TextSegmenterService segmenter;
+    private LegacyTextSegmenter legacySegmenter;
+
+    @Setup
+    public void setUp() {
+        segmenter = new TextSegmenterService();
+        legacySegmenter = new LegacyTextSegmenter();
+        text = switch (corpus) {
+            case "prose" -> prose(new Random(42));
+            case "code" -> code(new Random(42));
+            default -> noPunctuation(new Random(42));
+        };
+    }
+
+    @Benchmark
+    public List<String> legacySegmentText() {
+        return legacySegmenter.segmentText(text);
+    }
+
+    @Benchmark
+    public List<String> segmentText() {
+        return segmenter.segmentText(text);
+    }
+
+    @Benchmark
+    public List<TextSpan> segmentRanges() {
+        return segmenter.segmentRanges(text);
+    }
+
+    private static String prose(Random random) {
+        StringBuilder sb = new StringBuilder(TEXT_LENGTH + 1024);
+        while (sb.length() < TEXT_LENGTH) {
+            int sentences = 2 + random.nextInt(8);
+            for (int s = 0; s < sentences; s++) {
+                int words = 6 + random.nextInt(20);
+                for (int w = 0; w < words; w++) {
+                    sb.append(WORDS[random.nextInt(WORDS.length)]).append(w + 1 < words ? " " : "");
+                }
+                sb.append(random.nextInt(10) == 0 ? "? " : ". ");
+            }
+            sb.append("\n\n");
+        }
+        return sb.toString();
+    }
+
+    private static String code(Random random) {
+        StringBuilder sb = new StringBuilder(TEXT_LENGTH + 1024);
+        int line = 0;
+        while (sb.length() < TEXT_LENGTH) {
+            sb.append("    if (value").append(line).append(".isPresent()) {\n")
+                    .append("        result.add(value").append(line).append(".get().trim());\n")
+                    .append("    }\n");
+            if (random.nextInt(40) == 0) {
+                sb.append('\n');
+            }
+            line++;
+        }
+        return sb.toString();
+    }
+
+    private static String noPunctuation(Random random) {
+        StringBuilder sb = new StringBuilder(TEXT_LENGTH + 16);
+        while (sb.length() < TEXT_LENGTH) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.config.TikaProperties;
+import com.insightlens.core.model.Document;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-document latency of parsing a small file with a freshly built AutoDetectParser (the old
+ * per-document behaviour) against the shared {@link TikaParserRegistry}, with and without
+ * content-type routing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TikaParserBenchmark {
+
+    private byte[] html;
+    private TikaParserRegistry registry;
+    private Document routedDocument;
+    private Document detectedDocument;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder("<html><head><title>Quarterly report</title></head><body>");
+        for (int i = 0; i < 40; i++) {
+            sb.append("<p>Revenue in region ").append(i).append(" increased while operating costs remained stable.</p>");
+        }
+        html = sb.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+
+        TikaProperties properties = new TikaProperties();
+        properties.setTrustedContentTypes(List.of("text/html"));
+        registry = new TikaParserRegistry(properties);
+        routedDocument = document("text/html; charset=UTF-8");
+        detectedDocument = document("application/octet-stream");
+    }
+
+    @Benchmark
+    public String newAutoDetectParserPerDocument() throws Exception {
+        return parse(new AutoDetectParser(), new Metadata());
+    }
+
+    @Benchmark
+    public String sharedAutoDetectParser() throws Exception {
+        return parse(registry.parserFor(detectedDocument), registry.metadataFor(detectedDocument));
+    }
+
+    @Benchmark
+    public String routedByContentType() throws Exception {
+        return parse(registry.parserFor(routedDocument), registry.metadataFor(routedDocument));
+    }
+
+    private String parse(Parser parser, Metadata metadata) throws Exception {
+        BodyContentHandler handler = new BodyContentHandler(-1);
+        parser.parse(new ByteArrayInputStream(html), handler, metadata, new ParseContext());
+        return handler.toString();
+    }
+
+    private static Document document(String contentType) {
+        return Document.builder()
+                .id("benchmark")
+                .originalFileName("report.html")
+                .fileContentType(contentType)
+                .build();
+    }
+}
@@ -0,0 +1,100 @@
+package com.insightlens.core.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search latency of {@link HnswIndex} against exact brute force. SampleTime mode reports p99 per
+ * benchmark; recall@10 of the HNSW search against brute force is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-XX:MaxDirectMemorySize=2g")
+public class HnswIndexBenchmark {
+
+    private static final int DIMENSION = 384;
+    private static final int QUERY_COUNT = 256;
+    private static final int TOP_K = 10;
+    private static final int CLUSTERS = 64;
+
+    @Param({"50000"})
+    private int vectorCount;
+
+    @Param({"100"})
+    private int efSearch;
+
+    private HnswIndex index;
+    private float[][] queries;
+    private int nextQuery;
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        Random random = new Random(7);
+        // Clustered vectors, closer to real embeddings than uniform noise
+        float[][] centroids = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centroids[c] = gaussian(random, 1f, null);
+        }
+        index = new HnswIndex(DIMENSION, 16, 200);
+        for (int i = 0; i < vectorCount; i++) {
+            index.add("segment-" + i, "document-" + (i / 500), gaussian(random, 0.3f, centroids[random.nextInt(CLUSTERS)]));
+        }
+        queries = new float[QUERY_COUNT][];
+        for (int q = 0; q < QUERY_COUNT; q++) {
+            queries[q] = gaussian(random, 0.3f, centroids[random.nextInt(CLUSTERS)]);
+        }
+
+        double recall = 0;
+        for (float[] query : queries) {
+            Set<String> exact = new HashSet<>();
+            index.bruteForceSearch(query, TOP_K).forEach(match -> exact.add(match.segmentId()));
+            recall += index.search(query, TOP_K, efSearch).stream()
+                    .filter(match -> exact.contains(match.segmentId()))
+                    .count() / (double) TOP_K;
+        }
+        System.out.printf("%nrecall@%d (ef=%d, n=%d): %.4f%n", TOP_K, efSearch, vectorCount, recall / QUERY_COUNT);
+    }
+
+    @Benchmark
+    public List<HnswIndex.Match> hnswSearch() {
+        return index.search(nextQuery(), TOP_K, efSearch);
+    }
+
+    @Benchmark
+    public List<HnswIndex.Match> bruteForceSearch() {
+        return index.bruteForceSearch(nextQuery(), TOP_K);
+    }
+
+    private float[] nextQuery() {
+        float[] query = queries[nextQuery];
+        nextQuery = (nextQuery + 1) % QUERY_COUNT;
+        return query;
+    }
+
+    private static float[] gaussian(Random random, float scale, float[] center) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian() * scale + (center == null ? 0 : center[i]);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,214 @@
+package com.insightlens.core.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Storage savings and read overhead of deduplicated segment bodies. Setup prints the bytes a
+ * corpus takes as inline text, deduplicated, deduplicated and deflated, and deduplicated and
+ * deflated with a dictionary of the most shared bodies (as SegmentBodyStore trains it); the
+ * benchmarks measure reading one segment body in each encoding. The corpus is every blank-line
+ * separated paragraph of the .txt files under BENCHMARK_CORPUS_DIR, or a generated one with
+ * report-style boilerplate (headers, footers, disclaimers) around varied paragraphs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentBodyCodecBenchmark {
+
+    private static final int GENERATED_DOCUMENTS = 2000;
+    private static final int DICTIONARY_SAMPLES = 2000;
+    private static final int READ_SAMPLE = 4096;
+
+    private byte[][] plain;
+    private SegmentBodyCodec.Encoded[] deflated;
+    private SegmentBodyCodec.Encoded[] deflatedWithDictionary;
+    private byte[] dictionary;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void encodeCorpus() throws IOException {
+        List<String> segments = corpus();
+        Map<String, Integer> references = new LinkedHashMap<>();
+        long inlineBytes = 0;
+        for (String segment : segments) {
+            inlineBytes += segment.getBytes(StandardCharsets.UTF_8).length;
+            references.merge(segment, 1, Integer::sum);
+        }
+        List<String> unique = new ArrayList<>(references.keySet());
+        dictionary = dictionary(references);
+
+        long uniqueBytes = 0;
+        long deflatedBytes = 0;
+        long dictionaryBytes = dictionary.length;
+        plain = new byte[unique.size()][];
+        deflated = new SegmentBodyCodec.Encoded[unique.size()];
+        deflatedWithDictionary = new SegmentBodyCodec.Encoded[unique.size()];
+        for (int i = 0; i < unique.size(); i++) {
+            plain[i] = unique.get(i).getBytes(StandardCharsets.UTF_8);
+            deflated[i] = SegmentBodyCodec.encode(plain[i], null, 6);
+            deflatedWithDictionary[i] = SegmentBodyCodec.encode(plain[i], dictionary, 6);
+            uniqueBytes += plain[i].length;
+            deflatedBytes += deflated[i].content().length;
+            dictionaryBytes += deflatedWithDictionary[i].content().length;
+        }
+        System.out.printf("%nCorpus: %d segments, %d unique%n", segments.size(), unique.size());
+        System.out.printf("inline %d bytes | deduplicated %d (%.1f%%) | + deflate %d (%.1f%%) | + dictionary %d (%.1f%%)%n",
+                inlineBytes, uniqueBytes, saved(uniqueBytes, inlineBytes), deflatedBytes, saved(deflatedBytes, inlineBytes),
+                dictionaryBytes, saved(dictionaryBytes, inlineBytes));
+
+        // Read a fixed random sample so every benchmark decodes the same bodies
+        Random random = new Random(11);
+        int[] sample = random.ints(READ_SAMPLE, 0, unique.size()).toArray();
+        plain = pick(plain, sample);
+        deflated = pick(deflated, sample);
+        deflatedWithDictionary = pick(deflatedWithDictionary, sample);
+    }
+
+    @Benchmark
+    public String inlineText() {
+        // What reading an inline TEXT column costs beyond the database: UTF-8 to String
+        return new String(plain[nextIndex()], StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String deflated() {
+        int i = nextIndex();
+        SegmentBodyCodec.Encoded body = deflated[i];
+        return SegmentBodyCodec.decode(body.codec(), body.content(), null, plain[i].length);
+    }
+
+    @Benchmark
+    public String deflatedWithDictionary() {
+        int i = nextIndex();
+        SegmentBodyCodec.Encoded body = deflatedWithDictionary[i];
+        return SegmentBodyCodec.decode(body.codec(), body.content(),
+                body.codec() == SegmentBodyCodec.CODEC_DEFLATE ? dictionary : null, plain[i].length);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) % READ_SAMPLE;
+        return next;
+    }
+
+    // Same construction as SegmentBodyStore.trainDictionary: most shared bodies at the end
+    private static byte[] dictionary(Map<String, Integer> references) {
+        List<String> mostShared = references.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
+                .limit(DICTIONARY_SAMPLES)
+                .map(Map.Entry::getKey)
+                .toList();
+        byte[] buffer = new byte[SegmentBodyCodec.MAX_DICTIONARY_SIZE];
+        int length = 0;
+        for (String body : mostShared) {
+            if (length >= buffer.length) {
+                break;
+            }
+            byte[] sample = body.getBytes(StandardCharsets.UTF_8);
+            int n = Math.min(sample.length, buffer.length - length);
+            System.arraycopy(sample, 0, buffer, buffer.length - length - n, n);
+            length += n;
+        }
+        byte[] dictionary = new byte[length];
+        System.arraycopy(buffer, buffer.length - length, dictionary, 0, length);
+        return dictionary;
+    }
+
+    private static List<String> corpus() throws IOException {
+        String dir = System.getenv("BENCHMARK_CORPUS_DIR");
+        if (dir == null || dir.isBlank()) {
+            return generatedCorpus();
+        }
+        List<String> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(Path.of(dir))) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".txt")).toList()) {
+                for (String paragraph : Files.readString(file).split("\\R\\s*\\R")) {
+                    if (!paragraph.isBlank()) {
+                        segments.add(paragraph.strip());
+                    }
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static List<String> generatedCorpus() {
+        Random random = new Random(3);
+        String[] companies = {"Northwind Holdings", "Contoso Ltd.", "Fabrikam Inc.", "Tailspin Partners"};
+        String[] topics = {"revenue", "operating costs", "headcount", "customer churn", "gross margin", "capital expenditure"};
+        String[] directions = {"increased", "decreased", "remained flat", "recovered", "fell sharply"};
+        String disclaimer = "This document contains forward-looking statements within the meaning of applicable "
+                + "securities laws. Actual results may differ materially from those expressed or implied. "
+                + "Readers are cautioned not to place undue reliance on these statements.";
+        String confidentiality = "CONFIDENTIAL - This report is intended solely for the addressee and may contain "
+                + "privileged information. Any review, distribution or copying by others is prohibited.";
+
+        List<String> segments = new ArrayList<>();
+        for (int d = 0; d < GENERATED_DOCUMENTS; d++) {
+            String company = companies[d % companies.length];
+            int quarter = 1 + d % 4;
+            int year = 2018 + d % 7;
+            segments.add(company + " - Quarterly Report Q" + quarter + " " + year);
+            segments.add(confidentiality);
+            int paragraphs = 5 + random.nextInt(20);
+            for (int p = 0; p < paragraphs; p++) {
+                StringBuilder paragraph = new StringBuilder();
+                for (int s = 0; s < 3 + random.nextInt(4); s++) {
+                    paragraph.append("In region ").append(random.nextInt(40)).append(", ")
+                            .append(topics[random.nextInt(topics.length)]).append(' ')
+                            .append(directions[random.nextInt(directions.length)]).append(" by ")
+                            .append(random.nextInt(300) / 10.0).append("% compared to the prior quarter. ");
+                }
+                segments.add(paragraph.toString().trim());
+            }
+            segments.add(disclaimer);
+            segments.add("Page " + (1 + random.nextInt(30)) + " of 30 - " + company + " - Confidential");
+        }
+        return segments;
+    }
+
+    private static double saved(long stored, long inline) {
+        return 100.0 * (1.0 - (double) stored / inline);
+    }
+
+    private static byte[][] pick(byte[][] values, int[] indexes) {
+        byte[][] picked = new byte[indexes.length][];
+        for (int i = 0; i < indexes.length; i++) {
+            picked[i] = values[indexes[i]];
+        }
+        return picked;
+    }
+
+    private static SegmentBodyCodec.Encoded[] pick(SegmentBodyCodec.Encoded[] values, int[] indexes) {
+        SegmentBodyCodec.Encoded[] picked = new SegmentBodyCodec.Encoded[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            picked[i] = values[indexes[i]];
+        }
+        return picked;
+    }
+}
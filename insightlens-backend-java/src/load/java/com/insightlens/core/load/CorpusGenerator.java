@@ -0,0 +1,181 @@
+package com.insightlens.core.load;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a corpus of PDF, DOCX and HTML files of controlled sizes. Text is drawn from a fixed
+ * pseudo-word vocabulary, so the same seed always gives the same text, and every document opens
+ * with its own name so none of them is deduplicated on upload.
+ */
+final class CorpusGenerator {
+
+    enum Format {
+        PDF("pdf", "application/pdf"),
+        DOCX("docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document"),
+        HTML("html", "text/html");
+
+        final String extension;
+        final String contentType;
+
+        Format(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+    }
+
+    record CorpusFile(Path path, Format format, long bytes) {}
+
+    private static final String[] SYLLABLES = {
+            "an", "ber", "cal", "do", "en", "for", "gra", "hu", "in", "ja", "ko", "lim", "mer", "na", "or",
+            "pre", "qua", "ri", "sto", "ter", "un", "ve", "wis", "xe", "yo", "zen"};
+    private static final int VOCABULARY_SIZE = 4000;
+    private static final int PDF_LINE_CHARS = 95;
+    private static final int PDF_LINES_PER_PAGE = 60;
+
+    private final long seed;
+    private final String[] vocabulary;
+
+    CorpusGenerator(long seed) {
+        this.seed = seed;
+        SplittableRandom random = new SplittableRandom(seed);
+        vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int syllables = 1 + random.nextInt(4); syllables > 0; syllables--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+    }
+
+    /**
+     * @param mix      Relative share of each format
+     * @param minBytes Smallest amount of text per document; sizes are log-uniform up to {@code maxBytes}
+     */
+    List<CorpusFile> generate(Path directory, String prefix, int count, Map<Format, Double> mix,
+                              long minBytes, long maxBytes) throws IOException {
+        Files.createDirectories(directory);
+        SplittableRandom random = new SplittableRandom(seed ^ prefix.hashCode());
+        double totalShare = mix.values().stream().mapToDouble(Double::doubleValue).sum();
+        List<CorpusFile> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Format format = pick(mix, totalShare, random.nextDouble());
+            long textBytes = Math.round(minBytes * Math.pow((double) maxBytes / minBytes, random.nextDouble()));
+            String name = prefix + "-" + i;
+            List<String> paragraphs = paragraphs(name, textBytes, random);
+            Path file = directory.resolve(name + "." + format.extension);
+            switch (format) {
+                case PDF -> writePdf(file, paragraphs);
+                case DOCX -> writeDocx(file, paragraphs);
+                case HTML -> writeHtml(file, name, paragraphs);
+            }
+            files.add(new CorpusFile(file, format, Files.size(file)));
+        }
+        return files;
+    }
+
+    private static Format pick(Map<Format, Double> mix, double totalShare, double roll) {
+        double cumulative = 0;
+        Format last = null;
+        for (Map.Entry<Format, Double> entry : mix.entrySet()) {
+            cumulative += entry.getValue() / totalShare;
+            last = entry.getKey();
+            if (roll < cumulative) {
+                return last;
+            }
+        }
+        return last;
+    }
+
+    private List<String> paragraphs(String name, long textBytes, SplittableRandom random) {
+        List<String> paragraphs = new ArrayList<>();
+        paragraphs.add("Load test document " + name + " generated with seed " + seed + ".");
+        long written = paragraphs.getFirst().length();
+        while (written < textBytes) {
+            StringBuilder paragraph = new StringBuilder();
+            for (int sentences = 3 + random.nextInt(6); sentences > 0; sentences--) {
+                int words = 8 + random.nextInt(13);
+                for (int w = 0; w < words; w++) {
+                    String word = vocabulary[random.nextInt(vocabulary.length)];
+                    if (w == 0) {
+                        paragraph.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                    } else {
+                        paragraph.append(' ').append(word);
+                    }
+                }
+                paragraph.append(sentences > 1 ? ". " : ".");
+            }
+            written += paragraph.length();
+            paragraphs.add(paragraph.toString());
+        }
+        return paragraphs;
+    }
+
+    private static void writePdf(Path file, List<String> paragraphs) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String paragraph : paragraphs) {
+            int start = 0;
+            while (start < paragraph.length()) {
+                int end = Math.min(paragraph.length(), start + PDF_LINE_CHARS);
+                if (end < paragraph.length()) {
+                    int space = paragraph.lastIndexOf(' ', end);
+                    end = space > start ? space : end;
+                }
+                lines.add(paragraph.substring(start, end).strip());
+                start = end;
+            }
+            lines.add("");
+        }
+        try (PDDocument pdf = new PDDocument()) {
+            for (int first = 0; first < lines.size(); first += PDF_LINES_PER_PAGE) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                pdf.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(pdf, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(12);
+                    content.newLineAtOffset(50, 790);
+                    for (String line : lines.subList(first, Math.min(lines.size(), first + PDF_LINES_PER_PAGE))) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            pdf.save(file.toFile());
+        }
+    }
+
+    private static void writeDocx(Path file, List<String> paragraphs) throws IOException {
+        try (XWPFDocument docx = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            for (String paragraph : paragraphs) {
+                docx.createParagraph().createRun().setText(paragraph);
+            }
+            docx.write(out);
+        }
+    }
+
+    private static void writeHtml(Path file, String name, List<String> paragraphs) throws IOException {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>")
+                .append(name).append("</title></head>\n<body>\n<h1>").append(name).append("</h1>\n");
+        for (String paragraph : paragraphs) {
+            html.append("<p>").append(paragraph).append("</p>\n");
+        }
+        html.append("</body></html>\n");
+        Files.writeString(file, html);
+    }
+}
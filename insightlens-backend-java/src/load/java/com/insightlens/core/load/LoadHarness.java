@@ -0,0 +1,380 @@
+package com.insightlens.core.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.insightlens.core.InsightLensCoreApplication;
+import com.insightlens.core.model.DocumentStatus;
+import com.insightlens.core.model.DocumentStatusEvent;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of the document pipeline on one machine, without Docker or the Python
+ * services. Starts PostgreSQL from embedded binaries (or uses {@code --jdbc-url}), stub
+ * segmentation and embedding services and the backend itself in this JVM, then uploads a
+ * generated corpus through the HTTP API with a fixed number of concurrent clients. Each client
+ * uploads a document, waits until it reaches a final status and takes the next one.
+ * <p>
+ * Every executor mode is run at every concurrency level, each on a fresh schema and backend.
+ * Platform mode processes {@code --worker-concurrency} documents at once, as a pool of that many
+ * threads would; virtual mode claims as many as there are clients, up to
+ * {@code --virtual-worker-concurrency}, and leaves the limiting to the resource permits. The
+ * worker concurrency is part of the scenario name, so a baseline only gates the same configuration.
+ * The report (docs/sec, end-to-end latency percentiles, peak heap) is written as JSON; with
+ * {@code --baseline} the run fails if any scenario regressed beyond the thresholds. Stubs share
+ * the JVM, so their (small, constant) allocation is part of the heap figure. Heap numbers are
+ * only comparable between runs with the same {@code -Xmx}. {@code src/load/baseline.json} was
+ * recorded with {@code --documents=1000 --concurrency=10,100,1000 --max-size=64KB} and
+ * {@code -Xmx2g}; reports of runs gated against it are kept in {@code src/load/reports}.
+ * <pre>
+ * mvn -Pload-test test-compile exec:exec -Dload.args="--documents=1000 --concurrency=10,100,1000 --max-size=64KB --baseline=src/load/baseline.json"
+ * </pre>
+ */
+public final class LoadHarness {
+
+    private static final Map<String, String> DEFAULTS = defaults();
+
+    private static final Set<DocumentStatus> FINAL_STATUSES = Set.of(
+            DocumentStatus.EMBEDDING_COMPLETED, DocumentStatus.EMBEDDING_FAILED, DocumentStatus.TEXT_EXTRACTION_FAILED);
+
+    private static Map<String, String> defaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("documents", "200");
+        defaults.put("warmup-documents", "20");
+        defaults.put("concurrency", "10,100");
+        defaults.put("executor-modes", "platform,virtual");
+        defaults.put("worker-concurrency", "4");
+        defaults.put("virtual-worker-concurrency", "1000");
+        defaults.put("mix", "pdf=0.4,docx=0.3,html=0.3");
+        defaults.put("min-size", "16KB");
+        defaults.put("max-size", "1MB");
+        defaults.put("seed", "42");
+        defaults.put("remote-segmentation", "false");
+        defaults.put("segment-latency", "20ms");
+        defaults.put("embed-latency", "25ms");
+        defaults.put("embed-latency-per-text", "0ms");
+        defaults.put("embedding-dimensions", "384");
+        defaults.put("document-timeout", "10m");
+        defaults.put("jdbc-url", "");
+        defaults.put("jdbc-user", "postgres");
+        defaults.put("jdbc-password", "");
+        defaults.put("output", "target/load-results");
+        defaults.put("baseline", "");
+        defaults.put("max-throughput-drop", "0.10");
+        defaults.put("max-latency-increase", "0.20");
+        defaults.put("max-heap-increase", "0.25");
+        return defaults;
+    }
+
+    record LoadReport(Map<String, String> options, List<ScenarioResult> scenarios) {}
+
+    private record Completion(long nanos, DocumentStatus status) {}
+
+    private final Map<String, String> options;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final Map<String, CompletableFuture<Completion>> completions = new ConcurrentHashMap<>();
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            if (!arg.startsWith("--") || !arg.contains("=") || !DEFAULTS.containsKey(arg.substring(2, arg.indexOf('=')))) {
+                throw new IllegalArgumentException("Unknown option " + arg + "; options are --<name>=<value> with names "
+                        + DEFAULTS.keySet());
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        List<String> violations = new LoadHarness(options).run();
+        if (!violations.isEmpty()) {
+            System.out.println("Regressions against baseline:");
+            violations.forEach(violation -> System.out.println("  " + violation));
+        }
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    private List<String> run() throws Exception {
+        Path output = Paths.get(options.get("output"));
+        CorpusGenerator generator = new CorpusGenerator(Long.parseLong(options.get("seed")));
+        Map<CorpusGenerator.Format, Double> mix = mix(options.get("mix"));
+        long minSize = DataSize.parse(options.get("min-size")).toBytes();
+        long maxSize = DataSize.parse(options.get("max-size")).toBytes();
+        List<CorpusGenerator.CorpusFile> warmup = generator.generate(output.resolve("corpus"), "warmup",
+                Integer.parseInt(options.get("warmup-documents")), mix, minSize, maxSize);
+        List<CorpusGenerator.CorpusFile> corpus = generator.generate(output.resolve("corpus"), "document",
+                Integer.parseInt(options.get("documents")), mix, minSize, maxSize);
+        System.out.printf("Corpus: %d documents, %d MB%n", corpus.size(),
+                corpus.stream().mapToLong(CorpusGenerator.CorpusFile::bytes).sum() >> 20);
+
+        List<ScenarioResult> results = new ArrayList<>();
+        EmbeddedPostgres embeddedPostgres = options.get("jdbc-url").isBlank() ? EmbeddedPostgres.builder().start() : null;
+        try (StubServices stubs = new StubServices(
+                duration("segment-latency"), duration("embed-latency"), duration("embed-latency-per-text"),
+                Integer.parseInt(options.get("embedding-dimensions")))) {
+            String jdbcUrl = embeddedPostgres != null
+                    ? "jdbc:postgresql://localhost:" + embeddedPostgres.getPort() + "/postgres?reWriteBatchedInserts=true"
+                    : options.get("jdbc-url");
+            for (String executorMode : options.get("executor-modes").split(",")) {
+                for (String concurrency : options.get("concurrency").split(",")) {
+                    ScenarioResult result = runScenario(executorMode.strip(), Integer.parseInt(concurrency.strip()),
+                            jdbcUrl, stubs, warmup, corpus, output);
+                    results.add(result);
+                    System.out.printf("%-22s %5d docs %3d failed %8.2f docs/s %8.1f docs/min  p50 %7.0f ms  "
+                                    + "p95 %7.0f ms  p99 %7.0f ms  peak heap %5d MB%n",
+                            result.name(), result.documents(), result.failedDocuments(), result.docsPerSecond(),
+                            result.docsPerMinute(), result.latencyP50Millis(), result.latencyP95Millis(),
+                            result.latencyP99Millis(), result.peakHeapBytes() >> 20);
+                }
+            }
+        } finally {
+            if (embeddedPostgres != null) {
+                embeddedPostgres.close();
+            }
+        }
+
+        Path reportFile = output.resolve("report.json");
+        objectMapper.writeValue(reportFile.toFile(), new LoadReport(options, results));
+        System.out.println("Report written to " + reportFile.toAbsolutePath());
+
+        if (options.get("baseline").isBlank()) {
+            return List.of();
+        }
+        LoadReport baseline = objectMapper.readValue(Paths.get(options.get("baseline")).toFile(), LoadReport.class);
+        return RegressionGate.check(baseline.scenarios(), results, new RegressionGate.Thresholds(
+                Double.parseDouble(options.get("max-throughput-drop")),
+                Double.parseDouble(options.get("max-latency-increase")),
+                Double.parseDouble(options.get("max-heap-increase"))));
+    }
+
+    private ScenarioResult runScenario(String executorMode, int concurrency, String jdbcUrl, StubServices stubs,
+                                       List<CorpusGenerator.CorpusFile> warmup,
+                                       List<CorpusGenerator.CorpusFile> corpus, Path output) throws Exception {
+        int workerConcurrency = "virtual".equals(executorMode)
+                ? Math.min(concurrency, Integer.parseInt(options.get("virtual-worker-concurrency")))
+                : Integer.parseInt(options.get("worker-concurrency"));
+        String name = executorMode + "-w" + workerConcurrency + "-c" + concurrency;
+        resetSchema(jdbcUrl);
+        Path workDir = output.resolve(name);
+        try (ConfigurableApplicationContext backend = startBackend(executorMode, workerConcurrency, jdbcUrl, stubs,
+                workDir)) {
+            URI baseUri = URI.create("http://localhost:"
+                    + ((WebServerApplicationContext) backend).getWebServer().getPort());
+            if (!warmup.isEmpty()) {
+                drive(baseUri, warmup, Math.min(concurrency, warmup.size()), new long[warmup.size()]);
+            }
+
+            long[] latencies = new long[corpus.size()];
+            System.gc();
+            try (HeapSampler heapSampler = new HeapSampler()) {
+                long started = System.nanoTime();
+                int failed = drive(baseUri, corpus, concurrency, latencies);
+                long elapsed = System.nanoTime() - started;
+                return ScenarioResult.of(name, executorMode, concurrency, workerConcurrency,
+                        corpus.stream().mapToLong(CorpusGenerator.CorpusFile::bytes).sum(),
+                        elapsed, latencies, failed, heapSampler.peak());
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startBackend(String executorMode, int workerConcurrency, String jdbcUrl,
+                                                        StubServices stubs, Path workDir) throws IOException {
+        Files.createDirectories(workDir);
+        // Command-line arguments, so they win over application.properties
+        String[] args = {
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.datasource.username=" + options.get("jdbc-user"),
+                "--spring.datasource.password=" + options.get("jdbc-password"),
+                "--segmentation.service.url=" + stubs.segmentationUrl(),
+                "--segmentation.remote.enabled=" + options.get("remote-segmentation"),
+                "--embedding.service.url=" + stubs.embeddingUrl(),
+                "--embedding.enabled=true",
+                "--document.processing.executor-mode=" + executorMode,
+                ("virtual".equals(executorMode) ? "--document.queue.virtual-worker-concurrency="
+                        : "--document.queue.worker-concurrency=") + workerConcurrency,
+                "--file.upload-dir=" + workDir.resolve("uploads"),
+                "--vector-index.snapshot-path=" + workDir.resolve("index/segments.hnsw"),
+                "--ingest.watch.dir=",
+                "--logging.level.root=WARN",
+                "--logging.level.com.insightlens=WARN",
+        };
+        return new SpringApplicationBuilder(InsightLensCoreApplication.class)
+                .listeners(new FinalStatusListener())
+                .run(args);
+    }
+
+    /**
+     * Uploads {@code files} from {@code concurrency} clients, each waiting for its document to
+     * finish before taking the next.
+     *
+     * @param latencies Filled with the end-to-end latency of each file
+     * @return The number of documents that ended in a failed status
+     */
+    private int drive(URI baseUri, List<CorpusGenerator.CorpusFile> files, int concurrency, long[] latencies)
+            throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Duration documentTimeout = duration("document-timeout");
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int client = 0; client < concurrency; client++) {
+                running.add(clients.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < files.size(); i = next.getAndIncrement()) {
+                        long started = System.nanoTime();
+                        String documentId = upload(baseUri, files.get(i));
+                        Completion completion = completions.computeIfAbsent(documentId, id -> new CompletableFuture<>())
+                                .get(documentTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                        completions.remove(documentId);
+                        latencies[i] = completion.nanos() - started;
+                        if (completion.status() != DocumentStatus.EMBEDDING_COMPLETED) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : running) {
+                client.get();
+            }
+        }
+        return failed.get();
+    }
+
+    private String upload(URI baseUri, CorpusGenerator.CorpusFile file) throws IOException, InterruptedException {
+        String filename = file.path().getFileName().toString();
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/documents/upload/stream?filename="
+                        + URLEncoder.encode(filename, StandardCharsets.UTF_8)))
+                .header("Content-Type", file.format().contentType)
+                .POST(HttpRequest.BodyPublishers.ofFile(file.path()))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 202) {
+            throw new IllegalStateException("Upload of " + filename + " failed with " + response.statusCode()
+                    + ": " + response.body());
+        }
+        return objectMapper.readTree(response.body()).path("documentId").asText();
+    }
+
+    // Fresh tables for every scenario; the backend recreates them on start
+    private void resetSchema(String jdbcUrl) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(
+                jdbcUrl, options.get("jdbc-user"), options.get("jdbc-password"));
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS public CASCADE");
+            statement.execute("CREATE SCHEMA public");
+        }
+    }
+
+    private Duration duration(String option) {
+        return DurationStyle.detectAndParse(options.get(option));
+    }
+
+    private static Map<CorpusGenerator.Format, Double> mix(String value) {
+        Map<CorpusGenerator.Format, Double> mix = new EnumMap<>(CorpusGenerator.Format.class);
+        for (String entry : value.split(",")) {
+            String[] formatAndShare = entry.split("=");
+            mix.put(CorpusGenerator.Format.valueOf(formatAndShare[0].strip().toUpperCase()),
+                    Double.parseDouble(formatAndShare[1].strip()));
+        }
+        return mix;
+    }
+
+    /**
+     * Records when a document reaches a final status. Status changes are published by the
+     * backend in this JVM, so no polling is needed and latency is not rounded to a poll interval.
+     */
+    private class FinalStatusListener implements ApplicationListener<ApplicationEvent> {
+
+        @Override
+        public void onApplicationEvent(ApplicationEvent event) {
+            if (event instanceof PayloadApplicationEvent<?> payloadEvent
+                    && payloadEvent.getPayload() instanceof DocumentStatusEvent statusEvent
+                    && FINAL_STATUSES.contains(statusEvent.status())) {
+                completions.computeIfAbsent(statusEvent.documentId(), id -> new CompletableFuture<>())
+                        .complete(new Completion(System.nanoTime(), statusEvent.status()));
+            }
+        }
+    }
+
+    /**
+     * Peak used heap, sampled every few milliseconds while a scenario runs.
+     */
+    private static final class HeapSampler implements AutoCloseable {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private final Thread thread;
+
+        HeapSampler() {
+            thread = Thread.ofPlatform().daemon().name("heap-sampler").start(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        long peak() {
+            return Math.max(peak.get(), memory.getHeapMemoryUsage().getUsed());
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.insightlens.core.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Compares a run against a baseline recorded on the same machine, scenario by scenario. Scenarios
+ * missing from the baseline are skipped, so new scenarios can be added before a baseline exists.
+ */
+final class RegressionGate {
+
+    /**
+     * @param maxThroughputDrop  Largest tolerated drop in docs/sec, as a fraction of the baseline
+     * @param maxLatencyIncrease Largest tolerated rise of p95 and p99 latency, as a fraction
+     * @param maxHeapIncrease    Largest tolerated rise of peak heap, as a fraction
+     */
+    record Thresholds(double maxThroughputDrop, double maxLatencyIncrease, double maxHeapIncrease) {}
+
+    private RegressionGate() {
+    }
+
+    /**
+     * @return One message per violated threshold; empty if the run passes
+     */
+    static List<String> check(List<ScenarioResult> baseline, List<ScenarioResult> results, Thresholds thresholds) {
+        Map<String, ScenarioResult> baselineByName = baseline.stream()
+                .collect(Collectors.toMap(ScenarioResult::name, Function.identity()));
+        List<String> violations = new ArrayList<>();
+        for (ScenarioResult result : results) {
+            ScenarioResult base = baselineByName.get(result.name());
+            if (base == null) {
+                continue;
+            }
+            if (result.docsPerSecond() < base.docsPerSecond() * (1 - thresholds.maxThroughputDrop())) {
+                violations.add(String.format("%s: throughput %.2f docs/s, baseline %.2f",
+                        result.name(), result.docsPerSecond(), base.docsPerSecond()));
+            }
+            if (result.latencyP95Millis() > base.latencyP95Millis() * (1 + thresholds.maxLatencyIncrease())) {
+                violations.add(String.format("%s: p95 latency %.0f ms, baseline %.0f ms",
+                        result.name(), result.latencyP95Millis(), base.latencyP95Millis()));
+            }
+            if (result.latencyP99Millis() > base.latencyP99Millis() * (1 + thresholds.maxLatencyIncrease())) {
+                violations.add(String.format("%s: p99 latency %.0f ms, baseline %.0f ms",
+                        result.name(), result.latencyP99Millis(), base.latencyP99Millis()));
+            }
+            if (result.peakHeapBytes() > base.peakHeapBytes() * (1 + thresholds.maxHeapIncrease())) {
+                violations.add(String.format("%s: peak heap %d MB, baseline %d MB",
+                        result.name(), result.peakHeapBytes() >> 20, base.peakHeapBytes() >> 20));
+            }
+            if (result.failedDocuments() > base.failedDocuments()) {
+                violations.add(String.format("%s: %d failed documents, baseline %d",
+                        result.name(), result.failedDocuments(), base.failedDocuments()));
+            }
+        }
+        return violations;
+    }
+}
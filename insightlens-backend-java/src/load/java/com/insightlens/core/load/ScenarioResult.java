@@ -0,0 +1,49 @@
+package com.insightlens.core.load;
+
+import java.util.Arrays;
+
+/**
+ * Outcome of one load scenario. Latency runs from the start of the upload request until the
+ * document reaches a final status; throughput is measured over the same span for the whole run.
+ * {@code concurrency} counts clients, {@code workerConcurrency} the documents the backend may
+ * process at once in its executor mode.
+ */
+record ScenarioResult(
+        String name,
+        String executorMode,
+        int concurrency,
+        int workerConcurrency,
+        int documents,
+        int failedDocuments,
+        long inputBytes,
+        double durationSeconds,
+        double docsPerSecond,
+        double docsPerMinute,
+        double latencyP50Millis,
+        double latencyP95Millis,
+        double latencyP99Millis,
+        double latencyMaxMillis,
+        long peakHeapBytes
+) {
+
+    static ScenarioResult of(String name, String executorMode, int concurrency, int workerConcurrency, long inputBytes,
+                             long elapsedNanos, long[] latencyNanos, int failedDocuments, long peakHeapBytes) {
+        long[] sorted = latencyNanos.clone();
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        double docsPerSecond = sorted.length / seconds;
+        return new ScenarioResult(name, executorMode, concurrency, workerConcurrency, sorted.length, failedDocuments,
+                inputBytes, seconds, docsPerSecond, docsPerSecond * 60,
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.95), percentileMillis(sorted, 0.99),
+                percentileMillis(sorted, 1.0), peakHeapBytes);
+    }
+
+    // Nearest rank
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,183 @@
+package com.insightlens.core.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-ins for the segmentation and embedding services. They serve the endpoints the
+ * backend calls ({@code /segment}, {@code /segment/stream} and {@code /embed}) with the same
+ * payloads, answer after a configurable delay and return deterministic segments and vectors, so
+ * the pipeline can be loaded without the Python services or a GPU.
+ */
+final class StubServices implements AutoCloseable {
+
+    private static final int SEGMENT_MAX_CHARS = 1500;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Duration segmentLatency;
+    private final Duration embedLatency;
+    private final Duration embedLatencyPerText;
+    private final int dimensions;
+    private final HttpServer segmentationServer;
+    private final HttpServer embeddingServer;
+
+    /**
+     * @param segmentLatency      Delay before answering a segmentation call
+     * @param embedLatency        Delay before answering an embedding call
+     * @param embedLatencyPerText Additional delay per text in an embedding call
+     * @param dimensions          Length of the returned vectors
+     */
+    StubServices(Duration segmentLatency, Duration embedLatency, Duration embedLatencyPerText, int dimensions)
+            throws IOException {
+        this.segmentLatency = segmentLatency;
+        this.embedLatency = embedLatency;
+        this.embedLatencyPerText = embedLatencyPerText;
+        this.dimensions = dimensions;
+        this.segmentationServer = start(Map.of("/segment", this::segment, "/segment/stream", this::segmentStream));
+        this.embeddingServer = start(Map.of("/embed", this::embed));
+    }
+
+    String segmentationUrl() {
+        return url(segmentationServer);
+    }
+
+    String embeddingUrl() {
+        return url(embeddingServer);
+    }
+
+    @Override
+    public void close() {
+        segmentationServer.stop(0);
+        embeddingServer.stop(0);
+        executor.close();
+    }
+
+    private HttpServer start(Map<String, HttpHandler> handlers) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        handlers.forEach((path, handler) -> server.createContext(path, exchange -> {
+            try (exchange) {
+                handler.handle(exchange);
+            }
+        }));
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+
+    private static String url(HttpServer server) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    private void segment(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        List<Map<String, Object>> segments = new ArrayList<>();
+        for (String text : split(request.path("text").asText())) {
+            segments.add(Map.of("segmentOrder", segments.size(), "text", text));
+        }
+        sleep(segmentLatency);
+        respond(exchange, "application/json", objectMapper.writeValueAsBytes(Map.of("segments", segments)));
+    }
+
+    // Answers line by line while the request is still streaming in, like the real service
+    private void segmentStream(HttpExchange exchange) throws IOException {
+        sleep(segmentLatency);
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        OutputStream out = exchange.getResponseBody();
+        int segmentOrder = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            for (String text : split(objectMapper.readTree(line).path("text").asText())) {
+                out.write(objectMapper.writeValueAsBytes(Map.of("segmentOrder", segmentOrder++, "text", text)));
+                out.write('\n');
+            }
+            out.flush();
+        }
+    }
+
+    private void embed(HttpExchange exchange) throws IOException {
+        JsonNode texts = objectMapper.readTree(exchange.getRequestBody()).path("texts");
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        for (JsonNode text : texts) {
+            embeddings.add(vector(text.asText()));
+        }
+        sleep(embedLatency.plus(embedLatencyPerText.multipliedBy(texts.size())));
+        respond(exchange, "application/json", objectMapper.writeValueAsBytes(Map.of("embeddings", embeddings)));
+    }
+
+    // Unit vector seeded by the text, so the same text always gets the same vector
+    private float[] vector(String text) {
+        SplittableRandom random = new SplittableRandom(text.hashCode());
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static List<String> split(String text) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + SEGMENT_MAX_CHARS);
+            if (end < text.length()) {
+                int space = text.lastIndexOf(' ', end);
+                if (space > start) {
+                    end = space;
+                }
+            }
+            String segment = text.substring(start, end).strip();
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+            start = end;
+        }
+        return segments;
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
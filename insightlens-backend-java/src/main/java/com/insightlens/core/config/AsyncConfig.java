@@ -1,8 +1,11 @@
 package com.insightlens.core.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
@@ -10,15 +13,26 @@ import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 @EnableTransactionManagement
 public class AsyncConfig {
 
+    // DocumentProcessingQueue never claims more documents than the mode's worker concurrency allows
     @Bean(name = "documentProcessingExecutor")
-    public Executor documentProcessingExecutor() {
+    public Executor documentProcessingExecutor(@Value("${document.queue.worker-concurrency:4}") int workerConcurrency,
+                                               @Value("${document.processing.executor-mode:platform}") String executorMode) {
+        if ("virtual".equalsIgnoreCase(executorMode)) {
+            // One virtual thread per claimed document (document.queue.virtual-worker-concurrency);
+            // parsing, DB and remote calls are bounded by ResourcePermits and the remote service guards
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("doc-proc-vthread-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(5);
-        executor.setQueueCapacity(25);
+        executor.setCorePoolSize(workerConcurrency);
+        executor.setMaxPoolSize(workerConcurrency);
+        executor.setQueueCapacity(workerConcurrency);
         executor.setThreadNamePrefix("doc-proc-thread-");
         executor.initialize();
         return executor;
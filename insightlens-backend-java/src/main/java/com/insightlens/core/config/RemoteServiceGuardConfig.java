@@ -0,0 +1,35 @@
+package com.insightlens.core.config;
+
+import com.insightlens.core.service.RemoteServiceGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * One {@link RemoteServiceGuard} per Python microservice, configured from
+ * {@code remote-service.profiles.<name>.*}. The limit and breaker state are published to
+ * Micrometer under {@code remote.service.*}, tagged with the service name.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class RemoteServiceGuardConfig {
+
+    private final RemoteServiceProperties remoteServiceProperties;
+    private final MeterRegistry meterRegistry;
+
+    @Bean
+    public RemoteServiceGuard segmentationGuard() {
+        return new RemoteServiceGuard("segmentation", remoteServiceProperties.profile("segmentation"), meterRegistry);
+    }
+
+    @Bean
+    public RemoteServiceGuard embeddingGuard() {
+        return new RemoteServiceGuard("embedding", remoteServiceProperties.profile("embedding"), meterRegistry);
+    }
+
+    @Bean
+    public RemoteServiceGuard llmAnalysisGuard() {
+        return new RemoteServiceGuard("llm-analysis", remoteServiceProperties.profile("llm-analysis"), meterRegistry);
+    }
+}
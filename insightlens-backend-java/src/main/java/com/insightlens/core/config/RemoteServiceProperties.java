@@ -0,0 +1,50 @@
+package com.insightlens.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Concurrency limit, circuit breaker and retry settings per downstream service, bound from
+ * {@code remote-service.profiles.<name>.*}. Unset values fall back to the defaults below.
+ */
+@Component
+@ConfigurationProperties(prefix = "remote-service")
+@Data
+public class RemoteServiceProperties {
+
+    private Map<String, Profile> profiles = new HashMap<>();
+
+    public Profile profile(String name) {
+        return profiles.getOrDefault(name, new Profile());
+    }
+
+    @Data
+    public static class Profile {
+        // Adaptive concurrency limit
+        private int initialLimit = 4;
+        private int minLimit = 1;
+        private int maxLimit = 20;
+        private double latencyTolerance = 2.0;
+        private double backoffRatio = 0.9;
+        private int baselineWindow = 500;
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+
+        // Circuit breaker
+        private int windowSize = 50;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 3;
+
+        // Retries of single calls (streams are not retried)
+        private int retryMaxAttempts = 3;
+        private Duration retryMinBackoff = Duration.ofMillis(500);
+        private Duration retryMaxBackoff = Duration.ofSeconds(10);
+        private double retryJitter = 0.5;
+    }
+}
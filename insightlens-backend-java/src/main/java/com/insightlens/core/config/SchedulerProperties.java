@@ -0,0 +1,65 @@
+package com.insightlens.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fair-share scheduling of queued documents, bound from {@code document.scheduler.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "document.scheduler")
+@Data
+public class SchedulerProperties {
+
+    /**
+     * Oldest claimable documents considered per poll.
+     */
+    private int candidateWindow = 500;
+
+    /**
+     * Oldest short jobs considered per poll in addition, so they are seen behind a long backlog.
+     */
+    private int shortJobWindow = 100;
+
+    /**
+     * Bytes of a document with cost factor 1.0 that make up one cost unit.
+     */
+    private DataSize costUnit = DataSize.ofKilobytes(64);
+
+    /**
+     * Relative extraction cost per byte by MIME type, e.g. {@code cost-factors[text/plain]=0.2}.
+     */
+    private Map<String, Double> costFactors = new HashMap<>();
+
+    private double defaultCostFactor = 1.0;
+
+    /**
+     * Documents costing at most this many units are short jobs.
+     */
+    private double shortJobMaxCost = 16;
+
+    /**
+     * Worker slots long jobs may never occupy.
+     */
+    private int shortLaneSlots = 1;
+
+    /**
+     * Share of a tenant's weight its backfill documents get next to its interactive ones.
+     */
+    private double backfillWeight = 0.25;
+
+    /**
+     * Cost units of credit a document earns per second of waiting, so no flow starves.
+     */
+    private double agingRate = 1.0;
+
+    /**
+     * Weight per tenant; tenants not listed have weight 1.
+     */
+    private Map<String, Double> tenantWeights = new HashMap<>();
+}
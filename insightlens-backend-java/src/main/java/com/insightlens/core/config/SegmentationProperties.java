@@ -0,0 +1,24 @@
+package com.insightlens.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "segmentation.strategy")
+@Data
+public class SegmentationProperties {
+
+    /**
+     * Strategy used when neither the upload request nor the content type selects one.
+     */
+    private String defaultStrategy = "character";
+
+    /**
+     * Strategy per MIME type, e.g. {@code segmentation.strategy.content-types[application/pdf]=token}.
+     */
+    private Map<String, String> contentTypes = new HashMap<>();
+}
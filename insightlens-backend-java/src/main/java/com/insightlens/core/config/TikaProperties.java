@@ -0,0 +1,51 @@
+package com.insightlens.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text extraction settings, bound from {@code tika.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "tika")
+@Data
+public class TikaProperties {
+
+    public enum Mode {
+        IN_PROCESS,
+        FORKED
+    }
+
+    /**
+     * Run parsers inside this JVM or in a pool of child JVMs.
+     */
+    private Mode mode = Mode.IN_PROCESS;
+
+    /**
+     * Upload content types that are parsed without detection (in-process mode only).
+     */
+    private List<String> trustedContentTypes = new ArrayList<>();
+
+    /**
+     * Directory of sample files parsed once at startup; empty disables warm-up.
+     */
+    private String warmUpDir = "";
+
+    private Fork fork = new Fork();
+
+    @Data
+    public static class Fork {
+        private int poolSize = 4;
+        private DataSize maxHeap = DataSize.ofMegabytes(512);
+        private Duration parseTimeout = Duration.ofMinutes(5);
+        // Child JVMs are recycled after this many files to shed leaked memory
+        private int maxFilesPerWorker = 100;
+        private String javaCommand = "java";
+    }
+}
@@ -1,15 +1,74 @@
 package com.insightlens.core.config;
 
+import io.netty.channel.ChannelOption;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.util.function.Function;
+
+/**
+ * One {@link WebClient} per Python microservice, each with its own Reactor Netty connection pool.
+ * Pool and client metrics are published to Micrometer under {@code reactor.netty.connection.provider.*}
+ * and {@code reactor.netty.http.client.*}, tagged with the profile name.
+ */
 @Configuration
+@Slf4j
+@RequiredArgsConstructor
 public class WebClientConfig {
-    
+
+    private final WebClientProperties webClientProperties;
+
+    @Bean
+    public WebClient segmentationWebClient(WebClient.Builder builder,
+                                           @Value("${segmentation.service.url}") String baseUrl) {
+        return buildClient("segmentation", builder, baseUrl);
+    }
+
+    @Bean
+    public WebClient embeddingWebClient(WebClient.Builder builder,
+                                        @Value("${embedding.service.url}") String baseUrl) {
+        return buildClient("embedding", builder, baseUrl);
+    }
+
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder()
+    public WebClient llmAnalysisWebClient(WebClient.Builder builder,
+                                          @Value("${llm.analysis.service.url}") String baseUrl) {
+        return buildClient("llm-analysis", builder, baseUrl);
+    }
+
+    private WebClient buildClient(String name, WebClient.Builder builder, String baseUrl) {
+        WebClientProperties.Profile profile = webClientProperties.profile(name);
+
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(profile.getMaxConnections())
+                .pendingAcquireMaxCount(profile.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(profile.getPendingAcquireTimeout())
+                .maxIdleTime(profile.getMaxIdleTime())
+                .maxLifeTime(profile.getMaxLifeTime())
+                .evictInBackground(profile.getEvictionInterval())
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) profile.getConnectTimeout().toMillis())
+                .responseTimeout(profile.getResponseTimeout())
+                .compress(profile.isCompression())
+                .metrics(true, Function.identity());
+
+        log.info("Configured '{}' WebClient for {} (maxConnections={}, pendingAcquireMaxCount={})",
+                name, baseUrl, profile.getMaxConnections(), profile.getPendingAcquireMaxCount());
+
+        return builder.clone()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) profile.getMaxInMemorySize().toBytes()))
                 .build();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package com.insightlens.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection pool and timeout settings per downstream service, bound from
+ * {@code webclient.profiles.<name>.*}. Unset values fall back to the defaults below.
+ */
+@Component
+@ConfigurationProperties(prefix = "webclient")
+@Data
+public class WebClientProperties {
+
+    private Map<String, Profile> profiles = new HashMap<>();
+
+    public Profile profile(String name) {
+        return profiles.getOrDefault(name, new Profile());
+    }
+
+    @Data
+    public static class Profile {
+        private int maxConnections = 50;
+        private int pendingAcquireMaxCount = 200;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(30);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(10);
+        private Duration evictionInterval = Duration.ofSeconds(15);
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration responseTimeout = Duration.ofSeconds(60);
+        private boolean compression = true;
+        private DataSize maxInMemorySize = DataSize.ofMegabytes(16);
+    }
+}
@@ -0,0 +1,73 @@
+package com.insightlens.core.controller;
+
+import com.insightlens.core.service.DocumentStorageService;
+import com.insightlens.core.service.OrchestrationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * LLM analysis of a document's segments. Requests block until the LLM analysis service has
+ * answered, so per-segment analysis is paged; repeated prompts over unchanged content are
+ * served from the cache. Results name the
+ * document whose segments were analyzed, which for a duplicate upload is its original.
+ */
+@RestController
+@RequestMapping("/api/documents/{documentId}/analysis")
+@RequiredArgsConstructor
+public class AnalysisController {
+
+    private final DocumentStorageService documentStorageService;
+    private final OrchestrationService orchestrationService;
+
+    @Value("${llm.analysis.segments.max-limit:200}")
+    private int maxSegmentPageSize;
+
+    /**
+     * Answers the prompt for the document as a whole, map-reduce over chunks for long documents.
+     */
+    @PostMapping
+    public ResponseEntity<?> analyzeDocument(@PathVariable String documentId, @RequestBody AnalysisRequest request) {
+        if (request.prompt() == null || request.prompt().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Prompt is empty"));
+        }
+        return documentStorageService.findContentDocumentId(documentId)
+                .<ResponseEntity<?>>map(contentDocumentId -> orchestrationService
+                        .analyzeDocument(contentDocumentId, request.prompt())
+                        .<ResponseEntity<?>>map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.status(HttpStatus.CONFLICT)
+                                .body(Map.of("error", "Document " + documentId + " has no segments yet"))))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Answers the prompt for one page of segments, several segments per LLM call. Keyset-paged
+     * like {@code GET /api/documents/{id}/segments}: pass the returned {@code nextAfter} as
+     * {@code after} for the next page.
+     */
+    @PostMapping("/segments")
+    public ResponseEntity<?> analyzeSegments(@PathVariable String documentId,
+                                             @RequestParam(value = "after", defaultValue = "-1") int after,
+                                             @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                             @RequestBody AnalysisRequest request) {
+        if (request.prompt() == null || request.prompt().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Prompt is empty"));
+        }
+        int pageSize = Math.max(1, Math.min(limit, maxSegmentPageSize));
+        return documentStorageService.findContentDocumentId(documentId)
+                .<ResponseEntity<?>>map(contentDocumentId -> ResponseEntity.ok(
+                        orchestrationService.analyzeSegments(contentDocumentId, request.prompt(), after, pageSize)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    public record AnalysisRequest(String prompt) {}
+}
@@ -0,0 +1,105 @@
+package com.insightlens.core.controller;
+
+import com.insightlens.core.service.BulkIngestService;
+import com.insightlens.core.service.DocumentStatusTracker;
+import com.insightlens.core.service.SegmentationStrategyResolver;
+import com.insightlens.core.service.UploadTooLargeException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/ingest")
+@Slf4j
+@RequiredArgsConstructor
+public class BulkIngestController {
+
+    private final BulkIngestService bulkIngestService;
+    private final SegmentationStrategyResolver segmentationStrategyResolver;
+    private final DocumentStatusTracker documentStatusTracker;
+
+    /**
+     * Imports every file of a zip archive sent as the raw request body.
+     */
+    @PostMapping("/archive")
+    public ResponseEntity<?> ingestArchive(
+            HttpServletRequest request,
+            @RequestParam(value = "batchId", required = false) String batchId,
+            @RequestParam(value = "segmentationStrategy", required = false) String segmentationStrategy,
+            @RequestHeader(value = DocumentController.TENANT_HEADER, required = false) String tenantId) {
+        if (segmentationStrategy != null && !segmentationStrategyResolver.isKnown(segmentationStrategy)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown segmentation strategy: " + segmentationStrategy));
+        }
+        try (InputStream archive = request.getInputStream()) {
+            return ResponseEntity.accepted().body(bulkIngestService.ingestArchive(archive, batchId, segmentationStrategy, tenantId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        } catch (UploadTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Failed to ingest archive", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to ingest archive"));
+        }
+    }
+
+    /**
+     * Imports files listed in a manifest by their path below the configured manifest root.
+     */
+    @PostMapping("/manifest")
+    public ResponseEntity<?> ingestManifest(@RequestBody ManifestRequest request,
+                                            @RequestHeader(value = DocumentController.TENANT_HEADER, required = false) String tenantId) {
+        if (request.files() == null || request.files().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Manifest lists no files"));
+        }
+        if (request.segmentationStrategy() != null && !segmentationStrategyResolver.isKnown(request.segmentationStrategy())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown segmentation strategy: " + request.segmentationStrategy()));
+        }
+        try {
+            return ResponseEntity.accepted().body(bulkIngestService.ingestManifest(
+                    request.files(), request.batchId(), request.segmentationStrategy(), tenantId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        } catch (UploadTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Failed to ingest manifest", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to ingest manifest"));
+        }
+    }
+
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<BulkIngestService.BatchProgress> getBatchProgress(@PathVariable String batchId) {
+        BulkIngestService.BatchProgress progress = bulkIngestService.progress(batchId);
+        return progress.total() == 0 ? ResponseEntity.notFound().build() : ResponseEntity.ok(progress);
+    }
+
+    /**
+     * Server-Sent Events stream of batch {@code progress} and per-document {@code status} events.
+     */
+    @GetMapping(path = "/batches/{batchId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamBatchProgress(@PathVariable String batchId) {
+        return documentStatusTracker.subscribeBatch(batchId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    public record ManifestRequest(String batchId, String segmentationStrategy,
+                                  List<BulkIngestService.ManifestEntry> files) {}
+}
@@ -1,23 +1,34 @@
 package com.insightlens.core.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.insightlens.core.model.Document;
-import com.insightlens.core.model.DocumentStatus;
-import com.insightlens.core.repository.DocumentRepository;
-import com.insightlens.core.service.AsyncDocumentProcessorService;
+import com.insightlens.core.repository.DocumentSegmentReader;
+import com.insightlens.core.service.DocumentStatusTracker;
+import com.insightlens.core.service.DocumentStorageService;
+import com.insightlens.core.service.ResegmentationService;
+import com.insightlens.core.service.SegmentationStrategyResolver;
+import com.insightlens.core.service.UploadTooLargeException;
 import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/documents")
@@ -25,12 +36,22 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class DocumentController {
 
-    private final DocumentRepository documentRepository;
-    private final AsyncDocumentProcessorService asyncDocumentProcessorService;
+    // Fair-share scheduling groups documents by this header; absent means the default tenant
+    static final String TENANT_HEADER = "X-Tenant-Id";
+
+    private final SegmentationStrategyResolver segmentationStrategyResolver;
+    private final DocumentStorageService documentStorageService;
+    private final DocumentStatusTracker documentStatusTracker;
+    private final DocumentSegmentReader documentSegmentReader;
+    private final ResegmentationService resegmentationService;
+    private final ObjectMapper objectMapper;
 
     @Value("${file.upload-dir}")
     private String uploadDir;
 
+    @Value("${segments.page.max-limit:1000}")
+    private int maxSegmentPageSize;
+
     @PostConstruct
     public void init() {
         try {
@@ -46,57 +67,160 @@ public class DocumentController {
     }
 
     @PostMapping("/upload")
-    public ResponseEntity<Map<String, String>> uploadDocument(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, String>> uploadDocument(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "segmentationStrategy", required = false) String segmentationStrategy,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenantId) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
         }
+        if (segmentationStrategy != null && !segmentationStrategyResolver.isKnown(segmentationStrategy)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown segmentation strategy: " + segmentationStrategy));
+        }
 
-        try {
-            String documentId = UUID.randomUUID().toString();
-            String originalFilename = file.getOriginalFilename();
-            String storedFilePath = Paths.get(uploadDir, documentId + "_" + originalFilename).toString();
-
-            // Save the file
-            file.transferTo(Paths.get(storedFilePath));
+        try (InputStream content = file.getInputStream()) {
+            return accepted(documentStorageService.store(
+                    content, file.getOriginalFilename(), file.getContentType(), segmentationStrategy, tenantId));
+        } catch (UploadTooLargeException e) {
+            return tooLarge(e);
+        } catch (IOException e) {
+            log.error("Failed to process file upload", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to process file upload"));
+        }
+    }
 
-            // Create and save document entity
-            Document document = Document.builder()
-                    .id(documentId)
-                    .originalFileName(originalFilename)
-                    .storedFilePath(storedFilePath)
-                    .fileContentType(file.getContentType())
-                    .fileSize(file.getSize())
-                    .status(DocumentStatus.UPLOADED)
-                    .build();
+    /**
+     * Raw-body upload: the request body is streamed straight to the upload directory instead of
+     * being spooled by the multipart resolver first.
+     */
+    @PostMapping("/upload/stream")
+    public ResponseEntity<Map<String, String>> uploadDocumentStream(
+            HttpServletRequest request,
+            @RequestParam("filename") String filename,
+            @RequestParam(value = "segmentationStrategy", required = false) String segmentationStrategy,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenantId) {
+        if (request.getContentLengthLong() == 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "File is empty"));
+        }
+        if (segmentationStrategy != null && !segmentationStrategyResolver.isKnown(segmentationStrategy)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown segmentation strategy: " + segmentationStrategy));
+        }
+        // Not bounded by the multipart limits; a chunked body is cut off while it is copied
+        if (request.getContentLengthLong() > documentStorageService.getMaxUploadSize().toBytes()) {
+            return tooLarge(new UploadTooLargeException("Upload is larger than the limit of "
+                    + documentStorageService.getMaxUploadSize().toBytes() + " bytes"));
+        }
 
-            documentRepository.save(document);
+        try (InputStream content = request.getInputStream()) {
+            return accepted(documentStorageService.store(
+                    content, filename, request.getContentType(), segmentationStrategy, tenantId));
+        } catch (UploadTooLargeException e) {
+            return tooLarge(e);
+        } catch (IOException e) {
+            log.error("Failed to process streamed upload", e);
+            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to process file upload"));
+        }
+    }
 
-            // Start async processing
-            asyncDocumentProcessorService.processUploadedDocument(documentId);
+    private static ResponseEntity<Map<String, String>> tooLarge(UploadTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error", e.getMessage()));
+    }
 
+    private ResponseEntity<Map<String, String>> accepted(Document document) {
+        if (document.getDuplicateOfDocumentId() != null) {
             return ResponseEntity.accepted().body(Map.of(
-                    "documentId", documentId,
-                    "message", "File upload accepted. Processing initiated."
+                    "documentId", document.getId(),
+                    "duplicateOf", document.getDuplicateOfDocumentId(),
+                    "message", "File upload accepted. Content already processed; reusing existing segments."
             ));
+        }
+        return ResponseEntity.accepted().body(Map.of(
+                "documentId", document.getId(),
+                "message", "File upload accepted. Document queued for processing."
+        ));
+    }
 
-        } catch (IOException e) {
-            log.error("Failed to process file upload", e);
-            return ResponseEntity.internalServerError().body(Map.of("error", "Failed to process file upload"));
+    /**
+     * One page of a document's segments, keyset-paged: pass the returned {@code nextAfter} as
+     * {@code after} for the next page. {@code includeText=false} leaves out the segment bodies.
+     */
+    @GetMapping(path = "/{documentId}/segments", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DocumentSegmentReader.SegmentPage> getSegments(
+            @PathVariable String documentId,
+            @RequestParam(value = "after", defaultValue = "-1") int after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "includeText", defaultValue = "true") boolean includeText) {
+        int pageSize = Math.max(1, Math.min(limit, maxSegmentPageSize));
+        return documentStorageService.findContentDocumentId(documentId)
+                .map(contentDocumentId -> {
+                    DocumentSegmentReader.SegmentPage page =
+                            documentSegmentReader.findPage(contentDocumentId, after, pageSize, includeText);
+                    return ResponseEntity.ok(new DocumentSegmentReader.SegmentPage(
+                            documentId, page.segments(), page.nextAfter()));
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * All segments after {@code after} as newline-delimited JSON, streamed from a database cursor.
+     */
+    @GetMapping(path = "/{documentId}/segments", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSegments(
+            @PathVariable String documentId,
+            @RequestParam(value = "after", defaultValue = "-1") int after,
+            @RequestParam(value = "includeText", defaultValue = "true") boolean includeText) {
+        return documentStorageService.findContentDocumentId(documentId)
+                .map(contentDocumentId -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body((StreamingResponseBody) out -> {
+                            ObjectWriter writer = objectMapper.writer();
+                            documentSegmentReader.streamSegments(contentDocumentId, after, includeText, row -> {
+                                try {
+                                    out.write(writer.writeValueAsBytes(row));
+                                    out.write('\n');
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+                        }))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Queues the document to be segmented again with the current segmenter; segments whose text
+     * is unchanged keep their embeddings.
+     */
+    @PostMapping("/{documentId}/resegment")
+    public ResponseEntity<Map<String, String>> resegmentDocument(@PathVariable String documentId) {
+        try {
+            return resegmentationService.schedule(documentId)
+                    .map(document -> ResponseEntity.accepted().body(Map.of(
+                            "documentId", document.getId(),
+                            "status", document.getStatus().name())))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * Current status, served from memory while it is fresh; prefer {@code /events} over polling this.
+     */
     @GetMapping("/{documentId}/status")
-    public ResponseEntity<Map<String, Object>> getDocumentStatus(@PathVariable String documentId) {
-        return documentRepository.findById(documentId)
-                .map(document -> {
-                    Map<String, Object> response = Map.of(
-                            "documentId", document.getId(),
-                            "status", document.getStatus(),
-                            "statusMessage", document.getStatusMessage(),
-                            "lastUpdated", document.getUpdatedAt()
-                    );
-                    return ResponseEntity.ok(response);
-                })
+    public ResponseEntity<DocumentStatusTracker.DocumentStatusView> getDocumentStatus(@PathVariable String documentId) {
+        return documentStatusTracker.current(documentId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Server-Sent Events stream of {@code status} events, including segment and embedding
+     * progress, that ends once the document reaches a final state.
+     */
+    @GetMapping(path = "/{documentId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamDocumentStatus(@PathVariable String documentId) {
+        return documentStatusTracker.subscribe(documentId)
+                .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 } 
\ No newline at end of file
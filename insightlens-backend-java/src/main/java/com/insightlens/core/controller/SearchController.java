@@ -0,0 +1,80 @@
+package com.insightlens.core.controller;
+
+import com.insightlens.core.model.DocumentSegment;
+import com.insightlens.core.repository.DocumentSegmentRepository;
+import com.insightlens.core.repository.SegmentBodyStore;
+import com.insightlens.core.service.DocumentStorageService;
+import com.insightlens.core.service.EmbeddingServiceClient;
+import com.insightlens.core.service.VectorIndexService;
+import com.insightlens.core.util.HnswIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/documents")
+@Slf4j
+@RequiredArgsConstructor
+public class SearchController {
+
+    private static final int DEFAULT_TOP_K = 10;
+    private static final int MAX_TOP_K = 100;
+
+    private final EmbeddingServiceClient embeddingServiceClient;
+    private final VectorIndexService vectorIndexService;
+    private final DocumentSegmentRepository documentSegmentRepository;
+    private final DocumentStorageService documentStorageService;
+    private final SegmentBodyStore segmentBodyStore;
+
+    @PostMapping("/search")
+    public ResponseEntity<Map<String, Object>> search(@RequestBody SearchRequest request) {
+        if (request.query() == null || request.query().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Query is empty"));
+        }
+        if (!vectorIndexService.isEnabled()) {
+            return ResponseEntity.status(503).body(Map.of("error", "Vector search is disabled"));
+        }
+        int topK = request.topK() == null ? DEFAULT_TOP_K : Math.min(Math.max(request.topK(), 1), MAX_TOP_K);
+
+        float[] queryVector = embeddingServiceClient.embed(List.of(request.query())).block().get(0);
+        // Duplicate uploads have no segments of their own
+        String documentId = request.documentId() != null
+                ? documentStorageService.resolveContentDocumentId(request.documentId())
+                : null;
+        List<HnswIndex.Match> matches = vectorIndexService.search(queryVector, topK, documentId);
+
+        Map<String, DocumentSegment> segmentsById = documentSegmentRepository
+                .findAllById(matches.stream().map(HnswIndex.Match::segmentId).toList())
+                .stream()
+                .collect(Collectors.toMap(DocumentSegment::getId, Function.identity()));
+
+        List<Map<String, Object>> results = new ArrayList<>(matches.size());
+        for (HnswIndex.Match match : matches) {
+            DocumentSegment segment = segmentsById.get(match.segmentId());
+            if (segment == null) {
+                continue; // Deleted since it was indexed
+            }
+            results.add(Map.of(
+                    "documentId", match.documentId(),
+                    "segmentId", match.segmentId(),
+                    "segmentOrder", segment.getSegmentOrder(),
+                    "score", match.score(),
+                    "segmentText", segmentBodyStore.textOf(segment)
+            ));
+        }
+        log.debug("Vector search returned {} results (documentId={})", results.size(), request.documentId());
+        return ResponseEntity.ok(Map.of("results", results));
+    }
+
+    public record SearchRequest(String query, Integer topK, String documentId) {}
+}
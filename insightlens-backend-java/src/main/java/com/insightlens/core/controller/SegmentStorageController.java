@@ -0,0 +1,63 @@
+package com.insightlens.core.controller;
+
+import com.insightlens.core.repository.SegmentBodyStore;
+import com.insightlens.core.service.ResegmentationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/segment-storage")
+@RequiredArgsConstructor
+public class SegmentStorageController {
+
+    private final SegmentBodyStore segmentBodyStore;
+    private final ResegmentationService resegmentationService;
+
+    /**
+     * Logical against stored size of all segment texts. Scans the segment table, so it is not
+     * meant for frequent polling.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<SegmentBodyStore.StorageStats> getStats() {
+        return ResponseEntity.ok(segmentBodyStore.stats());
+    }
+
+    /**
+     * Builds a new compression dictionary from the most shared segment bodies; new bodies use it.
+     */
+    @PostMapping("/dictionary")
+    public ResponseEntity<Map<String, Object>> trainDictionary() {
+        Integer dictionaryId = segmentBodyStore.trainDictionary();
+        if (dictionaryId == null) {
+            return ResponseEntity.unprocessableEntity().body(Map.of("error", "No deduplicated segment bodies to train on"));
+        }
+        return ResponseEntity.ok(Map.of("dictionaryId", dictionaryId));
+    }
+
+    /**
+     * Deletes segment bodies no segment refers to any more; also runs every
+     * {@code segments.storage.orphan-cleanup-interval}.
+     */
+    @PostMapping("/orphans/cleanup")
+    public ResponseEntity<Map<String, Object>> deleteOrphans() {
+        return ResponseEntity.ok(Map.of("deletedBodies", segmentBodyStore.deleteOrphans()));
+    }
+
+    /**
+     * Queues documents segmented by an older segmenter version (after a change of strategy
+     * parameters or chunking) for re-segmentation as backfill.
+     */
+    @PostMapping("/resegment")
+    public ResponseEntity<ResegmentationService.ScheduleResult> resegmentStale(
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return ResponseEntity.accepted().body(resegmentationService.scheduleStale(
+                limit != null ? Math.max(0, limit) : Integer.MAX_VALUE));
+    }
+}
@@ -4,19 +4,33 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.springframework.data.domain.DomainEvents;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+        @Index(name = "idx_documents_status_lease", columnList = "status, lease_expires_at"),
+        @Index(name = "idx_documents_content_hash", columnList = "content_hash"),
+        @Index(name = "idx_documents_batch_id", columnList = "batch_id")
+})
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class Document {
+public class Document implements Persistable<String> {
+
+    public static final String DEFAULT_TENANT = "default";
+
     @Id
     private String id;
 
@@ -32,6 +46,13 @@ public class Document {
     @Column(nullable = false)
     private long fileSize;
 
+    // Hex SHA-256 of the stored file
+    @Column(length = 64)
+    private String contentHash;
+
+    // Set when the content was already extracted; segments are read from that document instead
+    private String duplicateOfDocumentId;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private DocumentStatus status;
@@ -39,6 +60,55 @@ public class Document {
     @Column(length = 1024)
     private String statusMessage;
 
+    // Segmentation strategy requested at upload time; null means resolve by content type
+    @Column(length = 32)
+    private String segmentationStrategy;
+
+    // Segmenter version (SegmentationStrategyResolver#versionFor) of the current segments; null before extraction
+    @Column(length = 100)
+    private String segmenterVersion;
+
+    // Tenant (from the X-Tenant-Id header) whose documents share one fair-share queue
+    @ColumnDefault("'default'")
+    @Column(nullable = false, length = 64)
+    @Builder.Default
+    private String tenantId = DEFAULT_TENANT;
+
+    // Ordinal, so the queue can claim interactive uploads before backfill
+    @Enumerated(EnumType.ORDINAL)
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    @Builder.Default
+    private IngestPriority priority = IngestPriority.INTERACTIVE;
+
+    // Bulk ingestion batch the document arrived with, if any
+    @Column(length = 64)
+    private String batchId;
+
+    // Work queue lease; only ever written by DocumentRepository's lease queries, never by entity saves
+    @Column(insertable = false, updatable = false)
+    private String leaseOwner;
+
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime leaseExpiresAt;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private int attempts;
+
+    // Extraction checkpoint (see ExtractionCheckpoint); only written together with segment batches
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private int checkpointSegmentOrder;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private int checkpointPage;
+
+    @ColumnDefault("0")
+    @Column(nullable = false, insertable = false, updatable = false)
+    private int checkpointChunks;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -46,4 +116,29 @@ public class Document {
     @UpdateTimestamp
     @Column(nullable = false)
     private LocalDateTime updatedAt;
+
+    // Ids are assigned before saving, so Spring Data cannot tell new documents by a null id and
+    // would merge (SELECT, then INSERT) every new one instead of persisting it
+    @Transient
+    @Builder.Default
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean persisted = false;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    // Published by Spring Data on save() and saveAll(); DocumentStatusTracker picks it up after commit
+    @DomainEvents
+    Collection<DocumentStatusEvent> statusEvents() {
+        return List.of(new DocumentStatusEvent(id, batchId, status, statusMessage));
+    }
 } 
\ No newline at end of file
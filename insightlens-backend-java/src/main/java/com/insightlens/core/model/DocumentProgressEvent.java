@@ -0,0 +1,14 @@
+package com.insightlens.core.model;
+
+/**
+ * Intermediate progress of a document within its current status, published as batches commit.
+ *
+ * @param completed Segments of the document persisted or embedded so far
+ */
+public record DocumentProgressEvent(String documentId, Stage stage, long completed) {
+
+    public enum Stage {
+        SEGMENTS_PERSISTED,
+        SEGMENTS_EMBEDDED
+    }
+}
@@ -5,12 +5,20 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "document_segments")
+@Table(name = "document_segments", indexes = {
+        // Keyset paging and per-document scans; segment_order is unique within a document
+        @Index(name = "idx_document_segments_document_order", columnList = "document_id, segment_order"),
+        // Reference checks when orphaned segment bodies are deleted
+        @Index(name = "idx_document_segments_body_hash", columnList = "body_hash")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -23,12 +31,38 @@ public class DocumentSegment {
     @JoinColumn(name = "document_id", nullable = false)
     private Document document;
 
+    // Negative for the previous generation of a document being re-segmented (see ResegmentationService)
     @Column(nullable = false)
     private int segmentOrder;
 
-    @Column(columnDefinition = "TEXT", nullable = false)
+    // Null when the text is stored in segment_bodies (segments.storage.mode=deduplicated)
+    @Column(columnDefinition = "TEXT")
     private String segmentText;
 
+    @Column(name = "body_hash", length = 64)
+    private String bodyHash;
+
+    // Hex SHA-256 of the text, in either storage mode; unchanged text keeps its embedding across re-segmentation
+    @Column(length = 64)
+    private String contentHash;
+
+    // SegmentationStrategyResolver#versionFor at the time the segment was cut
+    @Column(length = 100)
+    private String segmenterVersion;
+
+    // Read-only view of bodyHash; decompressed only when the text is asked for (SegmentBodyStore.textOf)
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "body_hash", insertable = false, updatable = false)
+    private SegmentBody body;
+
+    // Null until the embedding stage has processed this segment
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(columnDefinition = "real[]")
+    private float[] embedding;
+
+    private LocalDateTime embeddedAt;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,8 @@
+package com.insightlens.core.model;
+
+/**
+ * Published by Spring Data whenever a {@link Document} is saved; every save in the pipeline is a
+ * status change.
+ */
+public record DocumentStatusEvent(String documentId, String batchId, DocumentStatus status, String statusMessage) {
+}
@@ -0,0 +1,10 @@
+package com.insightlens.core.model;
+
+/**
+ * Processing priority of a document. Stored by ordinal and claimed in ascending order, so
+ * constants must stay declared from most to least urgent.
+ */
+public enum IngestPriority {
+    INTERACTIVE, // Uploaded by a user through the API, someone is waiting for it
+    BACKFILL     // Bulk archive, manifest or directory import
+}
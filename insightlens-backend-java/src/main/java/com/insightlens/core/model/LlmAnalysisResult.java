@@ -0,0 +1,47 @@
+package com.insightlens.core.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A cached answer of the LLM analysis service to one instruction over one piece of content.
+ * Rows are only written by LlmAnalysisCache and never change; a new prompt or model version
+ * simply misses.
+ */
+@Entity
+@Table(name = "llm_analysis_cache")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LlmAnalysisResult {
+
+    // Hex SHA-256 of the prompt hash and the content hash
+    @Id
+    @Column(length = 64)
+    private String cacheKey;
+
+    // Hex SHA-256 of the model version and the instruction sent
+    @Column(nullable = false, length = 64)
+    private String promptHash;
+
+    // Content hash of the segment, or of the segment hashes a chunk was built from
+    @Column(nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String output;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,55 @@
+package com.insightlens.core.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A unique segment text, stored once and shared by every segment with the same content.
+ * Rows are only written by DocumentSegmentBatchWriter and never change.
+ */
+@Entity
+@Table(name = "segment_bodies")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SegmentBody {
+
+    // Hex SHA-256 of the UTF-8 text
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    // SegmentBodyCodec.CODEC_*
+    @Column(nullable = false)
+    private int codec;
+
+    // Preset dictionary the content was deflated with; null for none
+    private Integer dictionaryId;
+
+    @ToString.Exclude
+    @Column(nullable = false)
+    private byte[] content;
+
+    // Characters, as length(segment_text) would report them
+    @Column(nullable = false)
+    private int textLength;
+
+    // UTF-8 bytes before encoding
+    @Column(nullable = false)
+    private int rawSize;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
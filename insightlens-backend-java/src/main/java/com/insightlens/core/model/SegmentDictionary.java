@@ -0,0 +1,50 @@
+package com.insightlens.core.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Preset deflate dictionary for segment bodies. Dictionaries are never changed or deleted while
+ * bodies reference them; the newest one is used for new bodies.
+ */
+@Entity
+@Table(name = "segment_dictionaries")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SegmentDictionary {
+
+    public static final String SEQUENCE = "segment_dictionaries_seq";
+
+    // Drawn from a sequence, so instances training at the same time get distinct ids
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "segment_dictionaries_seq")
+    @SequenceGenerator(name = "segment_dictionaries_seq", sequenceName = SEQUENCE, allocationSize = 1)
+    private int id;
+
+    @ToString.Exclude
+    @Column(nullable = false)
+    private byte[] content;
+
+    // Number of segment bodies the dictionary was built from
+    @Column(nullable = false)
+    private int sampleSize;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
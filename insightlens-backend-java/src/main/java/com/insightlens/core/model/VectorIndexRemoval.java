@@ -0,0 +1,36 @@
+package com.insightlens.core.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A deleted segment that had a vector. Rows are only written by DocumentSegmentBatchWriter, in the
+ * transaction that deletes the segment, and are replayed by the vector index catch-up of every
+ * instance (see VectorIndexService), so segments deleted elsewhere leave its index too.
+ */
+@Entity
+@Table(name = "vector_index_removals", indexes = {
+        // Catch-up reads removals past its watermark; pruning deletes the oldest
+        @Index(name = "idx_vector_index_removals_removed_at", columnList = "removed_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VectorIndexRemoval {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String segmentId;
+
+    // Application clock, like document_segments.embedded_at, so both share the catch-up watermark
+    @Column(name = "removed_at", nullable = false)
+    private LocalDateTime removedAt;
+}
@@ -0,0 +1,20 @@
+package com.insightlens.core.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Claimable document as seen by the scheduler, without loading the entity.
+ */
+public interface ClaimCandidate {
+    String getId();
+
+    String getTenantId();
+
+    long getFileSize();
+
+    String getFileContentType();
+
+    int getPriority();
+
+    LocalDateTime getCreatedAt();
+}
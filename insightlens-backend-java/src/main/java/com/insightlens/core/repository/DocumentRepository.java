@@ -1,9 +1,111 @@
 package com.insightlens.core.repository;
 
 import com.insightlens.core.model.Document;
+import com.insightlens.core.model.DocumentStatus;
+import com.insightlens.core.model.IngestPriority;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, String> {
-} 
\ No newline at end of file
+
+    List<Document> findByContentHashAndDuplicateOfDocumentIdIsNullAndStatusInOrderByCreatedAtAsc(
+            String contentHash, Collection<DocumentStatus> statuses);
+
+    // Keyset-paged by id, for jobs that walk all original (non-duplicate) documents
+    List<Document> findByStatusInAndDuplicateOfDocumentIdIsNullAndIdGreaterThanOrderByIdAsc(
+            Collection<DocumentStatus> statuses, String afterId, Pageable pageable);
+
+    /**
+     * Claimable documents for {@link com.insightlens.core.service.FairShareScheduler} to choose from:
+     * the oldest by priority plus the oldest small ones, which would otherwise sit behind a backlog.
+     * Duplicates are never claimed; their original is processed in their place.
+     */
+    @Query(value = "(SELECT id, tenant_id AS \"tenantId\", file_size AS \"fileSize\", "
+            + "file_content_type AS \"fileContentType\", priority, created_at AS \"createdAt\" FROM documents "
+            + "WHERE status IN (:statuses) AND duplicate_of_document_id IS NULL "
+            + "AND (lease_expires_at IS NULL OR lease_expires_at < now()) "
+            + "ORDER BY priority, created_at LIMIT :window) "
+            + "UNION "
+            + "(SELECT id, tenant_id, file_size, file_content_type, priority, created_at FROM documents "
+            + "WHERE status IN (:statuses) AND duplicate_of_document_id IS NULL "
+            + "AND (lease_expires_at IS NULL OR lease_expires_at < now()) "
+            + "AND file_size <= :smallFileSize ORDER BY created_at LIMIT :smallWindow)", nativeQuery = true)
+    List<ClaimCandidate> findClaimCandidates(@Param("statuses") Collection<String> statuses,
+                                             @Param("window") int window,
+                                             @Param("smallFileSize") long smallFileSize,
+                                             @Param("smallWindow") int smallWindow);
+
+    /**
+     * Locks those of the given documents that are still claimable. Rows locked by other instances
+     * are skipped, so concurrent pollers never claim the same document. Must run inside the
+     * transaction that then calls {@link #lease}.
+     */
+    @Query(value = "SELECT id FROM documents "
+            + "WHERE id IN (:ids) AND status IN (:statuses) AND duplicate_of_document_id IS NULL "
+            + "AND (lease_expires_at IS NULL OR lease_expires_at < now()) FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<String> lockClaimableIds(@Param("ids") Collection<String> ids, @Param("statuses") Collection<String> statuses);
+
+    @Query(value = "SELECT COUNT(*) FROM documents WHERE status IN (:statuses) AND priority = :priority "
+            + "AND duplicate_of_document_id IS NULL AND (file_size <= :smallFileSize) = :small", nativeQuery = true)
+    long countQueued(@Param("statuses") Collection<String> statuses, @Param("priority") int priority,
+                     @Param("smallFileSize") long smallFileSize, @Param("small") boolean small);
+
+    /**
+     * Documents of a batch per status; a duplicate counts with the status of its original.
+     */
+    @Query("SELECT COALESCE(o.status, d.status) AS status, COUNT(d) AS count FROM Document d "
+            + "LEFT JOIN Document o ON o.id = d.duplicateOfDocumentId "
+            + "WHERE d.batchId = :batchId GROUP BY COALESCE(o.status, d.status)")
+    List<StatusCount> countByStatusForBatch(@Param("batchId") String batchId);
+
+    long countByStatusAndPriority(DocumentStatus status, IngestPriority priority);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE documents SET lease_owner = :owner, "
+            + "lease_expires_at = now() + (:leaseSeconds * interval '1 second'), attempts = attempts + 1 "
+            + "WHERE id IN (:ids)", nativeQuery = true)
+    int lease(@Param("ids") Collection<String> ids, @Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE documents SET lease_expires_at = now() + (:leaseSeconds * interval '1 second') "
+            + "WHERE id IN (:ids) AND lease_owner = :owner", nativeQuery = true)
+    int extendLeases(@Param("ids") Collection<String> ids, @Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE documents SET lease_owner = NULL, lease_expires_at = NULL "
+            + "WHERE id = :id AND lease_owner = :owner", nativeQuery = true)
+    int releaseLease(@Param("id") String id, @Param("owner") String owner);
+
+    /**
+     * Releases a document that could not proceed because a remote service is unavailable. It is
+     * not claimed again until the delay has passed, and the attempt it was claimed with is given back.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE documents SET lease_owner = NULL, "
+            + "lease_expires_at = now() + (:delaySeconds * interval '1 second'), attempts = GREATEST(attempts - 1, 0) "
+            + "WHERE id = :id AND lease_owner = :owner", nativeQuery = true)
+    int park(@Param("id") String id, @Param("owner") String owner, @Param("delaySeconds") long delaySeconds);
+
+    /**
+     * Releases a document to be claimed again once the delay has passed; the attempt is kept.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE documents SET lease_owner = NULL, "
+            + "lease_expires_at = now() + (:delaySeconds * interval '1 second') "
+            + "WHERE id = :id AND lease_owner = :owner", nativeQuery = true)
+    int retryLater(@Param("id") String id, @Param("owner") String owner, @Param("delaySeconds") long delaySeconds);
+}
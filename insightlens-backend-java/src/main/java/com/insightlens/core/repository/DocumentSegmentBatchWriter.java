@@ -0,0 +1,317 @@
+package com.insightlens.core.repository;
+
+import com.insightlens.core.model.DocumentProgressEvent;
+import com.insightlens.core.model.DocumentSegment;
+import com.insightlens.core.service.ExtractionCheckpoint;
+import com.insightlens.core.service.PipelineMetrics;
+import com.insightlens.core.service.ResourcePermits;
+import com.insightlens.core.util.SegmentBodyCodec;
+import io.micrometer.observation.Observation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes {@link DocumentSegment} rows with JDBC batch inserts, one short transaction per batch.
+ * Bypasses the persistence context so large documents neither pay one round trip per segment
+ * nor keep a single transaction open for the whole parse.
+ */
+@Repository
+@Slf4j
+@RequiredArgsConstructor
+public class DocumentSegmentBatchWriter {
+
+    private static final String INSERT_SEGMENT_SQL =
+            "INSERT INTO document_segments (id, document_id, segment_order, segment_text, body_hash, content_hash, "
+                    + "segmenter_version, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_EMBEDDING_SQL =
+            "UPDATE document_segments SET embedding = ?, embedded_at = ? WHERE id = ?";
+
+    private static final String DELETE_SEGMENTS_FROM_SQL = loggingRemovals(
+            "DELETE FROM document_segments WHERE document_id = ? AND segment_order >= ?", "SELECT count(*) FROM removed");
+
+    private static final String COUNT_SUPERSEDED_SQL =
+            "SELECT count(*) FROM document_segments WHERE document_id = ? AND segment_order < 0";
+
+    // -1 - order keeps the previous generation in order, below every keyset page (which start after -1)
+    private static final String SUPERSEDE_SEGMENTS_SQL =
+            "UPDATE document_segments SET segment_order = -1 - segment_order WHERE document_id = ? AND segment_order >= 0";
+
+    // Rows written before content hashes were recorded are matched on their body hash or their text
+    private static final String REUSE_EMBEDDINGS_SQL =
+            "UPDATE document_segments n SET embedding = o.embedding, embedded_at = ? "
+                    + "FROM (SELECT DISTINCT ON (hash) hash, embedding FROM ("
+                    + "SELECT coalesce(content_hash, body_hash, encode(sha256(convert_to(segment_text, 'UTF8')), 'hex')) AS hash, "
+                    + "embedding FROM document_segments "
+                    + "WHERE document_id = ? AND segment_order < 0 AND embedding IS NOT NULL) previous ORDER BY hash) o "
+                    + "WHERE n.document_id = ? AND n.segment_order >= 0 AND n.embedding IS NULL AND n.content_hash = o.hash "
+                    + "RETURNING n.id, n.embedding";
+
+    private static final String DELETE_CURRENT_SQL = loggingRemovals(
+            "DELETE FROM document_segments WHERE document_id = ? AND segment_order >= 0", "SELECT id FROM removed");
+
+    private static final String RESTORE_SUPERSEDED_SQL =
+            "UPDATE document_segments SET segment_order = -1 - segment_order WHERE document_id = ? AND segment_order < 0";
+
+    private static final String DELETE_SUPERSEDED_SQL = loggingRemovals(
+            "DELETE FROM document_segments WHERE document_id = ? AND segment_order < 0", "SELECT id FROM removed");
+
+    private static final String UPDATE_CHECKPOINT_SQL =
+            "UPDATE documents SET checkpoint_segment_order = ?, checkpoint_page = ?, checkpoint_chunks = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ResourcePermits resourcePermits;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SegmentBodyStore segmentBodyStore;
+    private final PipelineMetrics pipelineMetrics;
+
+    /**
+     * A vector carried over from the previous generation of a document to a new segment.
+     */
+    public record ReusedEmbedding(String segmentId, float[] vector) {}
+
+    /**
+     * Outcome of {@link #restoreSuperseded}: the segments current again, and the ids of the
+     * segments of the abandoned generation that were deleted.
+     */
+    public record RestoredGeneration(int restored, List<String> discardedSegmentIds) {}
+
+    /**
+     * Inserts the given segments of one document and commits them as a single transaction.
+     *
+     * @param documentId The owning document
+     * @param segments   The segments to insert
+     */
+    public void writeBatch(String documentId, List<DocumentSegment> segments) {
+        writeBatch(documentId, segments, null);
+    }
+
+    /**
+     * Inserts the given segments of one document and, in the same transaction, records the
+     * extraction position they end at, so the checkpoint never runs ahead of or behind the rows.
+     *
+     * @param checkpoint The position after the last segment, or null to leave it unchanged
+     */
+    public void writeBatch(String documentId, List<DocumentSegment> segments, ExtractionCheckpoint checkpoint) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        boolean deduplicated = segmentBodyStore.isDeduplicated();
+        for (DocumentSegment segment : segments) {
+            if (segment.getContentHash() == null) {
+                segment.setContentHash(SegmentBodyCodec.hash(segment.getSegmentText()));
+            }
+        }
+        Observation observation = pipelineMetrics.start(PipelineMetrics.Stage.PERSIST, documentId);
+        try (Observation.Scope scope = observation.openScope();
+             ResourcePermits.Permit permit = resourcePermits.acquire(ResourcePermits.Resource.DATABASE)) {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (deduplicated) {
+                    // Bodies first, in the same transaction, so a committed segment always has its body
+                    segmentBodyStore.insert(segmentBodyStore.prepare(segments));
+                }
+                jdbcTemplate.batchUpdate(INSERT_SEGMENT_SQL, segments, segments.size(), (ps, segment) -> {
+                    ps.setString(1, segment.getId());
+                    ps.setString(2, documentId);
+                    ps.setInt(3, segment.getSegmentOrder());
+                    ps.setString(4, deduplicated ? null : segment.getSegmentText());
+                    ps.setString(5, deduplicated ? segment.getBodyHash() : null);
+                    ps.setString(6, segment.getContentHash());
+                    ps.setString(7, segment.getSegmenterVersion());
+                    ps.setTimestamp(8, createdAt);
+                });
+                if (checkpoint != null) {
+                    updateCheckpoint(documentId, checkpoint);
+                }
+                // Delivered to listeners once the batch has committed
+                publishPersisted(documentId, segments.getLast().getSegmentOrder() + 1L);
+            });
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+        pipelineMetrics.countSegmentsPersisted(segments.size());
+        log.debug("Committed batch of {} segments for document {}", segments.size(), documentId);
+    }
+
+    /**
+     * Deletes all segments of a document and resets its checkpoint, e.g. before a full re-run.
+     *
+     * @return The number of deleted segments
+     */
+    public int deleteSegments(String documentId) {
+        return rollbackTo(documentId, ExtractionCheckpoint.START);
+    }
+
+    /**
+     * Deletes the segments of a document past {@code checkpoint} (left behind by writers that do
+     * not checkpoint) and stores the checkpoint, so extraction can continue from there.
+     *
+     * @return The number of deleted segments
+     */
+    public int rollbackTo(String documentId, ExtractionCheckpoint checkpoint) {
+        try (ResourcePermits.Permit permit = resourcePermits.acquire(ResourcePermits.Resource.DATABASE)) {
+            return transactionTemplate.execute(status -> {
+                int deleted = jdbcTemplate.queryForObject(DELETE_SEGMENTS_FROM_SQL, Integer.class,
+                        documentId, checkpoint.segmentOrder(), Timestamp.valueOf(LocalDateTime.now()));
+                updateCheckpoint(documentId, checkpoint);
+                publishPersisted(documentId, checkpoint.segmentOrder());
+                return deleted;
+            });
+        }
+    }
+
+    /**
+     * Moves the current segments of a document out of the way of a re-run, keeping them (and their
+     * embeddings) as the previous generation, and resets the checkpoint. If a previous generation
+     * is already kept, from a re-run that did not finish, the current segments are partial and
+     * are deleted instead.
+     *
+     * @return The number of segments in the previous generation
+     */
+    public int supersede(String documentId) {
+        try (ResourcePermits.Permit permit = resourcePermits.acquire(ResourcePermits.Resource.DATABASE)) {
+            return transactionTemplate.execute(status -> {
+                int superseded = jdbcTemplate.queryForObject(COUNT_SUPERSEDED_SQL, Integer.class, documentId);
+                if (superseded > 0) {
+                    jdbcTemplate.queryForObject(DELETE_SEGMENTS_FROM_SQL, Integer.class,
+                            documentId, 0, Timestamp.valueOf(LocalDateTime.now()));
+                } else {
+                    superseded = jdbcTemplate.update(SUPERSEDE_SEGMENTS_SQL, documentId);
+                }
+                updateCheckpoint(documentId, ExtractionCheckpoint.START);
+                publishPersisted(documentId, 0);
+                return superseded;
+            });
+        }
+    }
+
+    /**
+     * Copies embeddings from the previous generation of a document to current segments with the
+     * same content hash that have none yet. Copies are stamped as embedded now, so other instances
+     * pick them up in their vector index catch-up.
+     */
+    public List<ReusedEmbedding> reuseEmbeddings(String documentId) {
+        Timestamp embeddedAt = Timestamp.valueOf(LocalDateTime.now());
+        try (ResourcePermits.Permit permit = resourcePermits.acquire(ResourcePermits.Resource.DATABASE)) {
+            return transactionTemplate.execute(status -> jdbcTemplate.query(REUSE_EMBEDDINGS_SQL,
+                    (rs, rowNum) -> new ReusedEmbedding(rs.getString("id"), unboxed(rs.getArray("embedding"))),
+                    embeddedAt, documentId, documentId));
+        }
+    }
+
+    /**
+     * Makes the previous generation of a document current again, deleting the segments the new
+     * one got to, and sets the checkpoint past the restored segments. Does nothing if there is
+     * no previous generation.
+     */
+    public RestoredGeneration restoreSuperseded(String documentId) {
+        try (ResourcePermits.Permit permit = resourcePermits.acquire(ResourcePermits.Resource.DATABASE)) {
+            return transactionTemplate.execute(status -> {
+                int superseded = jdbcTemplate.queryForObject(COUNT_SUPERSEDED_SQL, Integer.class, documentId);
+                if (superseded == 0) {
+                    return new RestoredGeneration(0, List.of());
+                }
+                List<String> discarded = jdbcTemplate.queryForList(DELETE_CURRENT_SQL, String.class,
+                        documentId, Timestamp.valueOf(LocalDateTime.now()));
+                int restored = jdbcTemplate.update(RESTORE_SUPERSEDED_SQL, documentId);
+                updateCheckpoint(documentId, new ExtractionCheckpoint(restored, 0, 0));
+                publishPersisted(documentId, restored);
+                return new RestoredGeneration(restored, discarded);
+            });
+        }
+    }
+
+    /**
+     * Deletes the previous generation of a document.
+     *
+     * @return The ids of the deleted segments
+     */
+    public List<String> deleteSuperseded(String documentId) {
+        try (ResourcePermits.Permit permit = resourcePermits.acquire(ResourcePermits.Resource.DATABASE)) {
+            return transactionTemplate.execute(status ->
+                    jdbcTemplate.queryForList(DELETE_SUPERSEDED_SQL, String.class,
+                            documentId, Timestamp.valueOf(LocalDateTime.now())));
+        }
+    }
+
+    // Deleted segments that had a vector are logged in the same statement, for the vector index catch-up
+    private static String loggingRemovals(String delete, String select) {
+        return "WITH removed AS (" + delete + " RETURNING id, embedding IS NOT NULL AS indexed), "
+                + "logged AS (INSERT INTO vector_index_removals (segment_id, removed_at) "
+                + "SELECT id, ? FROM removed WHERE indexed) " + select;
+    }
+
+    private void publishPersisted(String documentId, long segments) {
+        eventPublisher.publishEvent(
+                new DocumentProgressEvent(documentId, DocumentProgressEvent.Stage.SEGMENTS_PERSISTED, segments));
+    }
+
+    private void updateCheckpoint(String documentId, ExtractionCheckpoint checkpoint) {
+        jdbcTemplate.update(UPDATE_CHECKPOINT_SQL,
+                checkpoint.segmentOrder(), checkpoint.page(), checkpoint.chunks(), documentId);
+    }
+
+    /**
+     * Stores embedding vectors for the given segments and commits them as a single transaction.
+     *
+     * @param segmentIds Segment ids, aligned with {@code vectors}
+     * @param vectors    One vector per segment
+     */
+    public void writeEmbeddings(List<String> segmentIds, List<float[]> vectors) {
+        if (segmentIds.size() != vectors.size()) {
+            throw new IllegalArgumentException("Got " + vectors.size() + " vectors for " + segmentIds.size() + " segments");
+        }
+        Timestamp embeddedAt = Timestamp.valueOf(LocalDateTime.now());
+        try (ResourcePermits.Permit permit = resourcePermits.acquire(ResourcePermits.Resource.DATABASE)) {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(UPDATE_EMBEDDING_SQL, new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            ps.setArray(1, ps.getConnection().createArrayOf("float4", boxed(vectors.get(i))));
+                            ps.setTimestamp(2, embeddedAt);
+                            ps.setString(3, segmentIds.get(i));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return segmentIds.size();
+                        }
+                    }));
+        }
+        log.debug("Stored {} embeddings", segmentIds.size());
+    }
+
+    private static float[] unboxed(Array array) throws SQLException {
+        Float[] boxed = (Float[]) array.getArray();
+        float[] vector = new float[boxed.length];
+        for (int i = 0; i < boxed.length; i++) {
+            vector[i] = boxed[i];
+        }
+        return vector;
+    }
+
+    private static Float[] boxed(float[] vector) {
+        Float[] boxed = new Float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            boxed[i] = vector[i];
+        }
+        return boxed;
+    }
+}
@@ -0,0 +1,146 @@
+package com.insightlens.core.repository;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.insightlens.core.service.ResourcePermits;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads the segments of a document back in {@code segment_order}, either a page at a time or as
+ * one stream. Pages are keyset-paged ({@code segment_order > after}) on the
+ * {@code (document_id, segment_order)} index, so a page deep into a large document costs the same
+ * as the first. Streams read through a server-side cursor in chunks of
+ * {@code segments.export.fetch-size} rows, so only one chunk is ever on the heap.
+ */
+@Repository
+@Slf4j
+public class DocumentSegmentReader {
+
+    private static final String SELECT_SUMMARY_COLUMNS =
+            "SELECT s.id, s.segment_order, coalesce(length(s.segment_text), b.text_length) AS text_length, "
+                    + "s.embedding IS NOT NULL AS embedded, s.created_at";
+
+    private static final String TEXT_COLUMNS = ", s.segment_text, b.codec, b.dictionary_id, b.content, b.raw_size";
+
+    private static final String FROM_DOCUMENT_AFTER =
+            " FROM document_segments s LEFT JOIN segment_bodies b ON b.hash = s.body_hash "
+                    + "WHERE s.document_id = ? AND s.segment_order > ? ORDER BY s.segment_order";
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record SegmentRow(String id, int segmentOrder, int textLength, boolean embedded, LocalDateTime createdAt,
+                             String segmentText) {}
+
+    /**
+     * @param nextAfter The {@code after} value for the next page, or null on the last page
+     */
+    public record SegmentPage(String documentId, List<SegmentRow> segments, Integer nextAfter) {}
+
+    private final DocumentSegmentRepository documentSegmentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ResourcePermits resourcePermits;
+    private final SegmentBodyStore segmentBodyStore;
+
+    @Value("${segments.export.fetch-size:500}")
+    private int fetchSize;
+
+    public DocumentSegmentReader(DocumentSegmentRepository documentSegmentRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 ResourcePermits resourcePermits,
+                                 SegmentBodyStore segmentBodyStore) {
+        this.documentSegmentRepository = documentSegmentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.resourcePermits = resourcePermits;
+        this.segmentBodyStore = segmentBodyStore;
+    }
+
+    /**
+     * The first {@code limit} segments after {@code afterOrder}; use -1 for the first page.
+     */
+    public SegmentPage findPage(String documentId, int afterOrder, int limit, boolean includeText) {
+        // Lower orders belong to the previous generation of a document being re-segmented
+        afterOrder = Math.max(afterOrder, -1);
+        PageRequest firstRows = PageRequest.of(0, limit);
+        List<SegmentRow> rows = includeText
+                ? withTexts(documentSegmentRepository.findSegmentDetails(documentId, afterOrder, firstRows))
+                : documentSegmentRepository.findSegmentSummaries(documentId, afterOrder, firstRows).stream()
+                        .map(s -> new SegmentRow(s.getId(), s.getSegmentOrder(), s.getTextLength(), s.getEmbedded(),
+                                s.getCreatedAt(), null))
+                        .toList();
+        Integer nextAfter = rows.size() == limit ? rows.get(rows.size() - 1).segmentOrder() : null;
+        return new SegmentPage(documentId, rows, nextAfter);
+    }
+
+    // Deduplicated bodies of the page are fetched and decompressed with one query
+    private List<SegmentRow> withTexts(List<SegmentDetailView> segments) {
+        Map<String, String> bodies = segmentBodyStore.loadTexts(segments.stream()
+                .filter(s -> s.getSegmentText() == null && s.getBodyHash() != null)
+                .map(SegmentDetailView::getBodyHash)
+                .toList());
+        return segments.stream()
+                .map(s -> new SegmentRow(s.getId(), s.getSegmentOrder(), s.getTextLength(), s.getEmbedded(),
+                        s.getCreatedAt(), s.getSegmentText() != null ? s.getSegmentText() : bodies.get(s.getBodyHash())))
+                .toList();
+    }
+
+    /**
+     * Hands every segment after {@code afterOrder} to {@code consumer}, in order. Holds a database
+     * connection (and permit) until the consumer has seen the last row.
+     *
+     * @return The number of segments read
+     */
+    public long streamSegments(String documentId, int afterOrder, boolean includeText, Consumer<SegmentRow> consumer) {
+        String sql = SELECT_SUMMARY_COLUMNS + (includeText ? TEXT_COLUMNS : "") + FROM_DOCUMENT_AFTER;
+        int fromOrder = Math.max(afterOrder, -1);
+        long[] count = {0};
+        try (ResourcePermits.Permit permit = resourcePermits.acquire(ResourcePermits.Resource.DATABASE)) {
+            // PostgreSQL only fetches through a cursor inside a transaction; otherwise it reads the whole result
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setFetchSize(fetchSize);
+                statement.setString(1, documentId);
+                statement.setInt(2, fromOrder);
+                return statement;
+            }, resultSet -> {
+                consumer.accept(toRow(resultSet, includeText ? text(resultSet) : null));
+                count[0]++;
+            }));
+        }
+        log.debug("Streamed {} segments of document {}", count[0], documentId);
+        return count[0];
+    }
+
+    // Decompressed row by row, as the cursor reaches it
+    private String text(ResultSet resultSet) throws SQLException {
+        String text = resultSet.getString("segment_text");
+        return text != null || resultSet.getObject("codec") == null ? text : segmentBodyStore.decode(resultSet);
+    }
+
+    private static SegmentRow toRow(ResultSet resultSet, String text) throws SQLException {
+        Timestamp createdAt = resultSet.getTimestamp("created_at");
+        return new SegmentRow(
+                resultSet.getString("id"),
+                resultSet.getInt("segment_order"),
+                resultSet.getInt("text_length"),
+                resultSet.getBoolean("embedded"),
+                createdAt != null ? createdAt.toLocalDateTime() : null,
+                text);
+    }
+}
@@ -1,9 +1,51 @@
 package com.insightlens.core.repository;
 
 import com.insightlens.core.model.DocumentSegment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface DocumentSegmentRepository extends JpaRepository<DocumentSegment, String> {
-} 
\ No newline at end of file
+
+    @Query("SELECT s.id AS id, s.segmentOrder AS segmentOrder, s.segmentText AS segmentText, s.bodyHash AS bodyHash, "
+            + "s.contentHash AS contentHash "
+            + "FROM DocumentSegment s "
+            + "WHERE s.document.id = :documentId AND s.embedding IS NULL AND s.segmentOrder > :afterOrder "
+            + "ORDER BY s.segmentOrder")
+    List<SegmentTextView> findUnembeddedSegments(@Param("documentId") String documentId,
+                                                 @Param("afterOrder") int afterOrder,
+                                                 Pageable pageable);
+
+    @Query("SELECT s.id AS id, s.segmentOrder AS segmentOrder, s.segmentText AS segmentText, s.bodyHash AS bodyHash, "
+            + "s.contentHash AS contentHash "
+            + "FROM DocumentSegment s "
+            + "WHERE s.document.id = :documentId AND s.segmentOrder > :afterOrder "
+            + "ORDER BY s.segmentOrder")
+    List<SegmentTextView> findSegmentTexts(@Param("documentId") String documentId,
+                                           @Param("afterOrder") int afterOrder,
+                                           Pageable pageable);
+
+    @Query("SELECT s.id AS id, s.segmentOrder AS segmentOrder, coalesce(length(s.segmentText), b.textLength) AS textLength, "
+            + "CASE WHEN s.embedding IS NOT NULL THEN true ELSE false END AS embedded, s.createdAt AS createdAt "
+            + "FROM DocumentSegment s LEFT JOIN s.body b "
+            + "WHERE s.document.id = :documentId AND s.segmentOrder > :afterOrder "
+            + "ORDER BY s.segmentOrder")
+    List<SegmentSummaryView> findSegmentSummaries(@Param("documentId") String documentId,
+                                                  @Param("afterOrder") int afterOrder,
+                                                  Pageable pageable);
+
+    @Query("SELECT s.id AS id, s.segmentOrder AS segmentOrder, coalesce(length(s.segmentText), b.textLength) AS textLength, "
+            + "CASE WHEN s.embedding IS NOT NULL THEN true ELSE false END AS embedded, s.createdAt AS createdAt, "
+            + "s.segmentText AS segmentText, s.bodyHash AS bodyHash "
+            + "FROM DocumentSegment s LEFT JOIN s.body b "
+            + "WHERE s.document.id = :documentId AND s.segmentOrder > :afterOrder "
+            + "ORDER BY s.segmentOrder")
+    List<SegmentDetailView> findSegmentDetails(@Param("documentId") String documentId,
+                                               @Param("afterOrder") int afterOrder,
+                                               Pageable pageable);
+}
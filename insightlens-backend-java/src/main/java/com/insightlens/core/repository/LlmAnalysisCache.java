@@ -0,0 +1,65 @@
+package com.insightlens.core.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent cache of LLM analysis outputs ({@link com.insightlens.core.model.LlmAnalysisResult}),
+ * read and written with plain JDBC so a page of lookups is one query.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LlmAnalysisCache {
+
+    private static final String SELECT_OUTPUTS_SQL =
+            "SELECT cache_key, output FROM llm_analysis_cache WHERE cache_key = ANY(?)";
+
+    private static final String INSERT_OUTPUT_SQL =
+            "INSERT INTO llm_analysis_cache (cache_key, prompt_hash, content_hash, output, created_at) "
+                    + "VALUES (?, ?, ?, ?, now()) ON CONFLICT (cache_key) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Entry(String cacheKey, String promptHash, String contentHash, String output) {}
+
+    /**
+     * Cached outputs of the given keys, by key; keys that were never stored are absent.
+     */
+    public Map<String, String> find(Collection<String> cacheKeys) {
+        Map<String, String> outputs = new HashMap<>();
+        if (cacheKeys.isEmpty()) {
+            return outputs;
+        }
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_OUTPUTS_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", new HashSet<>(cacheKeys).toArray()));
+            return statement;
+        }, rs -> {
+            outputs.put(rs.getString("cache_key"), rs.getString("output"));
+        });
+        return outputs;
+    }
+
+    /**
+     * Stores outputs; keys another instance stored in the meantime are skipped.
+     */
+    public void store(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_OUTPUT_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, entry.cacheKey());
+            ps.setString(2, entry.promptHash());
+            ps.setString(3, entry.contentHash());
+            ps.setString(4, entry.output());
+        });
+    }
+}
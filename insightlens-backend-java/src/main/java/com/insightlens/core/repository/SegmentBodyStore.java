@@ -0,0 +1,313 @@
+package com.insightlens.core.repository;
+
+import com.insightlens.core.model.DocumentSegment;
+import com.insightlens.core.model.SegmentBody;
+import com.insightlens.core.model.SegmentDictionary;
+import com.insightlens.core.util.SegmentBodyCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-addressed storage of segment texts in {@code segment_bodies}. With
+ * {@code segments.storage.mode=deduplicated}, each unique text is stored once, deflated with the
+ * current preset dictionary, and segments only hold its hash; with {@code inline} (the default)
+ * texts stay in {@code document_segments.segment_text}. Both kinds of rows are read either way,
+ * so the mode can be switched without migrating existing segments.
+ * <p>
+ * Dictionaries are built by {@link #trainDictionary()} from the bodies referenced by the most
+ * segments, which is where repeated boilerplate ends up. Bodies no segment refers to any more
+ * (dropped generations, deleted segments) are removed by {@link #deleteOrphans()}.
+ */
+@Repository
+@Slf4j
+public class SegmentBodyStore {
+
+    public static final String MODE_INLINE = "inline";
+    public static final String MODE_DEDUPLICATED = "deduplicated";
+
+    // Key-share locked until the segments referring to them commit, so deleteOrphans() skips them meanwhile
+    private static final String SELECT_EXISTING_SQL = "SELECT hash FROM segment_bodies WHERE hash = ANY(?) FOR KEY SHARE";
+
+    private static final String INSERT_BODY_SQL =
+            "INSERT INTO segment_bodies (hash, codec, dictionary_id, content, text_length, raw_size, created_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, now()) ON CONFLICT (hash) DO NOTHING";
+
+    private static final String SELECT_BODIES_SQL =
+            "SELECT hash, codec, dictionary_id, content, raw_size FROM segment_bodies WHERE hash = ANY(?)";
+
+    private static final String SELECT_MOST_REFERENCED_SQL =
+            "SELECT b.codec, b.dictionary_id, b.content, b.raw_size FROM segment_bodies b "
+                    + "JOIN (SELECT body_hash, count(*) AS refs FROM document_segments WHERE body_hash IS NOT NULL "
+                    + "GROUP BY body_hash ORDER BY refs DESC LIMIT ?) r ON r.body_hash = b.hash "
+                    + "ORDER BY r.refs";
+
+    private static final String DELETE_ORPHANS_SQL =
+            "DELETE FROM segment_bodies WHERE hash IN (SELECT b.hash FROM segment_bodies b "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM document_segments s WHERE s.body_hash = b.hash) "
+                    + "LIMIT ? FOR UPDATE SKIP LOCKED)";
+
+    private static final String STATS_SQL =
+            "SELECT count(*) AS segments, count(s.body_hash) AS deduplicated_segments, "
+                    + "coalesce(sum(octet_length(s.segment_text)), 0) AS inline_bytes, "
+                    + "coalesce(sum(b.raw_size), 0) AS deduplicated_logical_bytes "
+                    + "FROM document_segments s LEFT JOIN segment_bodies b ON b.hash = s.body_hash";
+
+    private static final String BODY_STATS_SQL =
+            "SELECT count(*) AS bodies, coalesce(sum(raw_size), 0) AS raw_bytes, "
+                    + "coalesce(sum(octet_length(content)), 0) AS stored_bytes FROM segment_bodies";
+
+    /**
+     * A segment body ready to be inserted.
+     */
+    public record EncodedBody(String hash, SegmentBodyCodec.Encoded encoded, Integer dictionaryId,
+                              int textLength, int rawSize) {}
+
+    /**
+     * @param logicalBytes UTF-8 size of all segment texts, as if every segment stored its own
+     * @param storedBytes  Bytes actually stored for texts: inline texts plus encoded bodies
+     */
+    public record StorageStats(String mode, long segments, long deduplicatedSegments, long uniqueBodies,
+                               long logicalBytes, long storedBytes, double savedRatio, Integer dictionaryId) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private volatile Integer currentDictionaryId;
+
+    @Value("${segments.storage.mode:" + MODE_INLINE + "}")
+    private String mode;
+
+    @Value("${segments.storage.compression-level:6}")
+    private int compressionLevel;
+
+    @Value("${segments.storage.dictionary-sample-size:2000}")
+    private int dictionarySampleSize;
+
+    @Value("${segments.storage.orphan-cleanup-batch-size:1000}")
+    private int orphanCleanupBatchSize;
+
+    // Depends on the EntityManagerFactory so Hibernate has created the tables first
+    public SegmentBodyStore(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!MODE_INLINE.equals(mode) && !MODE_DEDUPLICATED.equals(mode)) {
+            throw new IllegalStateException("Unknown segments.storage.mode: " + mode);
+        }
+        if (isDeduplicated()) {
+            // ddl-auto=update never relaxes a constraint, and deduplicated segments have no inline text
+            jdbcTemplate.execute("ALTER TABLE document_segments ALTER COLUMN segment_text DROP NOT NULL");
+        }
+        currentDictionaryId = jdbcTemplate.queryForObject("SELECT max(id) FROM segment_dictionaries", Integer.class);
+        // Catches the sequence up with dictionaries trained before ids came from it; never moves it back
+        jdbcTemplate.queryForList("SELECT setval('" + SegmentDictionary.SEQUENCE + "', d.max_id) "
+                + "FROM (SELECT max(id) AS max_id FROM segment_dictionaries) d, " + SegmentDictionary.SEQUENCE + " s "
+                + "WHERE d.max_id >= s.last_value");
+        log.info("Segment storage mode {}, dictionary {}", mode, currentDictionaryId);
+    }
+
+    public boolean isDeduplicated() {
+        return MODE_DEDUPLICATED.equals(mode);
+    }
+
+    /**
+     * Hashes the texts of {@code segments} and encodes those that are not stored yet. Sets each
+     * segment's body hash; the caller inserts the returned bodies before the segments, in the same
+     * transaction, which keeps the bodies already stored from being deleted as orphans meanwhile.
+     */
+    public List<EncodedBody> prepare(List<DocumentSegment> segments) {
+        Map<String, String> textsByHash = new LinkedHashMap<>();
+        for (DocumentSegment segment : segments) {
+            String hash = segment.getContentHash() != null
+                    ? segment.getContentHash()
+                    : SegmentBodyCodec.hash(segment.getSegmentText());
+            segment.setBodyHash(hash);
+            textsByHash.putIfAbsent(hash, segment.getSegmentText());
+        }
+        // Boilerplate is usually stored already, so it is not compressed again
+        Set<String> existing = new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_EXISTING_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", textsByHash.keySet().toArray()));
+            return statement;
+        }, (rs, rowNum) -> rs.getString(1)));
+
+        Integer dictionaryId = currentDictionaryId;
+        byte[] dictionary = dictionaryId != null ? dictionary(dictionaryId) : null;
+        List<EncodedBody> bodies = new ArrayList<>(textsByHash.size() - existing.size());
+        for (Map.Entry<String, String> entry : textsByHash.entrySet()) {
+            if (existing.contains(entry.getKey())) {
+                continue;
+            }
+            byte[] utf8 = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            SegmentBodyCodec.Encoded encoded = SegmentBodyCodec.encode(utf8, dictionary, compressionLevel);
+            bodies.add(new EncodedBody(entry.getKey(), encoded,
+                    encoded.codec() == SegmentBodyCodec.CODEC_DEFLATE ? dictionaryId : null,
+                    entry.getValue().length(), utf8.length));
+        }
+        return bodies;
+    }
+
+    /**
+     * Inserts bodies prepared by {@link #prepare}; bodies another writer stored in the meantime are skipped.
+     */
+    public void insert(List<EncodedBody> bodies) {
+        if (bodies.isEmpty()) {
+            return;
+        }
+        // Same lock order in every writer, so two batches sharing new bodies cannot deadlock
+        List<EncodedBody> sorted = bodies.stream().sorted(Comparator.comparing(EncodedBody::hash)).toList();
+        jdbcTemplate.batchUpdate(INSERT_BODY_SQL, sorted, sorted.size(), (ps, body) -> {
+            ps.setString(1, body.hash());
+            ps.setInt(2, body.encoded().codec());
+            ps.setObject(3, body.dictionaryId(), Types.INTEGER);
+            ps.setBytes(4, body.encoded().content());
+            ps.setInt(5, body.textLength());
+            ps.setInt(6, body.rawSize());
+        });
+    }
+
+    /**
+     * The text of a loaded segment; a deduplicated body is fetched and decompressed only here.
+     */
+    public String textOf(DocumentSegment segment) {
+        if (segment.getSegmentText() != null || segment.getBody() == null) {
+            return segment.getSegmentText();
+        }
+        SegmentBody body = segment.getBody();
+        return decode(body.getCodec(), body.getContent(), body.getDictionaryId(), body.getRawSize());
+    }
+
+    /**
+     * Decompressed texts of the given bodies, by hash.
+     */
+    public Map<String, String> loadTexts(Collection<String> hashes) {
+        Map<String, String> texts = new HashMap<>();
+        if (hashes.isEmpty()) {
+            return texts;
+        }
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_BODIES_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", new HashSet<>(hashes).toArray()));
+            return statement;
+        }, rs -> {
+            texts.put(rs.getString("hash"), decode(rs));
+        });
+        return texts;
+    }
+
+    /**
+     * Decodes a body from a result set with {@code codec}, {@code dictionary_id}, {@code content}
+     * and {@code raw_size} columns.
+     */
+    public String decode(ResultSet rs) throws SQLException {
+        return decode(rs.getInt("codec"), rs.getBytes("content"), (Integer) rs.getObject("dictionary_id"),
+                rs.getInt("raw_size"));
+    }
+
+    private String decode(int codec, byte[] content, Integer dictionaryId, int rawSize) {
+        return SegmentBodyCodec.decode(codec, content, dictionaryId != null ? dictionary(dictionaryId) : null, rawSize);
+    }
+
+    /**
+     * Builds a new preset dictionary from the most referenced bodies and uses it for new bodies.
+     * Bodies already stored keep the dictionary they were encoded with.
+     *
+     * @return The new dictionary's id, or null if there are no deduplicated bodies yet
+     */
+    public synchronized Integer trainDictionary() {
+        List<byte[]> samples = jdbcTemplate.query(SELECT_MOST_REFERENCED_SQL,
+                (rs, rowNum) -> decode(rs).getBytes(StandardCharsets.UTF_8), dictionarySampleSize);
+        if (samples.isEmpty()) {
+            return null;
+        }
+        // Samples come least referenced first; deflate finds matches near the end of the dictionary cheapest
+        byte[] dictionary = new byte[SegmentBodyCodec.MAX_DICTIONARY_SIZE];
+        int length = 0;
+        for (int i = samples.size() - 1; i >= 0 && length < dictionary.length; i--) {
+            byte[] sample = samples.get(i);
+            int n = Math.min(sample.length, dictionary.length - length);
+            System.arraycopy(sample, 0, dictionary, dictionary.length - length - n, n);
+            length += n;
+        }
+        byte[] content = new byte[length];
+        System.arraycopy(dictionary, dictionary.length - length, content, 0, length);
+
+        int id = jdbcTemplate.queryForObject("INSERT INTO segment_dictionaries (id, content, sample_size, created_at) "
+                + "VALUES (nextval('" + SegmentDictionary.SEQUENCE + "'), ?, ?, now()) RETURNING id",
+                Integer.class, content, samples.size());
+        dictionaries.put(id, content);
+        currentDictionaryId = id;
+        log.info("Trained segment dictionary {} ({} bytes from {} bodies)", id, length, samples.size());
+        return id;
+    }
+
+    /**
+     * Deletes bodies no segment refers to, in batches of {@code segments.storage.orphan-cleanup-batch-size}.
+     * Bodies locked by a writer that is about to refer to them are left for the next run.
+     *
+     * @return The number of deleted bodies
+     */
+    @Scheduled(fixedDelayString = "${segments.storage.orphan-cleanup-interval:PT15M}",
+               initialDelayString = "${segments.storage.orphan-cleanup-interval:PT15M}")
+    public int deleteOrphans() {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(DELETE_ORPHANS_SQL, orphanCleanupBatchSize);
+            total += deleted;
+        } while (deleted >= orphanCleanupBatchSize);
+        if (total > 0) {
+            log.info("Deleted {} segment bodies no segment refers to", total);
+        }
+        return total;
+    }
+
+    public StorageStats stats() {
+        Map<String, Object> segments = jdbcTemplate.queryForMap(STATS_SQL);
+        Map<String, Object> bodies = jdbcTemplate.queryForMap(BODY_STATS_SQL);
+        long inlineBytes = ((Number) segments.get("inline_bytes")).longValue();
+        long logicalBytes = inlineBytes + ((Number) segments.get("deduplicated_logical_bytes")).longValue();
+        long storedBytes = inlineBytes + ((Number) bodies.get("stored_bytes")).longValue();
+        return new StorageStats(mode,
+                ((Number) segments.get("segments")).longValue(),
+                ((Number) segments.get("deduplicated_segments")).longValue(),
+                ((Number) bodies.get("bodies")).longValue(),
+                logicalBytes,
+                storedBytes,
+                logicalBytes == 0 ? 0.0 : 1.0 - (double) storedBytes / logicalBytes,
+                currentDictionaryId);
+    }
+
+    private byte[] dictionary(int id) {
+        return dictionaries.computeIfAbsent(id, key -> {
+            List<byte[]> content = jdbcTemplate.query("SELECT content FROM segment_dictionaries WHERE id = ?",
+                    (rs, rowNum) -> rs.getBytes(1), key);
+            if (content.isEmpty()) {
+                throw new IllegalStateException("Segment dictionary " + key + " does not exist");
+            }
+            return content.get(0);
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package com.insightlens.core.repository;
+
+/**
+ * {@link SegmentSummaryView} with the segment text.
+ */
+public interface SegmentDetailView extends SegmentSummaryView {
+    // Null when the text is stored in segment_bodies
+    String getSegmentText();
+
+    String getBodyHash();
+}
@@ -0,0 +1,18 @@
+package com.insightlens.core.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a segment for listings, without its text body or embedding.
+ */
+public interface SegmentSummaryView {
+    String getId();
+
+    int getSegmentOrder();
+
+    int getTextLength();
+
+    boolean getEmbedded();
+
+    LocalDateTime getCreatedAt();
+}
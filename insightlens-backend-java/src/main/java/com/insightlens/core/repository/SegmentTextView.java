@@ -0,0 +1,18 @@
+package com.insightlens.core.repository;
+
+/**
+ * Projection of a segment without its owning document or embedding.
+ */
+public interface SegmentTextView {
+    String getId();
+
+    int getSegmentOrder();
+
+    // Null when the text is stored in segment_bodies
+    String getSegmentText();
+
+    String getBodyHash();
+
+    // Null for segments written before content hashes were recorded
+    String getContentHash();
+}
@@ -0,0 +1,12 @@
+package com.insightlens.core.repository;
+
+import com.insightlens.core.model.DocumentStatus;
+
+/**
+ * Number of documents in one status, for progress reporting.
+ */
+public interface StatusCount {
+    DocumentStatus getStatus();
+
+    long getCount();
+}
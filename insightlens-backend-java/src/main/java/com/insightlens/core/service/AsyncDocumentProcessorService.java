@@ -3,89 +3,323 @@ package com.insightlens.core.service;
 import com.insightlens.core.model.Document;
 import com.insightlens.core.model.DocumentStatus;
 import com.insightlens.core.repository.DocumentRepository;
-import com.insightlens.core.repository.DocumentSegmentRepository;
+import com.insightlens.core.repository.DocumentSegmentBatchWriter;
+import io.micrometer.observation.Observation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
-import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.xml.sax.SAXException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletionException;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class AsyncDocumentProcessorService {
 
+    private static final int REMOTE_CHUNK_QUEUE_CAPACITY = 8;
+
     private final DocumentRepository documentRepository;
-    private final TextSegmenterService textSegmenterService;
-    private final DocumentSegmentRepository documentSegmentRepository;
+    private final SegmentationStrategyResolver segmentationStrategyResolver;
+    private final DocumentSegmentBatchWriter documentSegmentBatchWriter;
+    private final SegmentationServiceClient segmentationServiceClient;
+    private final EmbeddingPipelineService embeddingPipelineService;
+    private final ResegmentationService resegmentationService;
+    private final ResourcePermits resourcePermits;
+    private final TikaParserRegistry tikaParserRegistry;
+    private final ParallelPdfExtractor parallelPdfExtractor;
+    private final PipelineMetrics pipelineMetrics;
+
+    @Qualifier("segmentationGuard")
+    private final RemoteServiceGuard segmentationGuard;
 
     @Value("${file.upload-dir}")
     private String uploadDir;
 
-    @Async("documentProcessingExecutor")
-    @Transactional
-    public Future<Void> processUploadedDocument(String documentId) {
+    @Value("${segment.writer.batch-size:500}")
+    private int segmentBatchSize;
+
+    @Value("${segmentation.remote.enabled:false}")
+    private boolean remoteSegmentationEnabled;
+
+    @Value("${embedding.enabled:true}")
+    private boolean embeddingEnabled;
+
+    /**
+     * Runs the remaining pipeline stages for a document claimed from {@link DocumentProcessingQueue}.
+     * Not @Transactional: segments are committed in batches by DocumentSegmentBatchWriter.
+     *
+     * @return A future that completes when the document has reached a terminal state, or fails
+     * with {@link RemoteServiceUnavailableException} if a remote service it needs is unavailable,
+     * or {@link RetryLaterException} if embedding batches failed; the document then keeps a
+     * resumable status
+     */
+    public CompletableFuture<Void> processUploadedDocument(String documentId) {
+        // Parent of every stage below, so one document is one trace
+        Observation observation = pipelineMetrics.start(PipelineMetrics.Stage.PROCESS, documentId);
+        CompletableFuture<Void> processed;
+        try (Observation.Scope scope = observation.openScope()) {
+            processed = process(documentId, observation);
+        } catch (RuntimeException e) {
+            observation.error(e);
+            observation.stop();
+            throw e;
+        }
+        return processed.whenComplete((ignored, error) -> {
+            if (error != null) {
+                observation.error(error);
+            }
+            observation.stop();
+        });
+    }
+
+    private CompletableFuture<Void> process(String documentId, Observation observation) {
         log.info("Starting document processing for documentId: {}", documentId);
         
         Document document = documentRepository.findById(documentId)
                 .orElseThrow(() -> new RuntimeException("Document not found: " + documentId));
 
+        if (document.getStatus() == DocumentStatus.EMBEDDING_PENDING) {
+            // Extraction already finished in an earlier attempt
+            embeddingPipelineService.embedDocument(document);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (remoteSegmentationEnabled) {
+            // Don't start parsing what could not be segmented
+            segmentationGuard.checkAvailable();
+        }
+
         try {
+            Path file = Paths.get(document.getStoredFilePath());
+            ExtractionCheckpoint checkpoint = ExtractionCheckpoint.START;
+            if (document.getStatus() == DocumentStatus.TEXT_EXTRACTION_IN_PROGRESS) {
+                checkpoint = resumableCheckpoint(document, file);
+                int discarded = documentSegmentBatchWriter.rollbackTo(documentId, checkpoint);
+                log.info("Resuming interrupted document {} at segment {} (page {}, chunk {}), discarded {} segments",
+                        documentId, checkpoint.segmentOrder(), checkpoint.page(), checkpoint.chunks(), discarded);
+            }
+
             // Update status to processing
             document.setStatus(DocumentStatus.TEXT_EXTRACTION_IN_PROGRESS);
             documentRepository.save(document);
+            String segmenterVersion = segmentationStrategyResolver.versionFor(document);
 
-            // Initialize Tika components
-            Parser parser = new AutoDetectParser();
-            Metadata metadata = new Metadata();
+            // Shared, thread-safe parser; only metadata and context are per document
+            Parser parser = tikaParserRegistry.parserFor(document);
+            Metadata metadata = tikaParserRegistry.metadataFor(document);
             ParseContext context = new ParseContext();
 
-            // Create our custom streaming handler
-            StreamingSegmentContentHandler segmentHandler = new StreamingSegmentContentHandler(
+            if (remoteSegmentationEnabled) {
+                return processWithRemoteSegmentation(document, file, parser, metadata, context, segmenterVersion,
+                        observation);
+            }
+
+            SegmentationStrategy segmentationStrategy = segmentationStrategyResolver.resolve(document);
+            log.debug("Using segmentation strategy '{}' for document {}", segmentationStrategy.getName(), documentId);
+
+            // Segments are persisted as the handler emits chunks, so the full text is never held in memory
+            PersistingSegmentSink segmentSink = new PersistingSegmentSink(
                     document,
-                    textSegmenterService,
-                    documentSegmentRepository
+                    segmentationStrategy,
+                    segmenterVersion,
+                    documentSegmentBatchWriter,
+                    segmentBatchSize,
+                    checkpoint
             );
 
-            File file = new File(document.getStoredFilePath());
-            try (InputStream stream = new FileInputStream(file)) {
-                // Parse the document using our streaming handler
-                parser.parse(stream, segmentHandler, metadata, context);
-                
-                // Update document status
-                document.setStatus(DocumentStatus.TEXT_EXTRACTION_COMPLETED);
-                document.setStatusMessage("Text extraction and segmentation completed successfully");
-                documentRepository.save(document);
-                
+            try {
+                try (ResourcePermits.Permit parsePermit = resourcePermits.acquire(ResourcePermits.Resource.PARSE)) {
+                    extractText(document, file, parser, metadata, context, segmentSink, checkpoint.page());
+                }
+                segmentSink.flush();
+                pipelineMetrics.recordSegmentation(segmentSink.getSegmentationNanos());
+                pipelineMetrics.countCharacters(segmentSink.getCharacters());
+
+                completeExtraction(document, segmenterVersion, "Text extraction and segmentation completed successfully ("
+                        + segmentSink.getSegmentCount() + " segments)");
+
+                if (embeddingEnabled) {
+                    embeddingPipelineService.embedDocument(document);
+                } else {
+                    resegmentationService.dropPreviousGeneration(documentId);
+                }
             } catch (IOException | SAXException | TikaException e) {
                 log.error("Error during Tika parsing or segmentation for document {}: {}", documentId, e.getMessage(), e);
-                document.setStatus(DocumentStatus.TEXT_EXTRACTION_FAILED);
-                document.setStatusMessage("Tika parsing/segmentation failed: " + e.getMessage());
-                documentRepository.save(document);
+                failExtraction(document, "Tika parsing/segmentation failed: " + e.getMessage());
             }
 
+        } catch (RemoteServiceUnavailableException | RetryLaterException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Unexpected error processing document {}: {}", documentId, e.getMessage(), e);
-            document.setStatus(DocumentStatus.TEXT_EXTRACTION_FAILED);
-            document.setStatusMessage("Unexpected error during processing: " + e.getMessage());
-            documentRepository.save(document);
+            failExtraction(document, "Unexpected error during processing: " + e.getMessage());
         }
 
          return CompletableFuture.completedFuture(null);
     }
+
+    /**
+     * Feeds the document's text to {@code sink} chunk by chunk, splitting large PDFs into page
+     * ranges that are extracted in parallel (from {@code fromPage} when resuming).
+     */
+    private void extractText(Document document, Path file, Parser parser, Metadata metadata, ParseContext context,
+                             SegmentSink sink, int fromPage) throws IOException, SAXException, TikaException {
+        // Includes the time the sink takes to segment and persist what it is handed
+        Observation observation = pipelineMetrics.start(PipelineMetrics.Stage.EXTRACTION, document.getId());
+        try (Observation.Scope scope = observation.openScope()) {
+            if (parallelPdfExtractor.appliesTo(document, file)) {
+                parallelPdfExtractor.extract(document, file, sink, fromPage);
+            } else {
+                try (InputStream stream = TikaInputStream.get(file)) {
+                    parser.parse(stream, new StreamingSegmentContentHandler(document, sink), metadata, context);
+                }
+            }
+        } catch (IOException | SAXException | TikaException | RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+        pipelineMetrics.countBytes(PipelineMetrics.Stage.EXTRACTION, document.getFileSize());
+    }
+
+    /**
+     * The checkpoint an interrupted extraction can continue from. Positions are only valid for the
+     * extraction path that recorded them, so a change of path (remote segmentation, or a PDF that
+     * is now above or below the parallel threshold) restarts the document from the beginning.
+     */
+    private ExtractionCheckpoint resumableCheckpoint(Document document, Path file) {
+        ExtractionCheckpoint checkpoint = new ExtractionCheckpoint(document.getCheckpointSegmentOrder(),
+                document.getCheckpointPage(), document.getCheckpointChunks());
+        if (remoteSegmentationEnabled || (checkpoint.page() > 0) != parallelPdfExtractor.appliesTo(document, file)) {
+            return ExtractionCheckpoint.START;
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Records that all segments are persisted. With embedding enabled the document goes straight to
+     * {@link DocumentStatus#EMBEDDING_PENDING} in the same save, so an instance dying before
+     * embedding starts leaves it claimable rather than stuck at
+     * {@link DocumentStatus#TEXT_EXTRACTION_COMPLETED}.
+     */
+    private void completeExtraction(Document document, String segmenterVersion, String message) {
+        document.setStatus(embeddingEnabled ? DocumentStatus.EMBEDDING_PENDING : DocumentStatus.TEXT_EXTRACTION_COMPLETED);
+        document.setStatusMessage(message);
+        document.setSegmenterVersion(segmenterVersion);
+        documentRepository.save(document);
+    }
+
+    public void markFailed(String documentId, String message) {
+        documentRepository.findById(documentId).ifPresent(document -> {
+            if (document.getStatus() != DocumentStatus.EMBEDDING_PENDING) {
+                failExtraction(document, message);
+                return;
+            }
+            document.setStatus(DocumentStatus.EMBEDDING_FAILED);
+            document.setStatusMessage(message);
+            documentRepository.save(document);
+            // The new generation is complete, and what it could reuse was copied when embedding started
+            resegmentationService.dropPreviousGeneration(documentId);
+        });
+    }
+
+    /**
+     * Fails extraction. A document that was being re-segmented gets its previous segments back,
+     * so it stays readable and searchable as it was.
+     */
+    private void failExtraction(Document document, String message) {
+        int restored = resegmentationService.restorePreviousGeneration(document.getId());
+        document.setStatus(DocumentStatus.TEXT_EXTRACTION_FAILED);
+        document.setStatusMessage(restored > 0
+                ? message + "; kept the " + restored + " previous segments"
+                : message);
+        documentRepository.save(document);
+    }
+
+    /**
+     * Parses locally but lets the segmentation service cut the text. Chunks are streamed out while
+     * Tika is still parsing, and segments are persisted batch by batch as they stream back, with one
+     * batch in flight so the response is only read as fast as the database accepts it.
+     */
+    private CompletableFuture<Void> processWithRemoteSegmentation(Document document, Path file, Parser parser,
+                                                                  Metadata metadata, ParseContext context,
+                                                                  String segmenterVersion, Observation observation) {
+        String documentId = document.getId();
+        BlockingChunkPublisher chunkPublisher = new BlockingChunkPublisher(REMOTE_CHUNK_QUEUE_CAPACITY);
+
+        CompletableFuture<Long> persisted = segmentationServiceClient
+                .streamSegments(documentId, chunkPublisher)
+                .buffer(segmentBatchSize)
+                .concatMap(batch -> Mono.fromCallable(() -> {
+                    batch.forEach(segment -> segment.setSegmenterVersion(segmenterVersion));
+                    try (Observation.Scope scope = observation.openScope()) {
+                        documentSegmentBatchWriter.writeBatch(documentId, batch);
+                    }
+                    return (long) batch.size();
+                }).subscribeOn(Schedulers.boundedElastic()), 1)
+                .reduce(0L, Long::sum)
+                .toFuture();
+
+        Exception parseError = null;
+        try {
+            // Not before the guard has admitted the exchange; a rejected one never reads a chunk
+            if (chunkPublisher.awaitSubscribed()) {
+                try (ResourcePermits.Permit parsePermit = resourcePermits.acquire(ResourcePermits.Resource.PARSE)) {
+                    extractText(document, file, parser, metadata, context, chunkPublisher, 0);
+                    chunkPublisher.complete();
+                }
+            }
+        } catch (Exception e) {
+            // Also thrown once the exchange has ended, in which case its own error is reported below
+            parseError = e;
+            chunkPublisher.fail(e);
+        }
+        Exception parseFailure = parseError;
+
+        return persisted.handle((segmentCount, streamError) -> {
+            // A stream that completed without all chunks (the service ended the exchange early) is still a failure
+            Throwable error = streamError != null ? streamError : parseFailure;
+            RemoteServiceUnavailableException unavailable = error == null
+                    ? null : segmentationGuard.unavailable(error).orElse(null);
+            if (unavailable != null) {
+                // Stays in progress, so the next attempt discards the partial segments and starts over
+                log.warn("Remote segmentation of document {} parked: {}", documentId, unavailable.getMessage());
+                document.setStatusMessage("Segmentation service unavailable; waiting in the queue");
+                documentRepository.save(document);
+                throw new CompletionException(unavailable);
+            }
+            if (error != null) {
+                log.error("Remote segmentation failed for document {}: {}", documentId, error.getMessage(), error);
+                failExtraction(document, "Remote segmentation failed: " + error.getMessage());
+            } else {
+                completeExtraction(document, segmenterVersion, "Text extraction and remote segmentation completed "
+                        + "successfully (" + segmentCount + " segments)");
+            }
+
+            if (error == null && embeddingEnabled) {
+                try (Observation.Scope scope = observation.openScope()) {
+                    embeddingPipelineService.embedDocument(document);
+                }
+            } else if (error == null) {
+                resegmentationService.dropPreviousGeneration(documentId);
+            }
+            return null;
+        });
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.insightlens.core.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bridges the push-based SAX parse to a pull-based {@link Flux}. Chunks are handed over through a
+ * small bounded queue, so the parsing thread blocks whenever the remote side is not requesting
+ * more, and fails fast once the reactive side has been cancelled or {@link #cancel()} was called.
+ * {@link #awaitSubscribed()} lets the parse wait until the exchange is actually reading chunks.
+ */
+public class BlockingChunkPublisher implements SegmentSink {
+    private static final Object END_OF_STREAM = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final CountDownLatch settled = new CountDownLatch(1);
+    private volatile boolean cancelled;
+
+    public BlockingChunkPublisher(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void accept(String chunk) {
+        put(chunk);
+    }
+
+    /**
+     * Signals that parsing finished and no further chunks will follow.
+     */
+    public void complete() {
+        put(END_OF_STREAM);
+    }
+
+    /**
+     * Propagates a parsing failure to the subscriber. Never blocks.
+     */
+    public void fail(Throwable error) {
+        queue.clear();
+        queue.offer(error);
+    }
+
+    /**
+     * Makes the parsing thread fail instead of waiting for room in the queue. For exchanges that
+     * ended without ever subscribing to {@link #asFlux()}, e.g. a refused connection.
+     */
+    public void cancel() {
+        cancelled = true;
+        settled.countDown();
+    }
+
+    /**
+     * Blocks until the exchange subscribes to {@link #asFlux()}, i.e. it was admitted and is
+     * sending the request body, or until it ends without doing so.
+     *
+     * @return Whether chunks will be read; if not, the exchange has already failed
+     */
+    public boolean awaitSubscribed() {
+        try {
+            settled.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for remote segmentation to start", e);
+        }
+        return !cancelled;
+    }
+
+    public Flux<String> asFlux() {
+        return Flux.<String>generate(sink -> {
+                    try {
+                        Object item = queue.take();
+                        if (item == END_OF_STREAM) {
+                            sink.complete();
+                        } else if (item instanceof Throwable error) {
+                            sink.error(error);
+                        } else {
+                            sink.next((String) item);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        sink.error(e);
+                    }
+                })
+                .doOnSubscribe(subscription -> settled.countDown())
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnCancel(() -> cancelled = true);
+    }
+
+    private void put(Object item) {
+        try {
+            while (cancelled || !queue.offer(item, 1, TimeUnit.SECONDS)) {
+                if (cancelled) {
+                    throw new IllegalStateException("Remote segmentation stream was cancelled");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing chunk to remote segmentation", e);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.model.Document;
+import com.insightlens.core.model.DocumentStatus;
+import com.insightlens.core.model.IngestPriority;
+import com.insightlens.core.repository.DocumentRepository;
+import com.insightlens.core.repository.StatusCount;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Backfill entry points: zip archives, manifests of server-side files and the directory importer.
+ * Bulk documents are queued with {@link IngestPriority#BACKFILL}, so interactive uploads are
+ * claimed first, and saved in batches. Admission control keeps the backlog of queued backfill
+ * documents bounded: an import waits for the queue to drain below the limit before it stores
+ * more files, which pushes back on the client through the unread request body. If an import
+ * fails, files it stored but had not saved yet are deleted again; groups saved before stay queued.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BulkIngestService {
+
+    private static final Duration ADMISSION_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    private final DocumentStorageService documentStorageService;
+    private final DocumentRepository documentRepository;
+
+    @Value("${ingest.save-batch-size:100}")
+    private int saveBatchSize;
+
+    @Value("${ingest.max-queued-backfill:10000}")
+    private long maxQueuedBackfill;
+
+    @Value("${ingest.admission-timeout:PT10M}")
+    private Duration admissionTimeout;
+
+    @Value("${ingest.manifest-root:}")
+    private String manifestRoot;
+
+    public record IngestResult(String batchId, int accepted, int duplicates, int skipped) {}
+
+    public record ManifestEntry(String path, String contentType) {}
+
+    /**
+     * @param imported   Files whose documents were saved
+     * @param unreadable Files that could not be read
+     */
+    public record FileImportResult(List<Path> imported, List<Path> unreadable) {}
+
+    public record BatchProgress(String batchId, long total, long pending, long completed, long failed,
+                                Map<DocumentStatus, Long> byStatus) {}
+
+    /**
+     * Imports every file in a zip stream, reading it entry by entry without buffering the archive.
+     */
+    public IngestResult ingestArchive(InputStream archive, String batchId, String segmentationStrategy,
+                                      String tenantId) throws IOException {
+        PendingBatch batch = new PendingBatch(batchId, tenantId);
+        try (ZipInputStream zip = new ZipInputStream(archive)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                batch.admit();
+                // The storage copy closes its input, which must not close the archive
+                batch.add(documentStorageService.prepare(StreamUtils.nonClosing(zip), entry.getName(), null,
+                        segmentationStrategy, batch.originals), null);
+            }
+            return batch.finish();
+        } catch (IOException | RuntimeException e) {
+            batch.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Imports files that already sit on storage shared with this node, below {@code ingest.manifest-root}.
+     */
+    public IngestResult ingestManifest(List<ManifestEntry> entries, String batchId, String segmentationStrategy,
+                                       String tenantId) throws IOException {
+        if (manifestRoot.isBlank()) {
+            throw new IllegalStateException("Manifest ingestion is disabled (ingest.manifest-root is not set)");
+        }
+        Path root = Paths.get(manifestRoot).toRealPath();
+        PendingBatch batch = new PendingBatch(batchId, tenantId);
+        try {
+            for (ManifestEntry entry : entries) {
+                Path file = realPathOrNull(root.resolve(entry.path()));
+                // Resolved through symlinks, so a link below the root cannot point outside it
+                if (file == null || !file.startsWith(root) || !Files.isRegularFile(file)) {
+                    log.warn("Skipping manifest entry {}: not a file below {}", entry.path(), root);
+                    batch.skipped++;
+                    continue;
+                }
+                batch.admit();
+                try (InputStream content = Files.newInputStream(file)) {
+                    batch.add(documentStorageService.prepare(content, file.getFileName().toString(),
+                            entry.contentType(), segmentationStrategy, batch.originals), null);
+                }
+            }
+            return batch.finish();
+        } catch (IOException | RuntimeException e) {
+            batch.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Imports local files without waiting for admission; callers check {@link #hasBackfillCapacity()}.
+     * If saving a group of documents fails, the files of that group and of the ones after it are
+     * in neither list of the result, so they can be imported again.
+     */
+    public FileImportResult ingestFiles(List<Path> files, String batchId, String tenantId) {
+        PendingBatch batch = new PendingBatch(batchId, tenantId);
+        List<Path> unreadable = new ArrayList<>();
+        try {
+            for (Path file : files) {
+                Document document;
+                try (InputStream content = Files.newInputStream(file)) {
+                    document = documentStorageService.prepare(content, file.getFileName().toString(), null, null,
+                            batch.originals);
+                } catch (IOException e) {
+                    log.warn("Could not import {}: {}", file, e.getMessage());
+                    unreadable.add(file);
+                    continue;
+                }
+                batch.add(document, file);
+            }
+            batch.finish();
+        } catch (RuntimeException e) {
+            log.error("Failed to save imported files of batch {}: {}", batch.batchId, e.getMessage(), e);
+            batch.discard();
+        }
+        return new FileImportResult(List.copyOf(batch.savedSources), unreadable);
+    }
+
+    private static Path realPathOrNull(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return null; // Missing or unreadable
+        }
+    }
+
+    public boolean hasBackfillCapacity() {
+        return documentRepository.countByStatusAndPriority(DocumentStatus.UPLOADED, IngestPriority.BACKFILL)
+                < maxQueuedBackfill;
+    }
+
+    public BatchProgress progress(String batchId) {
+        Map<DocumentStatus, Long> byStatus = new EnumMap<>(DocumentStatus.class);
+        for (StatusCount count : documentRepository.countByStatusForBatch(batchId)) {
+            byStatus.put(count.getStatus(), count.getCount());
+        }
+        long total = 0;
+        long pending = 0;
+        long failed = 0;
+        for (Map.Entry<DocumentStatus, Long> entry : byStatus.entrySet()) {
+            total += entry.getValue();
+            if (DocumentProcessingQueue.CLAIMABLE_STATUSES.contains(entry.getKey().name())) {
+                pending += entry.getValue();
+            } else if (entry.getKey() == DocumentStatus.TEXT_EXTRACTION_FAILED
+                    || entry.getKey() == DocumentStatus.EMBEDDING_FAILED) {
+                failed += entry.getValue();
+            }
+        }
+        return new BatchProgress(batchId, total, pending, total - pending - failed, failed, byStatus);
+    }
+
+    /**
+     * Collects prepared documents of one import and saves them {@code saveBatchSize} at a time.
+     */
+    private class PendingBatch {
+        private final String batchId;
+        private final String tenantId;
+        private final List<Document> documents = new ArrayList<>(saveBatchSize);
+        // Files the unsaved documents were read from, where the caller tracks them
+        private final List<Path> sources = new ArrayList<>(saveBatchSize);
+        private final List<Path> savedSources = new ArrayList<>();
+        // Originals of this import by content hash; the storage lookup only finds extracted ones
+        private final Map<String, List<Document>> originals = new HashMap<>();
+        private int accepted;
+        private int duplicates;
+        private int skipped;
+
+        PendingBatch(String batchId, String tenantId) {
+            this.batchId = batchId != null && !batchId.isBlank() ? batchId : UUID.randomUUID().toString();
+            this.tenantId = tenantId != null && !tenantId.isBlank() ? tenantId : Document.DEFAULT_TENANT;
+        }
+
+        /**
+         * Blocks before a new group of files is stored while the backfill queue is full.
+         */
+        void admit() {
+            if (!documents.isEmpty()) {
+                return;
+            }
+            long deadline = System.nanoTime() + admissionTimeout.toNanos();
+            while (!hasBackfillCapacity()) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Backfill queue is full; batch " + batchId + " stopped after "
+                            + accepted + " documents");
+                }
+                try {
+                    Thread.sleep(ADMISSION_POLL_INTERVAL.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for backfill capacity", e);
+                }
+            }
+        }
+
+        void add(Document document, Path source) {
+            document.setPriority(IngestPriority.BACKFILL);
+            document.setBatchId(batchId);
+            document.setTenantId(tenantId);
+            documents.add(document);
+            if (source != null) {
+                sources.add(source);
+            }
+            if (document.getDuplicateOfDocumentId() != null) {
+                duplicates++;
+            } else {
+                originals.computeIfAbsent(document.getContentHash(), hash -> new ArrayList<>(1)).add(document);
+                accepted++;
+            }
+            if (documents.size() >= saveBatchSize) {
+                flush();
+            }
+        }
+
+        IngestResult finish() {
+            flush();
+            log.info("Bulk batch {}: {} documents queued, {} duplicates, {} skipped", batchId, accepted, duplicates, skipped);
+            return new IngestResult(batchId, accepted, duplicates, skipped);
+        }
+
+        /**
+         * Deletes the stored files of documents that were not saved; duplicates share the file of
+         * their original and are left alone.
+         */
+        void discard() {
+            for (Document document : documents) {
+                if (document.getDuplicateOfDocumentId() != null) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(Paths.get(document.getStoredFilePath()));
+                } catch (IOException e) {
+                    log.warn("Could not delete {} of failed batch {}: {}", document.getStoredFilePath(), batchId,
+                            e.getMessage());
+                }
+            }
+            log.warn("Bulk batch {} failed: {} documents queued before, {} discarded", batchId,
+                    accepted + duplicates - documents.size(), documents.size());
+            documents.clear();
+            sources.clear();
+        }
+
+        private void flush() {
+            if (!documents.isEmpty()) {
+                documentRepository.saveAll(documents);
+                documents.clear();
+                savedSources.addAll(sources);
+                sources.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.insightlens.core.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports files dropped into {@code ingest.watch.dir} as backfill documents. A
+ * {@link WatchService} thread only records candidate files; a scan every {@code ingest.watch.scan-interval},
+ * on a thread of its own since it reads and stores whole files, imports those whose size and
+ * modification time have not changed for {@code ingest.watch.settle-time}, so files that are
+ * still being copied in are left alone. Imported files are moved to {@code imported/}, files
+ * that could not be read to {@code failed/}. Nothing is imported while the backfill queue is full.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DirectoryImportService {
+
+    private static final String IMPORTED_DIR = "imported";
+    private static final String FAILED_DIR = "failed";
+
+    private final BulkIngestService bulkIngestService;
+    private final Map<Path, Observation> candidates = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService importScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "ingest-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile WatchService watchService;
+
+    @Value("${ingest.watch.dir:}")
+    private String watchDir;
+
+    @Value("${ingest.watch.scan-interval:PT5S}")
+    private Duration scanInterval;
+
+    @Value("${ingest.watch.settle-time:PT5S}")
+    private Duration settleTime;
+
+    @Value("${ingest.watch.tenant-id:default}")
+    private String tenantId;
+
+    @Value("${ingest.watch.max-files-per-scan:1000}")
+    private int maxFilesPerScan;
+
+    private record Observation(long size, long lastModified, long unchangedSince) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (watchDir.isBlank()) {
+            return;
+        }
+        Path dir = Paths.get(watchDir);
+        Files.createDirectories(dir.resolve(IMPORTED_DIR));
+        Files.createDirectories(dir.resolve(FAILED_DIR));
+        watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        addExistingFiles(dir);
+
+        Thread watcher = new Thread(() -> watch(dir), "ingest-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+        importScheduler.scheduleWithFixedDelay(this::importSettledFiles,
+                scanInterval.toMillis(), scanInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Watching {} for files to import", dir.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        importScheduler.shutdownNow();
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    public void importSettledFiles() {
+        if (watchService == null || candidates.isEmpty()) {
+            return;
+        }
+        try {
+            importSettled();
+        } catch (RuntimeException e) {
+            // An escaping exception would cancel every later scan
+            log.warn("Failed to import watched files: {}", e.getMessage(), e);
+        }
+    }
+
+    private void importSettled() {
+        long now = System.currentTimeMillis();
+        List<Path> settled = new ArrayList<>();
+        for (Path file : List.copyOf(candidates.keySet())) {
+            if (settled.size() >= maxFilesPerScan) {
+                break;
+            }
+            try {
+                long size = Files.size(file);
+                long lastModified = Files.getLastModifiedTime(file).toMillis();
+                Observation previous = candidates.get(file);
+                if (previous == null || previous.size() != size || previous.lastModified() != lastModified) {
+                    candidates.put(file, new Observation(size, lastModified, now));
+                } else if (now - previous.unchangedSince() >= settleTime.toMillis()) {
+                    settled.add(file);
+                }
+            } catch (IOException e) {
+                candidates.remove(file); // Deleted or moved away before it settled
+            }
+        }
+        if (settled.isEmpty()) {
+            return;
+        }
+        if (!bulkIngestService.hasBackfillCapacity()) {
+            log.debug("Backfill queue is full, deferring {} watched files", settled.size());
+            return;
+        }
+
+        BulkIngestService.FileImportResult result =
+                bulkIngestService.ingestFiles(settled, "watch-" + LocalDate.now(), tenantId);
+        // Files of a group that could not be saved stay candidates and are imported by a later scan
+        for (Path file : result.imported()) {
+            candidates.remove(file);
+            moveTo(file, IMPORTED_DIR);
+        }
+        for (Path file : result.unreadable()) {
+            candidates.remove(file);
+            moveTo(file, FAILED_DIR);
+        }
+    }
+
+    private void watch(Path dir) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        addExistingFiles(dir);
+                    } else {
+                        addCandidate(dir.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    log.error("Watch directory {} is no longer accessible, stopping the importer", dir);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("Directory watcher stopped");
+        } catch (IOException e) {
+            log.error("Directory watcher for {} failed: {}", dir, e.getMessage(), e);
+        }
+    }
+
+    private void addExistingFiles(Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            files.forEach(this::addCandidate);
+        }
+    }
+
+    private void addCandidate(Path file) {
+        if (Files.isRegularFile(file) && !file.getFileName().toString().startsWith(".")) {
+            candidates.putIfAbsent(file, new Observation(-1, -1, 0));
+        }
+    }
+
+    private void moveTo(Path file, String subdirectory) {
+        try {
+            Files.move(file, file.resolveSibling(subdirectory).resolve(file.getFileName()),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Could not move {} to {}: {}", file, subdirectory, e.getMessage());
+        }
+    }
+}
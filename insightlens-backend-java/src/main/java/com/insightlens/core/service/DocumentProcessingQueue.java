@@ -0,0 +1,277 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.model.Document;
+import com.insightlens.core.model.DocumentStatus;
+import com.insightlens.core.repository.ClaimCandidate;
+import com.insightlens.core.repository.DocumentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable work queue on the {@code documents} table. Each instance polls for documents in a
+ * workable state, lets {@link FairShareScheduler} choose among them, claims the chosen ones with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED} and a time-limited
+ * lease, and keeps the lease alive while it works. If an instance dies, its leases expire and the
+ * documents are picked up again by any instance, so nothing is lost across restarts and uploads
+ * never overflow an in-memory executor queue. Leases are extended from a thread of their own, so a
+ * long scheduled task elsewhere can never delay a heartbeat past the visibility timeout.
+ * <p>
+ * Documents waiting for a remote service whose circuit breaker is open are not claimed, and
+ * documents that ran into an unavailable service are parked: released without using up an
+ * attempt and kept back until the breaker may let calls through again. Documents that made
+ * partial progress (see {@link RetryLaterException}) are released the same way, but use up the attempt.
+ */
+@Service
+@Slf4j
+public class DocumentProcessingQueue {
+
+    static final List<String> CLAIMABLE_STATUSES = List.of(
+            DocumentStatus.UPLOADED.name(),
+            DocumentStatus.TEXT_EXTRACTION_PENDING.name(),
+            DocumentStatus.TEXT_EXTRACTION_IN_PROGRESS.name(),
+            DocumentStatus.EMBEDDING_PENDING.name());
+
+    private final DocumentRepository documentRepository;
+    private final AsyncDocumentProcessorService documentProcessorService;
+    private final TransactionTemplate transactionTemplate;
+    private final FairShareScheduler fairShareScheduler;
+    private final Executor documentProcessingExecutor;
+    private final RemoteServiceGuard segmentationGuard;
+    private final RemoteServiceGuard embeddingGuard;
+    private final Map<String, FairShareScheduler.Lane> inFlight = new ConcurrentHashMap<>();
+    private final String nodeId;
+    private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "lease-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${document.queue.worker-concurrency:4}")
+    private int workerConcurrency;
+
+    // Virtual threads are not the limit there; ResourcePermits bound parsing and database work
+    @Value("${document.queue.virtual-worker-concurrency:64}")
+    private int virtualWorkerConcurrency;
+
+    @Value("${document.processing.executor-mode:platform}")
+    private String executorMode;
+
+    @Value("${document.queue.visibility-timeout:PT5M}")
+    private Duration visibilityTimeout;
+
+    @Value("${document.queue.heartbeat-interval:PT30S}")
+    private Duration heartbeatInterval;
+
+    @Value("${document.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${document.queue.park-delay:PT10S}")
+    private Duration parkDelay;
+
+    @Value("${segmentation.remote.enabled:false}")
+    private boolean remoteSegmentationEnabled;
+
+    public DocumentProcessingQueue(DocumentRepository documentRepository,
+                                   AsyncDocumentProcessorService documentProcessorService,
+                                   TransactionTemplate transactionTemplate,
+                                   FairShareScheduler fairShareScheduler,
+                                   @Qualifier("documentProcessingExecutor") Executor documentProcessingExecutor,
+                                   @Qualifier("segmentationGuard") RemoteServiceGuard segmentationGuard,
+                                   @Qualifier("embeddingGuard") RemoteServiceGuard embeddingGuard,
+                                   @Value("${document.queue.node-id:}") String nodeId) {
+        this.documentRepository = documentRepository;
+        this.documentProcessorService = documentProcessorService;
+        this.transactionTemplate = transactionTemplate;
+        this.fairShareScheduler = fairShareScheduler;
+        this.documentProcessingExecutor = documentProcessingExecutor;
+        this.segmentationGuard = segmentationGuard;
+        this.embeddingGuard = embeddingGuard;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+        log.info("Document processing queue node id: {}", this.nodeId);
+    }
+
+    @Scheduled(fixedDelayString = "${document.queue.poll-interval:PT0.5S}")
+    public void poll() {
+        int concurrency = "virtual".equalsIgnoreCase(executorMode) ? virtualWorkerConcurrency : workerConcurrency;
+        int freeSlots = concurrency - inFlight.size();
+        if (freeSlots <= 0) {
+            return;
+        }
+        List<String> claimableStatuses = claimableStatuses();
+        if (claimableStatuses.isEmpty()) {
+            return;
+        }
+        List<ClaimCandidate> candidates = fairShareScheduler.findCandidates(claimableStatuses);
+        if (candidates.isEmpty()) {
+            return;
+        }
+        int longJobsInFlight = (int) inFlight.values().stream().filter(lane -> lane == FairShareScheduler.Lane.LONG).count();
+        Map<String, FairShareScheduler.Selection> selections = new LinkedHashMap<>();
+        for (FairShareScheduler.Selection selection
+                : fairShareScheduler.select(candidates, freeSlots, concurrency, longJobsInFlight)) {
+            selections.put(selection.candidate().getId(), selection);
+        }
+        if (selections.isEmpty()) {
+            return;
+        }
+
+        Set<String> claimed = transactionTemplate.execute(status -> {
+            List<String> ids = documentRepository.lockClaimableIds(selections.keySet(), claimableStatuses);
+            if (!ids.isEmpty()) {
+                documentRepository.lease(ids, nodeId, visibilityTimeout.toSeconds());
+            }
+            return Set.copyOf(ids);
+        });
+
+        // In scheduling order; documents claimed by another instance in the meantime are skipped
+        for (FairShareScheduler.Selection selection : selections.values()) {
+            String documentId = selection.candidate().getId();
+            if (!claimed.contains(documentId)) {
+                continue;
+            }
+            log.debug("Claimed document {} for processing ({} lane, cost {})", documentId, selection.lane(), selection.cost());
+            fairShareScheduler.claimed(selection);
+            inFlight.put(documentId, selection.lane());
+            try {
+                documentProcessingExecutor.execute(() -> process(documentId));
+            } catch (RejectedExecutionException e) {
+                log.warn("Executor rejected document {}, leaving it for the next poll", documentId);
+                complete(documentId);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void startHeartbeat() {
+        heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat,
+                heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopHeartbeat() {
+        heartbeatScheduler.shutdownNow();
+    }
+
+    /**
+     * Keeps leases of in-flight documents from expiring while they are still being worked on.
+     */
+    public void heartbeat() {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        try {
+            int extended = documentRepository.extendLeases(Set.copyOf(inFlight.keySet()), nodeId, visibilityTimeout.toSeconds());
+            log.trace("Extended {} document leases", extended);
+        } catch (RuntimeException e) {
+            // An escaping exception would cancel every later heartbeat
+            log.warn("Failed to extend document leases: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The claimable statuses whose next stage can run now: extraction needs the segmentation
+     * service only when segmenting remotely, embedding always needs the embedding service.
+     */
+    private List<String> claimableStatuses() {
+        boolean extractionAvailable = !remoteSegmentationEnabled || segmentationGuard.allowsRequests();
+        boolean embeddingAvailable = embeddingGuard.allowsRequests();
+        if (extractionAvailable && embeddingAvailable) {
+            return CLAIMABLE_STATUSES;
+        }
+        return CLAIMABLE_STATUSES.stream()
+                .filter(status -> status.equals(DocumentStatus.EMBEDDING_PENDING.name())
+                        ? embeddingAvailable
+                        : extractionAvailable)
+                .toList();
+    }
+
+    private void process(String documentId) {
+        try {
+            int attempts = documentRepository.findById(documentId).map(Document::getAttempts).orElse(0);
+            if (attempts > maxAttempts) {
+                documentProcessorService.markFailed(documentId, "Gave up after " + maxAttempts + " processing attempts");
+                complete(documentId);
+                return;
+            }
+            documentProcessorService.processUploadedDocument(documentId)
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            failed(documentId, error);
+                        } else {
+                            complete(documentId);
+                        }
+                    });
+        } catch (Exception e) {
+            failed(documentId, e);
+        }
+    }
+
+    private void failed(String documentId, Throwable error) {
+        Optional<RetryLaterException> retryLater = RetryLaterException.find(error);
+        if (retryLater.isPresent()) {
+            log.info("Retrying document {} in {}: {}", documentId, retryLater.get().getRetryAfter(),
+                    retryLater.get().getMessage());
+            try {
+                documentRepository.retryLater(documentId, nodeId, retryLater.get().getRetryAfter().toSeconds());
+            } finally {
+                inFlight.remove(documentId);
+            }
+            return;
+        }
+        Optional<RemoteServiceUnavailableException> unavailable = RemoteServiceUnavailableException.find(error);
+        if (unavailable.isEmpty()) {
+            log.error("Processing of document {} failed: {}", documentId, error.getMessage(), error);
+            complete(documentId);
+            return;
+        }
+        Duration delay = unavailable.get().getRetryAfter().compareTo(parkDelay) > 0
+                ? unavailable.get().getRetryAfter()
+                : parkDelay;
+        log.info("Parking document {} for {}: {}", documentId, delay, unavailable.get().getMessage());
+        try {
+            documentRepository.park(documentId, nodeId, delay.toSeconds());
+        } finally {
+            inFlight.remove(documentId);
+        }
+    }
+
+    private void complete(String documentId) {
+        try {
+            documentRepository.releaseLease(documentId, nodeId);
+        } finally {
+            inFlight.remove(documentId);
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown-host";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,335 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.model.Document;
+import com.insightlens.core.model.DocumentProgressEvent;
+import com.insightlens.core.model.DocumentStatus;
+import com.insightlens.core.model.DocumentStatusEvent;
+import com.insightlens.core.repository.DocumentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Current status and progress of documents, kept in memory and pushed to Server-Sent Events
+ * subscribers, so clients no longer poll the database for it. Fed by {@link DocumentStatusEvent}s
+ * (every save of a document) and {@link DocumentProgressEvent}s (segment and embedding batches),
+ * both delivered after their transaction commits.
+ * <p>
+ * Events only cover documents processed on this node, so an entry is trusted for
+ * {@code document.status.cache-ttl} after its last update and then read again from the database;
+ * the same refresh keeps subscribers of documents processed by other instances up to date.
+ * A duplicate is never processed itself, so it is read with the status of its original.
+ * Changes are sent by one task every {@code document.status.push-interval}, coalesced per
+ * document, on a thread of its own: a slow client never holds up a pipeline thread, nor the
+ * shared {@code @Scheduled} pool.
+ */
+@Service
+@Slf4j
+public class DocumentStatusTracker {
+
+    private static final String STATUS_EVENT = "status";
+    private static final String PROGRESS_EVENT = "progress";
+
+    public record DocumentStatusView(String documentId, String batchId, DocumentStatus status, String statusMessage,
+                                     long segmentsPersisted, long segmentsEmbedded, LocalDateTime lastUpdated) {
+
+        static DocumentStatusView of(Document document, Document original) {
+            if (original == null) {
+                return new DocumentStatusView(document.getId(), document.getBatchId(), document.getStatus(),
+                        document.getStatusMessage(), document.getCheckpointSegmentOrder(), 0, document.getUpdatedAt());
+            }
+            return new DocumentStatusView(document.getId(), document.getBatchId(), original.getStatus(),
+                    "Duplicate of document " + original.getId() + ": " + original.getStatusMessage(),
+                    original.getCheckpointSegmentOrder(), 0, original.getUpdatedAt());
+        }
+    }
+
+    private record CachedStatus(DocumentStatusView view, long refreshedAt) {}
+
+    private final DocumentRepository documentRepository;
+    private final BulkIngestService bulkIngestService;
+    private final Map<String, CachedStatus> statuses = new ConcurrentHashMap<>();
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<SseEmitter>> documentSubscribers = new ConcurrentHashMap<>();
+    private final Map<String, Set<SseEmitter>> batchSubscribers = new ConcurrentHashMap<>();
+    private final Set<String> changedBatches = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> batchProgressSentAt = new ConcurrentHashMap<>();
+    // Emitter writes block while a client's socket buffer is full
+    private final ScheduledExecutorService pushScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "status-push");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${document.status.push-interval:PT1S}")
+    private Duration pushInterval;
+
+    @Value("${document.status.cache-ttl:PT5S}")
+    private Duration cacheTtl;
+
+    @Value("${document.status.cache-max-entries:10000}")
+    private int cacheMaxEntries;
+
+    @Value("${document.status.sse-timeout:PT30M}")
+    private Duration sseTimeout;
+
+    @Value("${embedding.enabled:true}")
+    private boolean embeddingEnabled;
+
+    public DocumentStatusTracker(DocumentRepository documentRepository, BulkIngestService bulkIngestService) {
+        this.documentRepository = documentRepository;
+        this.bulkIngestService = bulkIngestService;
+    }
+
+    /**
+     * The status of a document, from memory while it is fresh and from the database otherwise.
+     */
+    public Optional<DocumentStatusView> current(String documentId) {
+        CachedStatus cached = statuses.get(documentId);
+        if (cached != null && isFresh(cached)) {
+            return Optional.of(cached.view());
+        }
+        return documentRepository.findById(documentId)
+                .map(document -> refreshed(document, originalOf(document), cached).view());
+    }
+
+    /**
+     * Streams {@code status} events for one document until it reaches a final state.
+     *
+     * @return Empty if the document does not exist
+     */
+    public Optional<SseEmitter> subscribe(String documentId) {
+        if (current(documentId).isEmpty()) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = register(documentSubscribers, documentId);
+        // The first event goes out with the next push, so only the push task ever writes to emitters
+        changed.add(documentId);
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Streams {@code progress} events with the batch's counts per status and a {@code status} event
+     * for each of its documents that changes on this node, until no document is left pending.
+     *
+     * @return Empty if the batch does not exist
+     */
+    public Optional<SseEmitter> subscribeBatch(String batchId) {
+        if (bulkIngestService.progress(batchId).total() == 0) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = register(batchSubscribers, batchId);
+        changedBatches.add(batchId);
+        return Optional.of(emitter);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(DocumentStatusEvent event) {
+        update(event.documentId(), view -> view == null
+                ? new DocumentStatusView(event.documentId(), event.batchId(), event.status(), event.statusMessage(),
+                        0, 0, LocalDateTime.now())
+                : new DocumentStatusView(view.documentId(), event.batchId(), event.status(), event.statusMessage(),
+                        view.segmentsPersisted(), view.segmentsEmbedded(), LocalDateTime.now()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProgress(DocumentProgressEvent event) {
+        update(event.documentId(), view -> view == null ? null : switch (event.stage()) {
+            case SEGMENTS_PERSISTED -> new DocumentStatusView(view.documentId(), view.batchId(), view.status(),
+                    view.statusMessage(), event.completed(), view.segmentsEmbedded(), LocalDateTime.now());
+            case SEGMENTS_EMBEDDED -> new DocumentStatusView(view.documentId(), view.batchId(), view.status(),
+                    view.statusMessage(), view.segmentsPersisted(), event.completed(), LocalDateTime.now());
+        });
+    }
+
+    @PostConstruct
+    public void startPush() {
+        pushScheduler.scheduleWithFixedDelay(this::push,
+                pushInterval.toMillis(), pushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopPush() {
+        pushScheduler.shutdownNow();
+    }
+
+    /**
+     * Sends what changed since the last run, re-reads stale entries of subscribed documents and
+     * evicts stale entries nobody is subscribed to.
+     */
+    public void push() {
+        try {
+            pushChanges();
+        } catch (RuntimeException e) {
+            // An escaping exception would cancel every later push
+            log.warn("Failed to push document status changes: {}", e.getMessage(), e);
+        }
+    }
+
+    private void pushChanges() {
+        refreshStaleSubscriptions();
+
+        for (String documentId : drain(changed)) {
+            CachedStatus cached = statuses.get(documentId);
+            if (cached == null) {
+                continue;
+            }
+            DocumentStatusView view = cached.view();
+            boolean done = isFinal(view.status());
+            sendAll(documentSubscribers, documentId, STATUS_EVENT, view, done);
+            if (view.batchId() != null && batchSubscribers.containsKey(view.batchId())) {
+                sendAll(batchSubscribers, view.batchId(), STATUS_EVENT, view, false);
+                changedBatches.add(view.batchId());
+            }
+        }
+
+        long now = System.nanoTime();
+        for (String batchId : batchSubscribers.keySet()) {
+            Long sentAt = batchProgressSentAt.get(batchId);
+            if (changedBatches.contains(batchId) || sentAt == null || now - sentAt >= cacheTtl.toNanos()) {
+                BulkIngestService.BatchProgress progress = bulkIngestService.progress(batchId);
+                sendAll(batchSubscribers, batchId, PROGRESS_EVENT, progress, progress.pending() == 0);
+                batchProgressSentAt.put(batchId, now);
+            }
+        }
+        changedBatches.clear();
+        batchProgressSentAt.keySet().retainAll(batchSubscribers.keySet());
+
+        statuses.entrySet().removeIf(entry -> !isFresh(entry.getValue())
+                && !documentSubscribers.containsKey(entry.getKey()));
+    }
+
+    private void refreshStaleSubscriptions() {
+        List<String> stale = new ArrayList<>();
+        for (String documentId : documentSubscribers.keySet()) {
+            CachedStatus cached = statuses.get(documentId);
+            if (cached == null || !isFresh(cached)) {
+                stale.add(documentId);
+            }
+        }
+        if (!stale.isEmpty()) {
+            List<Document> documents = documentRepository.findAllById(stale);
+            Map<String, Document> originals = new HashMap<>();
+            documentRepository.findAllById(documents.stream()
+                            .map(Document::getDuplicateOfDocumentId)
+                            .filter(Objects::nonNull)
+                            .toList())
+                    .forEach(original -> originals.put(original.getId(), original));
+            for (Document document : documents) {
+                CachedStatus previous = statuses.get(document.getId());
+                Document original = document.getDuplicateOfDocumentId() != null
+                        ? originals.get(document.getDuplicateOfDocumentId()) : null;
+                DocumentStatusView view = refreshed(document, original, previous).view();
+                if (previous == null || previous.view().status() != view.status()
+                        || view.segmentsPersisted() != previous.view().segmentsPersisted()) {
+                    changed.add(document.getId());
+                }
+            }
+        }
+    }
+
+    // Entry read from the database; progress counters only this node knows about are kept
+    private CachedStatus refreshed(Document document, Document original, CachedStatus previous) {
+        DocumentStatusView view = DocumentStatusView.of(document, original);
+        if (previous != null && previous.view().status() == view.status()) {
+            view = new DocumentStatusView(view.documentId(), view.batchId(), view.status(), view.statusMessage(),
+                    Math.max(view.segmentsPersisted(), previous.view().segmentsPersisted()),
+                    previous.view().segmentsEmbedded(), view.lastUpdated());
+        }
+        CachedStatus cached = new CachedStatus(view, System.nanoTime());
+        if (previous != null || statuses.size() < cacheMaxEntries || documentSubscribers.containsKey(document.getId())) {
+            statuses.put(document.getId(), cached);
+        }
+        return cached;
+    }
+
+    private void update(String documentId, UnaryOperator<DocumentStatusView> change) {
+        statuses.compute(documentId, (id, cached) -> {
+            if (cached == null && statuses.size() >= cacheMaxEntries && !documentSubscribers.containsKey(id)) {
+                return null;
+            }
+            DocumentStatusView view = change.apply(cached == null ? null : cached.view());
+            return view == null ? cached : new CachedStatus(view, System.nanoTime());
+        });
+        changed.add(documentId);
+    }
+
+    private Document originalOf(Document document) {
+        return document.getDuplicateOfDocumentId() == null
+                ? null : documentRepository.findById(document.getDuplicateOfDocumentId()).orElse(null);
+    }
+
+    private SseEmitter register(Map<String, Set<SseEmitter>> subscribers, String key) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(emitter);
+        Runnable unregister = () -> unregister(subscribers, key, emitter);
+        emitter.onCompletion(unregister);
+        emitter.onTimeout(unregister);
+        emitter.onError(error -> unregister.run());
+        return emitter;
+    }
+
+    private static void unregister(Map<String, Set<SseEmitter>> subscribers, String key, SseEmitter emitter) {
+        subscribers.computeIfPresent(key, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private static void sendAll(Map<String, Set<SseEmitter>> subscribers, String key, String name, Object data,
+                                boolean complete) {
+        Set<SseEmitter> emitters = subscribers.get(key);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : List.copyOf(emitters)) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data));
+                if (complete) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; the container reports it through onError/onCompletion as well
+                log.trace("Dropping status subscriber for {}: {}", key, e.getMessage());
+                unregister(subscribers, key, emitter);
+            }
+        }
+    }
+
+    private static List<String> drain(Set<String> keys) {
+        List<String> drained = new ArrayList<>(keys);
+        keys.removeAll(drained);
+        return drained;
+    }
+
+    private boolean isFresh(CachedStatus cached) {
+        return System.nanoTime() - cached.refreshedAt() < cacheTtl.toNanos();
+    }
+
+    private boolean isFinal(DocumentStatus status) {
+        return status == DocumentStatus.TEXT_EXTRACTION_FAILED
+                || status == DocumentStatus.EMBEDDING_COMPLETED
+                || status == DocumentStatus.EMBEDDING_FAILED
+                || (status == DocumentStatus.TEXT_EXTRACTION_COMPLETED && !embeddingEnabled);
+    }
+}
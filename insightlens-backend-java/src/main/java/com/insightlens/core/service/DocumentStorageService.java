@@ -0,0 +1,227 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.model.Document;
+import com.insightlens.core.model.DocumentStatus;
+import com.insightlens.core.repository.DocumentRepository;
+import io.micrometer.observation.Observation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stores uploaded content and registers it as a {@link Document}. The body is copied once, straight
+ * from the request to the upload directory, while its SHA-256 is computed on the way. Content that
+ * has already been extracted with the same segmentation strategy is not processed again: the new
+ * document is linked to the original and its segments are served from there. Content larger
+ * than {@code file.max-upload-size} is rejected while it is copied, whichever way it arrives.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DocumentStorageService {
+
+    private static final int COPY_BUFFER_SIZE = 128 * 1024;
+
+    // An original is only reused once its segments are complete
+    private static final Set<DocumentStatus> REUSABLE_STATUSES = EnumSet.of(
+            DocumentStatus.TEXT_EXTRACTION_COMPLETED,
+            DocumentStatus.EMBEDDING_PENDING,
+            DocumentStatus.EMBEDDING_COMPLETED,
+            DocumentStatus.EMBEDDING_FAILED);
+
+    private final DocumentRepository documentRepository;
+    private final SegmentationStrategyResolver segmentationStrategyResolver;
+    private final PipelineMetrics pipelineMetrics;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${file.max-upload-size:60MB}")
+    private DataSize maxUploadSize;
+
+    public DataSize getMaxUploadSize() {
+        return maxUploadSize;
+    }
+
+    /**
+     * Streams {@code content} to the upload directory and saves the document, either as
+     * {@link DocumentStatus#UPLOADED} for the processing queue or as a duplicate of earlier content.
+     *
+     * @throws UploadTooLargeException If the content is larger than {@code file.max-upload-size}
+     */
+    public Document store(InputStream content, String originalFilename, String contentType,
+                          String segmentationStrategy, String tenantId) throws IOException {
+        Document document = prepare(content, originalFilename, contentType, segmentationStrategy);
+        if (tenantId != null && !tenantId.isBlank()) {
+            document.setTenantId(tenantId);
+        }
+        // An UPLOADED document is picked up by DocumentProcessingQueue; a duplicate is never claimed
+        return documentRepository.save(document);
+    }
+
+    /**
+     * Like {@link #store} but leaves saving the document to the caller, so bulk imports can save
+     * their documents in batches.
+     */
+    public Document prepare(InputStream content, String originalFilename, String contentType,
+                            String segmentationStrategy) throws IOException {
+        return prepare(content, originalFilename, contentType, segmentationStrategy, Map.of());
+    }
+
+    /**
+     * Like {@link #prepare(InputStream, String, String, String)}, but content that matches one of
+     * {@code pendingOriginals} (by content hash) becomes a duplicate of that document, even though
+     * it is not saved or extracted yet. Bulk imports pass the originals they prepared so far, so an
+     * archive that holds the same file twice extracts it once.
+     */
+    public Document prepare(InputStream content, String originalFilename, String contentType,
+                            String segmentationStrategy, Map<String, List<Document>> pendingOriginals)
+            throws IOException {
+        String documentId = UUID.randomUUID().toString();
+        String filename = sanitizeFilename(originalFilename);
+        Path target = Paths.get(uploadDir, documentId + "_" + filename);
+        Path temp = Paths.get(uploadDir, documentId + ".part");
+
+        MessageDigest digest = sha256();
+        long size;
+        Observation observation = pipelineMetrics.start(PipelineMetrics.Stage.UPLOAD, documentId);
+        try {
+            size = copy(content, temp, digest, maxUploadSize.toBytes());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            Files.deleteIfExists(temp);
+            observation.stop();
+        }
+        pipelineMetrics.countBytes(PipelineMetrics.Stage.UPLOAD, size);
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+
+        Document document = Document.builder()
+                .id(documentId)
+                .originalFileName(filename)
+                .storedFilePath(target.toString())
+                .fileContentType(contentType != null ? contentType : "application/octet-stream")
+                .fileSize(size)
+                .contentHash(contentHash)
+                .status(DocumentStatus.UPLOADED)
+                .segmentationStrategy(segmentationStrategy)
+                .build();
+
+        Optional<Document> original = findPendingOriginal(document, pendingOriginals.getOrDefault(contentHash, List.of()))
+                .or(() -> findReusableOriginal(document));
+        if (original.isPresent()) {
+            Document existing = original.get();
+            Files.deleteIfExists(target);
+            document.setStoredFilePath(existing.getStoredFilePath());
+            document.setDuplicateOfDocumentId(existing.getId());
+            document.setStatus(existing.getStatus());
+            document.setStatusMessage("Duplicate of document " + existing.getId() + "; reusing its segments");
+            log.info("Upload {} ({} bytes) duplicates document {}, skipping extraction", documentId, size, existing.getId());
+        } else {
+            log.info("Stored upload {} ({} bytes, sha256 {})", documentId, size, contentHash);
+        }
+        return document;
+    }
+
+    /**
+     * The id of the document whose segments hold the content of {@code documentId}.
+     */
+    public String resolveContentDocumentId(String documentId) {
+        return findContentDocumentId(documentId).orElse(documentId);
+    }
+
+    /**
+     * Like {@link #resolveContentDocumentId}, but empty if the document does not exist.
+     */
+    public Optional<String> findContentDocumentId(String documentId) {
+        return documentRepository.findById(documentId)
+                .map(document -> document.getDuplicateOfDocumentId() != null
+                        ? document.getDuplicateOfDocumentId()
+                        : document.getId());
+    }
+
+    private Optional<Document> findPendingOriginal(Document document, List<Document> candidates) {
+        if (candidates.isEmpty()) {
+            return Optional.empty();
+        }
+        String strategy = segmentationStrategyResolver.resolve(document).getName();
+        return candidates.stream()
+                .filter(candidate -> Objects.equals(segmentationStrategyResolver.resolve(candidate).getName(), strategy))
+                .findFirst();
+    }
+
+    private Optional<Document> findReusableOriginal(Document document) {
+        String strategy = segmentationStrategyResolver.resolve(document).getName();
+        return documentRepository
+                .findByContentHashAndDuplicateOfDocumentIdIsNullAndStatusInOrderByCreatedAtAsc(
+                        document.getContentHash(), REUSABLE_STATUSES)
+                .stream()
+                .filter(candidate -> Objects.equals(segmentationStrategyResolver.resolve(candidate).getName(), strategy))
+                .findFirst();
+    }
+
+    // Stops at the first read past maxSize; the caller deletes the partial file
+    private static long copy(InputStream content, Path temp, MessageDigest digest, long maxSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+        long size = 0;
+        try (ReadableByteChannel source = Channels.newChannel(content);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) >= 0) {
+                if (size + buffer.position() > maxSize) {
+                    throw new UploadTooLargeException("Upload is larger than the limit of " + maxSize + " bytes");
+                }
+                buffer.flip();
+                digest.update(buffer.array(), buffer.position(), buffer.remaining());
+                while (buffer.hasRemaining()) {
+                    size += out.write(buffer);
+                }
+                buffer.clear();
+            }
+            out.force(false);
+        }
+        return size;
+    }
+
+    // Only the last path element is kept, so a crafted name cannot escape the upload directory
+    private static String sanitizeFilename(String originalFilename) {
+        if (originalFilename == null || originalFilename.isBlank()) {
+            return "upload";
+        }
+        Path name = Paths.get(originalFilename.replace('\\', '/')).getFileName();
+        return name != null ? name.toString() : "upload";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
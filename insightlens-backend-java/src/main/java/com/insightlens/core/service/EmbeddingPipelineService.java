@@ -0,0 +1,269 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.model.Document;
+import com.insightlens.core.model.DocumentProgressEvent;
+import com.insightlens.core.model.DocumentStatus;
+import com.insightlens.core.repository.DocumentRepository;
+import com.insightlens.core.repository.DocumentSegmentBatchWriter;
+import com.insightlens.core.repository.DocumentSegmentRepository;
+import com.insightlens.core.repository.SegmentBodyStore;
+import com.insightlens.core.repository.SegmentTextView;
+import com.insightlens.core.util.TokenEstimator;
+import io.micrometer.observation.Observation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Embeds the segments of a document in size- and token-bounded batches and stores the vectors.
+ * Only segments without a vector are picked up, so a re-run after a failure only re-sends the
+ * batches that did not make it, and a re-segmented document only sends the segments whose text
+ * changed (see {@link ResegmentationService}). A batch that hits a transient error (5xx, timeout)
+ * is re-sent after a backoff; if batches still failed, the document stays pending and is
+ * claimed again later, until {@code document.queue.max-attempts} is used up. Calls go through the embedding service's {@link RemoteServiceGuard},
+ * whose adaptive limit caps the batches in flight per node across all documents; while the
+ * service is unavailable the document is left pending for the queue to park.
+ */
+@Service
+@Slf4j
+public class EmbeddingPipelineService {
+
+    private record SegmentText(String id, String text) {}
+
+    private final DocumentRepository documentRepository;
+    private final DocumentSegmentRepository documentSegmentRepository;
+    private final DocumentSegmentBatchWriter documentSegmentBatchWriter;
+    private final EmbeddingServiceClient embeddingServiceClient;
+    private final VectorIndexService vectorIndexService;
+    private final ResegmentationService resegmentationService;
+    private final SegmentBodyStore segmentBodyStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PipelineMetrics pipelineMetrics;
+    private final RemoteServiceGuard embeddingGuard;
+    private final int maxBatchesInFlight;
+
+    @Value("${embedding.batch.max-segments:64}")
+    private int maxSegmentsPerBatch;
+
+    @Value("${embedding.batch.max-tokens:8192}")
+    private int maxTokensPerBatch;
+
+    @Value("${embedding.page-size:1000}")
+    private int pageSize;
+
+    @Value("${embedding.batch.retry-attempts:2}")
+    private int batchRetryAttempts;
+
+    @Value("${embedding.batch.retry-backoff:PT2S}")
+    private Duration batchRetryBackoff;
+
+    @Value("${embedding.retry-delay:PT30S}")
+    private Duration retryDelay;
+
+    @Value("${document.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    public EmbeddingPipelineService(DocumentRepository documentRepository,
+                                    DocumentSegmentRepository documentSegmentRepository,
+                                    DocumentSegmentBatchWriter documentSegmentBatchWriter,
+                                    EmbeddingServiceClient embeddingServiceClient,
+                                    VectorIndexService vectorIndexService,
+                                    ResegmentationService resegmentationService,
+                                    SegmentBodyStore segmentBodyStore,
+                                    ApplicationEventPublisher eventPublisher,
+                                    PipelineMetrics pipelineMetrics,
+                                    @Qualifier("embeddingGuard") RemoteServiceGuard embeddingGuard,
+                                    @Value("${embedding.max-batches-in-flight:4}") int maxBatchesInFlight) {
+        this.documentRepository = documentRepository;
+        this.documentSegmentRepository = documentSegmentRepository;
+        this.documentSegmentBatchWriter = documentSegmentBatchWriter;
+        this.embeddingServiceClient = embeddingServiceClient;
+        this.vectorIndexService = vectorIndexService;
+        this.resegmentationService = resegmentationService;
+        this.segmentBodyStore = segmentBodyStore;
+        this.eventPublisher = eventPublisher;
+        this.pipelineMetrics = pipelineMetrics;
+        this.embeddingGuard = embeddingGuard;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+    }
+
+    /**
+     * Embeds every segment of the document that has no vector yet and moves the document to
+     * {@link DocumentStatus#EMBEDDING_COMPLETED}, or to {@link DocumentStatus#EMBEDDING_FAILED} if
+     * batches failed on its last attempt. Blocks until all batches have finished.
+     *
+     * @throws RemoteServiceUnavailableException If the embedding service became unavailable; the
+     *                                           document stays {@link DocumentStatus#EMBEDDING_PENDING}
+     * @throws RetryLaterException               If batches failed and attempts are left; the document
+     *                                           stays {@link DocumentStatus#EMBEDDING_PENDING}
+     */
+    public void embedDocument(Document document) {
+        String documentId = document.getId();
+        Observation observation = pipelineMetrics.start(PipelineMetrics.Stage.EMBEDDING, documentId);
+        try (Observation.Scope scope = observation.openScope()) {
+            embed(document, observation);
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private void embed(Document document, Observation observation) {
+        String documentId = document.getId();
+        document.setStatus(DocumentStatus.EMBEDDING_PENDING);
+        document.setStatusMessage("Embedding segments");
+        documentRepository.save(document);
+        int reused = resegmentationService.reuseEmbeddings(documentId);
+
+        AtomicInteger failedBatches = new AtomicInteger();
+        AtomicReference<RemoteServiceUnavailableException> unavailable = new AtomicReference<>();
+        AtomicLong embeddedSoFar = new AtomicLong();
+        Integer embedded = Flux.<List<SegmentText>, Integer>generate(() -> -1, (afterOrder, sink) -> {
+                    if (unavailable.get() == null && !embeddingGuard.allowsRequests()) {
+                        unavailable.set(embeddingGuard.rejection());
+                    }
+                    if (unavailable.get() != null) {
+                        // No point reading further pages; the rest is embedded once the service is back
+                        sink.complete();
+                        return afterOrder;
+                    }
+                    // Keyset paging so each page is a cheap index range scan
+                    List<SegmentTextView> page = documentSegmentRepository.findUnembeddedSegments(
+                            documentId, afterOrder, PageRequest.of(0, pageSize));
+                    if (page.isEmpty()) {
+                        sink.complete();
+                        return afterOrder;
+                    }
+                    sink.next(withTexts(page));
+                    return page.get(page.size() - 1).getSegmentOrder();
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .concatMapIterable(this::packBatches)
+                .flatMap(batch -> embedBatch(documentId, batch, embeddedSoFar, observation)
+                        .onErrorResume(e -> {
+                            Optional<RemoteServiceUnavailableException> rejected = embeddingGuard.unavailable(e);
+                            if (rejected.isPresent()) {
+                                unavailable.compareAndSet(null, rejected.get());
+                            } else {
+                                log.error("Embedding batch of {} segments failed for document {}: {}",
+                                        batch.size(), documentId, e.getMessage());
+                                failedBatches.incrementAndGet();
+                            }
+                            return Mono.just(0);
+                        }), maxBatchesInFlight)
+                .reduce(0, Integer::sum)
+                .block();
+
+        if (unavailable.get() != null) {
+            document.setStatusMessage("Embedding service unavailable; " + embedded
+                    + " segments embedded, the rest waits in the queue");
+            documentRepository.save(document);
+            log.warn("Embedding of document {} parked after {} segments: {}",
+                    documentId, embedded, unavailable.get().getMessage());
+            throw unavailable.get();
+        }
+        if (failedBatches.get() > 0 && document.getAttempts() < maxAttempts) {
+            String message = failedBatches.get() + " embedding batches failed; " + embedded
+                    + " segments embedded, the rest is re-sent (attempt " + document.getAttempts() + " of " + maxAttempts + ")";
+            document.setStatusMessage(message);
+            documentRepository.save(document);
+            log.warn("Embedding of document {} incomplete: {}", documentId, message);
+            // The previous generation is kept, so the next attempt can still reuse its vectors
+            throw new RetryLaterException(message, retryDelay);
+        }
+        if (failedBatches.get() > 0) {
+            document.setStatus(DocumentStatus.EMBEDDING_FAILED);
+            document.setStatusMessage(failedBatches.get() + " embedding batches failed after " + maxAttempts
+                    + " attempts; " + embedded + " segments embedded");
+        } else {
+            document.setStatus(DocumentStatus.EMBEDDING_COMPLETED);
+            document.setStatusMessage("Embedded " + embedded + " segments"
+                    + (reused > 0 ? ", reused " + reused + " embeddings" : ""));
+        }
+        documentRepository.save(document);
+        // Settled either way; everything reusable was copied above
+        resegmentationService.dropPreviousGeneration(documentId);
+        log.info("Embedding finished for document {}: {} segments embedded, {} reused, {} batches failed",
+                documentId, embedded, reused, failedBatches.get());
+    }
+
+    // Deduplicated segments only carry a body hash; their texts are decompressed with one query per page
+    private List<SegmentText> withTexts(List<SegmentTextView> page) {
+        Map<String, String> bodies = segmentBodyStore.loadTexts(page.stream()
+                .filter(segment -> segment.getSegmentText() == null && segment.getBodyHash() != null)
+                .map(SegmentTextView::getBodyHash)
+                .toList());
+        return page.stream()
+                .map(segment -> new SegmentText(segment.getId(), segment.getSegmentText() != null
+                        ? segment.getSegmentText()
+                        : bodies.get(segment.getBodyHash())))
+                .toList();
+    }
+
+    /**
+     * Packs a page of segments into batches bounded by segment count and estimated tokens.
+     */
+    private List<List<SegmentText>> packBatches(List<SegmentText> page) {
+        List<List<SegmentText>> batches = new ArrayList<>();
+        List<SegmentText> batch = new ArrayList<>();
+        int batchTokens = 0;
+        for (SegmentText segment : page) {
+            int tokens = TokenEstimator.estimateTokens(segment.text());
+            if (!batch.isEmpty() && (batch.size() >= maxSegmentsPerBatch || batchTokens + tokens > maxTokensPerBatch)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchTokens = 0;
+            }
+            batch.add(segment);
+            batchTokens += tokens;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private Mono<Integer> embedBatch(String documentId, List<SegmentText> batch, AtomicLong embeddedSoFar,
+                                     Observation parent) {
+        List<String> ids = batch.stream().map(SegmentText::id).toList();
+        List<String> texts = batch.stream().map(SegmentText::text).toList();
+
+        // Observed from the first request (retries included) until the vectors are stored
+        return pipelineMetrics.observe(embeddingServiceClient.embed(texts)
+                        // On top of the guard's retries, which stop early while the limit is shrinking
+                        .retryWhen(Retry.backoff(batchRetryAttempts, batchRetryBackoff)
+                                .filter(error -> RemoteServiceUnavailableException.find(error).isEmpty()
+                                        && RemoteServiceGuard.isTransient(error)
+                                        && embeddingGuard.allowsRequests())
+                                .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                        .publishOn(Schedulers.boundedElastic())
+                        .map(vectors -> {
+                            documentSegmentBatchWriter.writeEmbeddings(ids, vectors);
+                            vectorIndexService.add(documentId, ids, vectors);
+                            pipelineMetrics.countSegmentsEmbedded(ids.size());
+                            eventPublisher.publishEvent(new DocumentProgressEvent(documentId,
+                                    DocumentProgressEvent.Stage.SEGMENTS_EMBEDDED,
+                                    embeddedSoFar.addAndGet(ids.size())));
+                            return ids.size();
+                        }), PipelineMetrics.Stage.EMBEDDING_BATCH, documentId, parent)
+                .doOnNext(count -> log.debug("Embedded batch of {} segments for document {}", count, documentId));
+    }
+}
@@ -0,0 +1,56 @@
+package com.insightlens.core.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EmbeddingServiceClient {
+
+    @Qualifier("embeddingWebClient")
+    private final WebClient webClient;
+
+    @Qualifier("embeddingGuard")
+    private final RemoteServiceGuard embeddingGuard;
+
+    /**
+     * Embeds a batch of texts with one call to the embedding service, retried on overload.
+     *
+     * @param texts The texts to embed
+     * @return One vector per text, in the same order
+     */
+    public Mono<List<float[]>> embed(List<String> texts) {
+        log.debug("Requesting embeddings for {} texts", texts.size());
+        return embeddingGuard.call(() -> webClient.post()
+                        .uri("/embed")
+                        .bodyValue(new EmbedRequest(texts))
+                        .retrieve()
+                        .bodyToMono(EmbedResponse.class))
+                .map(response -> {
+                    if (response.embeddings().size() != texts.size()) {
+                        throw new IllegalStateException("Embedding service returned " + response.embeddings().size()
+                                + " vectors for " + texts.size() + " texts");
+                    }
+                    List<float[]> vectors = new ArrayList<>(texts.size());
+                    for (List<Float> embedding : response.embeddings()) {
+                        float[] vector = new float[embedding.size()];
+                        for (int i = 0; i < vector.length; i++) {
+                            vector[i] = embedding.get(i);
+                        }
+                        vectors.add(vector);
+                    }
+                    return vectors;
+                });
+    }
+
+    private record EmbedRequest(List<String> texts) {}
+    private record EmbedResponse(List<List<Float>> embeddings) {}
+}
@@ -0,0 +1,16 @@
+package com.insightlens.core.service;
+
+/**
+ * Last committed extraction position of a document. Chunk boundaries are deterministic for a
+ * given file and parser, so a restart replays extraction from {@code page} (0 when the document
+ * is parsed as a whole), skips the first {@code chunks} chunks from there and continues numbering
+ * segments at {@code segmentOrder}.
+ *
+ * @param segmentOrder Number of committed segments, i.e. the next segment order
+ * @param page         First page of the page range the position is relative to, or 0
+ * @param chunks       Chunks committed since the start of {@code page}
+ */
+public record ExtractionCheckpoint(int segmentOrder, int page, int chunks) {
+
+    public static final ExtractionCheckpoint START = new ExtractionCheckpoint(0, 0, 0);
+}
@@ -0,0 +1,204 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.config.SchedulerProperties;
+import com.insightlens.core.model.IngestPriority;
+import com.insightlens.core.repository.ClaimCandidate;
+import com.insightlens.core.repository.DocumentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which queued documents {@link DocumentProcessingQueue} claims next.
+ * <ul>
+ *   <li>Each document gets a cost estimate from its size and content type.</li>
+ *   <li>Documents are grouped into flows, one per tenant and priority; flows share the workers by
+ *   weight (start-time fair queuing), so a tenant with fifty large PDFs gets its share, not all
+ *   workers. Backfill flows get {@code backfill-weight} of their tenant's weight.</li>
+ *   <li>Short jobs have a lane: {@code short-lane-slots} workers are never given to long jobs.</li>
+ *   <li>Waiting documents earn credit over time (aging), so no flow starves.</li>
+ * </ul>
+ * Candidates come from a window of the oldest claimable documents plus the oldest short ones,
+ * so fairness applies among those. Flow state is per node and only needs to be approximately
+ * right; it is not shared between instances.
+ */
+@Component
+@Slf4j
+public class FairShareScheduler {
+
+    public enum Lane {
+        SHORT,
+        LONG
+    }
+
+    /**
+     * A candidate chosen by {@link #select}, with the estimate it was scheduled by.
+     */
+    public record Selection(ClaimCandidate candidate, double cost, Lane lane) {}
+
+    private final SchedulerProperties properties;
+    private final DocumentRepository documentRepository;
+    private final MeterRegistry meterRegistry;
+    private final long smallFileSize;
+    private final Map<String, Double> flowFinishTimes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> queueDepths = new ConcurrentHashMap<>();
+    private double virtualTime;
+
+    public FairShareScheduler(SchedulerProperties properties, DocumentRepository documentRepository,
+                              MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.documentRepository = documentRepository;
+        this.meterRegistry = meterRegistry;
+        double minFactor = properties.getCostFactors().values().stream()
+                .reduce(properties.getDefaultCostFactor(), Math::min);
+        this.smallFileSize = (long) (properties.getShortJobMaxCost() * properties.getCostUnit().toBytes() / minFactor);
+        for (IngestPriority priority : IngestPriority.values()) {
+            for (Lane lane : Lane.values()) {
+                AtomicLong depth = new AtomicLong();
+                queueDepths.put(depthKey(priority, lane), depth);
+                Gauge.builder("document.queue.depth", depth, AtomicLong::get)
+                        .description("Documents waiting to be claimed")
+                        .tag("priority", priority.name().toLowerCase())
+                        .tag("lane", lane.name().toLowerCase())
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    public List<ClaimCandidate> findCandidates(List<String> claimableStatuses) {
+        return documentRepository.findClaimCandidates(claimableStatuses, properties.getCandidateWindow(),
+                smallFileSize, properties.getShortJobWindow());
+    }
+
+    /**
+     * Picks up to {@code freeSlots} candidates in scheduling order. Does not change any state;
+     * call {@link #claimed} for those that were actually claimed.
+     *
+     * @param longJobsInFlight Long jobs currently running on this node
+     */
+    public synchronized List<Selection> select(List<ClaimCandidate> candidates, int freeSlots,
+                                               int workerConcurrency, int longJobsInFlight) {
+        int longSlots = Math.max(1, workerConcurrency - properties.getShortLaneSlots()) - longJobsInFlight;
+        Map<String, Double> finishTimes = new HashMap<>();
+        List<ClaimCandidate> remaining = new ArrayList<>(candidates);
+        List<Selection> selected = new ArrayList<>(freeSlots);
+        LocalDateTime now = LocalDateTime.now();
+
+        while (selected.size() < freeSlots && !remaining.isEmpty()) {
+            int best = -1;
+            double bestKey = Double.MAX_VALUE;
+            for (int i = 0; i < remaining.size(); i++) {
+                ClaimCandidate candidate = remaining.get(i);
+                if (longSlots <= 0 && laneOf(cost(candidate)) == Lane.LONG) {
+                    continue;
+                }
+                double waitSeconds = Duration.between(candidate.getCreatedAt(), now).toMillis() / 1000.0;
+                double key = startTime(flowOf(candidate), finishTimes) - properties.getAgingRate() * waitSeconds;
+                if (key < bestKey) {
+                    bestKey = key;
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break; // Only long jobs left and no long slots free
+            }
+            ClaimCandidate candidate = remaining.remove(best);
+            String flow = flowOf(candidate);
+            double cost = cost(candidate);
+            finishTimes.put(flow, startTime(flow, finishTimes) + cost / weight(candidate));
+            Lane lane = laneOf(cost);
+            if (lane == Lane.LONG) {
+                longSlots--;
+            }
+            selected.add(new Selection(candidate, cost, lane));
+        }
+        return selected;
+    }
+
+    /**
+     * Charges the document's flow and records how long it waited.
+     */
+    public synchronized void claimed(Selection selection) {
+        ClaimCandidate candidate = selection.candidate();
+        String flow = flowOf(candidate);
+        double start = Math.max(flowFinishTimes.getOrDefault(flow, 0.0), virtualTime);
+        flowFinishTimes.put(flow, start + selection.cost() / weight(candidate));
+        virtualTime = start;
+
+        Timer.builder("document.queue.wait")
+                .description("Time from upload until a worker claimed the document")
+                .tag("priority", priorityOf(candidate).name().toLowerCase())
+                .tag("lane", selection.lane().name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.between(candidate.getCreatedAt(), LocalDateTime.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${document.scheduler.metrics-interval:PT15S}")
+    public void refreshQueueDepths() {
+        for (IngestPriority priority : IngestPriority.values()) {
+            for (Lane lane : Lane.values()) {
+                queueDepths.get(depthKey(priority, lane)).set(documentRepository.countQueued(
+                        DocumentProcessingQueue.CLAIMABLE_STATUSES, priority.ordinal(), smallFileSize, lane == Lane.SHORT));
+            }
+        }
+        // Flows that went idle restart at the virtual time anyway, so their state can go
+        synchronized (this) {
+            flowFinishTimes.values().removeIf(finish -> finish < virtualTime);
+        }
+    }
+
+    private double cost(ClaimCandidate candidate) {
+        double factor = properties.getCostFactors()
+                .getOrDefault(baseContentType(candidate.getFileContentType()), properties.getDefaultCostFactor());
+        return Math.max(1.0, candidate.getFileSize() * factor / properties.getCostUnit().toBytes());
+    }
+
+    private Lane laneOf(double cost) {
+        return cost <= properties.getShortJobMaxCost() ? Lane.SHORT : Lane.LONG;
+    }
+
+    // Start tag of the next document of a flow: where it left off, but never behind the virtual clock
+    private double startTime(String flow, Map<String, Double> pendingFinishTimes) {
+        Double pending = pendingFinishTimes.get(flow);
+        double finish = pending != null ? pending : flowFinishTimes.getOrDefault(flow, 0.0);
+        return Math.max(finish, virtualTime);
+    }
+
+    private double weight(ClaimCandidate candidate) {
+        double weight = properties.getTenantWeights().getOrDefault(candidate.getTenantId(), 1.0);
+        return priorityOf(candidate) == IngestPriority.BACKFILL ? weight * properties.getBackfillWeight() : weight;
+    }
+
+    private static String flowOf(ClaimCandidate candidate) {
+        return candidate.getTenantId() + "|" + candidate.getPriority();
+    }
+
+    private static IngestPriority priorityOf(ClaimCandidate candidate) {
+        return IngestPriority.values()[candidate.getPriority()];
+    }
+
+    private static String depthKey(IngestPriority priority, Lane lane) {
+        return priority + "|" + lane;
+    }
+
+    private static String baseContentType(String contentType) {
+        if (contentType == null) {
+            return "";
+        }
+        int parameters = contentType.indexOf(';');
+        return (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim().toLowerCase();
+    }
+}
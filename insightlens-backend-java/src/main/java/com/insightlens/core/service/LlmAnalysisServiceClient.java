@@ -0,0 +1,50 @@
+package com.insightlens.core.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class LlmAnalysisServiceClient {
+
+    @Qualifier("llmAnalysisWebClient")
+    private final WebClient webClient;
+
+    @Qualifier("llmAnalysisGuard")
+    private final RemoteServiceGuard llmAnalysisGuard;
+
+    /**
+     * Applies one instruction to each of several texts with a single call to the LLM analysis
+     * service, retried on overload. The service answers every text separately.
+     *
+     * @param instruction What to do with each text
+     * @param texts       The texts to analyze
+     * @return One output per text, in the same order
+     */
+    public Mono<List<String>> analyze(String instruction, List<String> texts) {
+        log.debug("Requesting analysis of {} texts", texts.size());
+        return llmAnalysisGuard.call(() -> webClient.post()
+                        .uri("/analyze")
+                        .bodyValue(new AnalyzeRequest(instruction, texts))
+                        .retrieve()
+                        .bodyToMono(AnalyzeResponse.class))
+                .map(response -> {
+                    if (response.outputs() == null || response.outputs().size() != texts.size()) {
+                        throw new IllegalStateException("LLM analysis service returned "
+                                + (response.outputs() == null ? 0 : response.outputs().size())
+                                + " outputs for " + texts.size() + " texts");
+                    }
+                    return response.outputs();
+                });
+    }
+
+    private record AnalyzeRequest(String instruction, List<String> texts) {}
+    private record AnalyzeResponse(List<String> outputs) {}
+}
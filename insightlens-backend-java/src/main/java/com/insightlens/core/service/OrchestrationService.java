@@ -1,14 +1,411 @@
 package com.insightlens.core.service;
 
-import org.springframework.stereotype.Service;
+import com.insightlens.core.repository.DocumentSegmentRepository;
+import com.insightlens.core.repository.LlmAnalysisCache;
+import com.insightlens.core.repository.SegmentBodyStore;
+import com.insightlens.core.repository.SegmentTextView;
+import com.insightlens.core.util.SegmentBodyCodec;
+import com.insightlens.core.util.TokenEstimator;
+import io.micrometer.observation.Observation;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
-@Slf4j
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs analysis prompts over the segments of a document with the LLM analysis service.
+ * Segment-level analysis answers the prompt for every segment of one page of segments. Document-level analysis answers
+ * it for the whole document: with one call if the document fits in one chunk of consecutive
+ * segments, otherwise map-reduce, answering it per chunk and then combining groups of partial
+ * answers until one is left.
+ * <p>
+ * LLM calls are the slowest and most expensive step, so before a text is sent it is looked up
+ * in the {@link LlmAnalysisCache} (keyed on the prompt and the content hash), and joined to an
+ * identical request already in flight on this instance; what is left is packed several texts
+ * per call.
+ */
 @Service
+@Slf4j
+@RequiredArgsConstructor
 public class OrchestrationService {
-    
-    public String performOrchestrationTask(String input) {
-        log.info("Performing orchestration task with input: {}", input);
-        return "Processed: " + input;
+
+    private static final String MAP_INSTRUCTION = "The text is one part of a longer document. Answer the request "
+            + "below for this part only, keeping every detail a combined answer may need.\n\nRequest: ";
+    private static final String REDUCE_INSTRUCTION = "The text holds partial answers for consecutive parts of one "
+            + "document, separated by lines of dashes. Combine them into one answer to the request below.\n\nRequest: ";
+    private static final String SEGMENT_SEPARATOR = "\n\n";
+    private static final String PARTIAL_SEPARATOR = "\n\n-----\n\n";
+    private static final int SEGMENT_PAGE_SIZE = 500;
+
+    private final DocumentSegmentRepository documentSegmentRepository;
+    private final SegmentBodyStore segmentBodyStore;
+    private final LlmAnalysisCache llmAnalysisCache;
+    private final LlmAnalysisServiceClient llmAnalysisServiceClient;
+    private final PipelineMetrics pipelineMetrics;
+
+    // Calls in flight on this instance by cache key; identical requests wait for the same output
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${llm.analysis.call.max-texts:16}")
+    private int maxTextsPerCall;
+
+    @Value("${llm.analysis.call.max-tokens:12000}")
+    private int maxTokensPerCall;
+
+    @Value("${llm.analysis.chunk.max-tokens:6000}")
+    private int maxTokensPerChunk;
+
+    @Value("${llm.analysis.max-calls-in-flight:4}")
+    private int maxCallsInFlight;
+
+    @Value("${llm.analysis.model-version:default}")
+    private String modelVersion;
+
+    /**
+     * Where the outputs of one analysis came from; a text counts as coalesced when it repeats a
+     * text of the same analysis or of a request already in flight.
+     */
+    public record AnalysisUsage(int texts, int cached, int coalesced, int requested, int calls) {}
+
+    public record SegmentAnalysis(String segmentId, int segmentOrder, String output) {}
+
+    /**
+     * @param nextAfter The {@code afterOrder} of the next page, or null after the last one
+     */
+    public record SegmentAnalysisResult(String documentId, String prompt, List<SegmentAnalysis> segments,
+                                        Integer nextAfter, AnalysisUsage usage) {}
+
+    /**
+     * @param chunks       Chunks the map pass answered the prompt for; 1 if the document was answered directly
+     * @param reduceRounds Rounds of combining partial answers
+     */
+    public record DocumentAnalysisResult(String documentId, String prompt, String output, int segments, int chunks,
+                                         int reduceRounds, AnalysisUsage usage) {}
+
+    private record Segment(String id, int order, String contentHash, String text) {}
+
+    // A text to analyze; its content hash is half of the cache key
+    private record Text(String contentHash, String text) {}
+
+    private static class Usage {
+        final AtomicInteger texts = new AtomicInteger();
+        final AtomicInteger cached = new AtomicInteger();
+        final AtomicInteger coalesced = new AtomicInteger();
+        final AtomicInteger requested = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+
+        AnalysisUsage snapshot() {
+            return new AnalysisUsage(texts.get(), cached.get(), coalesced.get(), requested.get(), calls.get());
+        }
+    }
+
+    /**
+     * Answers {@code prompt} for the first {@code limit} segments after {@code afterOrder}, in
+     * segment order; use -1 for the first page. Keyset-paged like the segments themselves, so a
+     * request holds its thread for one page of LLM calls rather than the whole document.
+     */
+    public SegmentAnalysisResult analyzeSegments(String documentId, String prompt, int afterOrder, int limit) {
+        return observed(documentId, () -> {
+            Usage usage = new Usage();
+            // Lower orders belong to the previous generation of a document being re-segmented
+            List<Segment> page = readPage(documentId, Math.max(afterOrder, -1), limit);
+            List<String> outputs = page.isEmpty() ? List.of() : analyze(documentId, prompt,
+                    page.stream().map(segment -> new Text(segment.contentHash(), segment.text())).toList(), usage);
+            List<SegmentAnalysis> results = new ArrayList<>(page.size());
+            for (int i = 0; i < page.size(); i++) {
+                results.add(new SegmentAnalysis(page.get(i).id(), page.get(i).order(), outputs.get(i)));
+            }
+            Integer nextAfter = page.size() == limit ? page.get(page.size() - 1).order() : null;
+            log.info("Analyzed {} segments of document {} after {}: {}", results.size(), documentId, afterOrder,
+                    usage.snapshot());
+            return new SegmentAnalysisResult(documentId, prompt, results, nextAfter, usage.snapshot());
+        });
+    }
+
+    /**
+     * Answers {@code prompt} for the document as a whole.
+     *
+     * @return The answer, or empty if the document has no segments
+     */
+    public Optional<DocumentAnalysisResult> analyzeDocument(String documentId, String prompt) {
+        return observed(documentId, () -> {
+            Usage usage = new Usage();
+            // Map calls are made in waves as chunks are read, so only partial answers accumulate
+            int waveSize = Math.max(2, maxTextsPerCall * maxCallsInFlight);
+            List<Text> wave = new ArrayList<>();
+            List<String> partials = new ArrayList<>();
+            List<Segment> chunk = new ArrayList<>();
+            int chunkTokens = 0;
+            int segments = 0;
+            int chunks = 0;
+            int afterOrder = -1;
+            List<Segment> page;
+            while (!(page = readPage(documentId, afterOrder)).isEmpty()) {
+                for (Segment segment : page) {
+                    int tokens = TokenEstimator.estimateTokens(segment.text());
+                    if (!chunk.isEmpty() && chunkTokens + tokens > maxTokensPerChunk) {
+                        wave.add(chunkText(chunk));
+                        chunks++;
+                        chunk = new ArrayList<>();
+                        chunkTokens = 0;
+                    }
+                    chunk.add(segment);
+                    chunkTokens += tokens;
+                    segments++;
+                }
+                afterOrder = page.get(page.size() - 1).order();
+                if (wave.size() >= waveSize) {
+                    partials.addAll(analyze(documentId, MAP_INSTRUCTION + prompt, wave, usage));
+                    wave.clear();
+                }
+            }
+            if (segments == 0) {
+                return Optional.empty();
+            }
+            wave.add(chunkText(chunk));
+            chunks++;
+
+            if (chunks == 1) {
+                String output = analyze(documentId, prompt, wave, usage).get(0);
+                return Optional.of(new DocumentAnalysisResult(documentId, prompt, output, segments, 1, 0, usage.snapshot()));
+            }
+            partials.addAll(analyze(documentId, MAP_INSTRUCTION + prompt, wave, usage));
+            int rounds = 0;
+            while (partials.size() > 1) {
+                partials = reduce(documentId, REDUCE_INSTRUCTION + prompt, partials, usage);
+                rounds++;
+            }
+            log.info("Analyzed document {} map-reduce over {} chunks in {} reduce rounds: {}",
+                    documentId, chunks, rounds, usage.snapshot());
+            return Optional.of(new DocumentAnalysisResult(documentId, prompt, partials.get(0), segments, chunks, rounds,
+                    usage.snapshot()));
+        });
+    }
+
+    private <T> T observed(String documentId, Supplier<T> analysis) {
+        Observation observation = pipelineMetrics.start(PipelineMetrics.Stage.ANALYSIS, documentId);
+        try (Observation.Scope scope = observation.openScope()) {
+            return analysis.get();
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    /**
+     * Combines partial answers in groups of at least two that fit the chunk budget; a group left
+     * with a single partial passes it on unchanged. Every round at least halves the partials.
+     */
+    private List<String> reduce(String documentId, String instruction, List<String> partials, Usage usage) {
+        List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        int groupTokens = 0;
+        for (String partial : partials) {
+            int tokens = TokenEstimator.estimateTokens(partial);
+            if (group.size() >= 2 && groupTokens + tokens > maxTokensPerChunk) {
+                groups.add(group);
+                group = new ArrayList<>();
+                groupTokens = 0;
+            }
+            group.add(partial);
+            groupTokens += tokens;
+        }
+        groups.add(group);
+
+        List<Text> texts = groups.stream()
+                .filter(g -> g.size() > 1)
+                .map(g -> {
+                    String text = String.join(PARTIAL_SEPARATOR, g);
+                    return new Text(SegmentBodyCodec.hash(text), text);
+                })
+                .toList();
+        List<String> outputs = analyze(documentId, instruction, texts, usage);
+        List<String> combined = new ArrayList<>(groups.size());
+        int next = 0;
+        for (List<String> g : groups) {
+            combined.add(g.size() > 1 ? outputs.get(next++) : g.get(0));
+        }
+        return combined;
+    }
+
+    // A chunk is identified by the hashes of its segments, so its text never has to be hashed
+    private static Text chunkText(List<Segment> chunk) {
+        return new Text(
+                SegmentBodyCodec.hash(String.join(",", chunk.stream().map(Segment::contentHash).toList())),
+                String.join(SEGMENT_SEPARATOR, chunk.stream().map(Segment::text).toList()));
+    }
+
+    /**
+     * Outputs for {@code texts} under one instruction, in order: from the cache, from calls
+     * already in flight, or from new calls for the rest.
+     */
+    private List<String> analyze(String documentId, String instruction, List<Text> texts, Usage usage) {
+        String promptHash = SegmentBodyCodec.hash(modelVersion + "\n" + instruction);
+        List<String> keys = texts.stream().map(text -> SegmentBodyCodec.hash(promptHash + text.contentHash())).toList();
+        Map<String, String> cached = llmAnalysisCache.find(keys);
+
+        Map<String, CompletableFuture<String>> calls = new HashMap<>();
+        Map<String, Text> owned = new LinkedHashMap<>();
+        int hits = 0;
+        int coalesced = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            String key = keys.get(i);
+            if (cached.containsKey(key)) {
+                hits++;
+            } else if (calls.containsKey(key)) {
+                coalesced++;
+            } else {
+                CompletableFuture<String> call = new CompletableFuture<>();
+                CompletableFuture<String> existing = inFlight.putIfAbsent(key, call);
+                if (existing != null) {
+                    calls.put(key, existing);
+                    coalesced++;
+                } else {
+                    calls.put(key, call);
+                    owned.put(key, texts.get(i));
+                }
+            }
+        }
+        usage.texts.addAndGet(texts.size());
+        usage.cached.addAndGet(hits);
+        usage.coalesced.addAndGet(coalesced);
+        usage.requested.addAndGet(owned.size());
+        pipelineMetrics.countAnalysisTexts(hits, coalesced, owned.size());
+
+        try {
+            request(documentId, instruction, promptHash, owned, calls, usage);
+        } finally {
+            // Never leave another request waiting for a call that was not made
+            for (String key : owned.keySet()) {
+                CompletableFuture<String> call = calls.get(key);
+                call.completeExceptionally(new IllegalStateException("Analysis call was abandoned"));
+                inFlight.remove(key, call);
+            }
+        }
+
+        List<String> outputs = new ArrayList<>(texts.size());
+        for (String key : keys) {
+            outputs.add(cached.containsKey(key) ? cached.get(key) : await(calls.get(key)));
+        }
+        return outputs;
+    }
+
+    /**
+     * Sends the owned texts, packed by count and estimated tokens, and completes their calls.
+     * Outputs are cached before the calls complete, so the next identical request finds them.
+     */
+    private void request(String documentId, String instruction, String promptHash, Map<String, Text> owned,
+                         Map<String, CompletableFuture<String>> calls, Usage usage) {
+        if (owned.isEmpty()) {
+            return;
+        }
+        Observation parent = pipelineMetrics.current();
+        Flux.fromIterable(pack(new ArrayList<>(owned.entrySet())))
+                .flatMap(pack -> {
+                    usage.calls.incrementAndGet();
+                    List<String> texts = pack.stream().map(entry -> entry.getValue().text()).toList();
+                    return pipelineMetrics.observe(llmAnalysisServiceClient.analyze(instruction, texts),
+                                    PipelineMetrics.Stage.ANALYSIS_CALL, documentId, parent)
+                            .publishOn(Schedulers.boundedElastic())
+                            .doOnNext(outputs -> {
+                                List<LlmAnalysisCache.Entry> entries = new ArrayList<>(pack.size());
+                                for (int i = 0; i < pack.size(); i++) {
+                                    entries.add(new LlmAnalysisCache.Entry(pack.get(i).getKey(), promptHash,
+                                            pack.get(i).getValue().contentHash(), outputs.get(i)));
+                                }
+                                llmAnalysisCache.store(entries);
+                                for (int i = 0; i < pack.size(); i++) {
+                                    String key = pack.get(i).getKey();
+                                    calls.get(key).complete(outputs.get(i));
+                                    inFlight.remove(key, calls.get(key));
+                                }
+                            })
+                            .doOnError(e -> pack.forEach(entry -> {
+                                calls.get(entry.getKey()).completeExceptionally(e);
+                                inFlight.remove(entry.getKey(), calls.get(entry.getKey()));
+                            }));
+                }, maxCallsInFlight)
+                .then()
+                .block();
+    }
+
+    private List<List<Map.Entry<String, Text>>> pack(List<Map.Entry<String, Text>> texts) {
+        List<List<Map.Entry<String, Text>>> packs = new ArrayList<>();
+        List<Map.Entry<String, Text>> pack = new ArrayList<>();
+        int packTokens = 0;
+        for (Map.Entry<String, Text> text : texts) {
+            int tokens = TokenEstimator.estimateTokens(text.getValue().text());
+            if (!pack.isEmpty() && (pack.size() >= maxTextsPerCall || packTokens + tokens > maxTokensPerCall)) {
+                packs.add(pack);
+                pack = new ArrayList<>();
+                packTokens = 0;
+            }
+            pack.add(text);
+            packTokens += tokens;
+        }
+        if (!pack.isEmpty()) {
+            packs.add(pack);
+        }
+        return packs;
+    }
+
+    // Surfaces the failure of a call made by another request as if it were our own
+    private static String await(CompletableFuture<String> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Deduplicated segments only carry a body hash; their texts are decompressed with one query per page
+    private List<Segment> readPage(String documentId, int afterOrder) {
+        return readPage(documentId, afterOrder, SEGMENT_PAGE_SIZE);
+    }
+
+    private List<Segment> readPage(String documentId, int afterOrder, int size) {
+        List<SegmentTextView> page = documentSegmentRepository.findSegmentTexts(
+                documentId, afterOrder, PageRequest.of(0, size));
+        Map<String, String> bodies = segmentBodyStore.loadTexts(page.stream()
+                .filter(segment -> segment.getSegmentText() == null && segment.getBodyHash() != null)
+                .map(SegmentTextView::getBodyHash)
+                .toList());
+        return page.stream()
+                .map(segment -> {
+                    String text = segment.getSegmentText() != null
+                            ? segment.getSegmentText()
+                            : bodies.get(segment.getBodyHash());
+                    if (text == null) {
+                        throw new IllegalStateException("Segment " + segment.getId() + " of document " + documentId
+                                + " has no text: body " + segment.getBodyHash() + " is missing");
+                    }
+                    // Segments written before content hashes were recorded; body hashes are the same SHA-256
+                    String contentHash = segment.getContentHash() != null ? segment.getContentHash()
+                            : segment.getBodyHash() != null ? segment.getBodyHash()
+                            : SegmentBodyCodec.hash(text);
+                    return new Segment(segment.getId(), segment.getSegmentOrder(), contentHash, text);
+                })
+                .toList();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,188 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.model.Document;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts large PDFs page range by page range on a shared fork-join pool instead of in one
+ * sequential Tika parse. Ranges are cut into temporary sub-documents one after another, parsed
+ * in parallel, each with its own {@link StreamingSegmentContentHandler}, and their chunks are
+ * handed to the sink strictly in page order from the calling thread, so segment order is the
+ * same as for a sequential parse. Only a window of ranges is in flight per document, which
+ * bounds both the temporary files and the chunks held in memory.
+ */
+@Service
+@Slf4j
+public class ParallelPdfExtractor {
+
+    private static final byte[] PDF_MAGIC = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    private final TikaParserRegistry tikaParserRegistry;
+    private final ForkJoinPool pool;
+    private final int rangesInFlight;
+
+    @Value("${pdf.parallel.enabled:true}")
+    private boolean enabled;
+
+    @Value("${pdf.parallel.min-file-size:20MB}")
+    private DataSize minFileSize;
+
+    @Value("${pdf.parallel.pages-per-range:50}")
+    private int pagesPerRange;
+
+    public ParallelPdfExtractor(TikaParserRegistry tikaParserRegistry,
+                                @Value("${pdf.parallel.parallelism:0}") int parallelism) {
+        this.tikaParserRegistry = tikaParserRegistry;
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(threads);
+        this.rangesInFlight = threads * 2;
+    }
+
+    /**
+     * Whether the document is a PDF at or above the configured size threshold.
+     */
+    public boolean appliesTo(Document document, Path file) {
+        if (!enabled || document.getFileSize() < minFileSize.toBytes()) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(PDF_MAGIC.length), PDF_MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Extracts the PDF into {@code sink} in page order, starting at {@code fromPage} (1-based) to
+     * resume after a restart. The sink is told where each range starts via
+     * {@link SegmentSink#startPage}. PDFs that cannot be split (e.g. encrypted ones) or are too
+     * short to be worth it are parsed sequentially instead, which is only possible from page 1.
+     */
+    public void extract(Document document, Path file, SegmentSink sink, int fromPage) throws IOException, TikaException {
+        List<Path> rangeFiles = new ArrayList<>();
+        Deque<PendingRange> pending = new ArrayDeque<>();
+        try (PDDocument source = load(file)) {
+            int pageCount = source == null ? 0 : source.getNumberOfPages();
+            if (pageCount < pagesPerRange * 2) {
+                if (fromPage > 1) {
+                    throw new TikaException("Cannot resume " + document.getId() + " at page " + fromPage
+                            + " without splitting the PDF");
+                }
+                log.debug("PDF {} has {} pages, parsing sequentially", document.getId(), pageCount);
+                parseRange(document, file, sink);
+                return;
+            }
+
+            long start = System.nanoTime();
+            for (int from = Math.max(fromPage, 1); from <= pageCount; from += pagesPerRange) {
+                Path rangeFile = writeRange(source, from, Math.min(from + pagesPerRange - 1, pageCount));
+                rangeFiles.add(rangeFile);
+                pending.add(new PendingRange(from, pool.submit(() -> {
+                    List<String> chunks = new ArrayList<>();
+                    parseRange(document, rangeFile, chunks::add);
+                    Files.deleteIfExists(rangeFile);
+                    return chunks;
+                })));
+                if (pending.size() >= rangesInFlight) {
+                    emit(pending.poll(), sink);
+                }
+            }
+            while (!pending.isEmpty()) {
+                emit(pending.poll(), sink);
+            }
+            log.info("Extracted pages {}-{} of document {} in {} ranges in {} ms", Math.max(fromPage, 1), pageCount,
+                    document.getId(), rangeFiles.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            pending.forEach(range -> range.chunks().cancel(true));
+            for (Path rangeFile : rangeFiles) {
+                Files.deleteIfExists(rangeFile);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private PDDocument load(Path file) {
+        try {
+            return PDDocument.load(file.toFile(), MemoryUsageSetting.setupTempFileOnly());
+        } catch (IOException e) {
+            log.warn("Cannot split PDF {}, falling back to a sequential parse: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static Path writeRange(PDDocument source, int fromPage, int toPage) throws IOException {
+        Splitter splitter = new Splitter();
+        splitter.setStartPage(fromPage);
+        splitter.setEndPage(toPage);
+        splitter.setSplitAtPage(toPage - fromPage + 1);
+        Path rangeFile = Files.createTempFile("insightlens-pages-" + fromPage + "-", ".pdf");
+        try (PDDocument range = splitter.split(source).get(0)) {
+            range.save(rangeFile.toFile());
+        }
+        return rangeFile;
+    }
+
+    private void parseRange(Document document, Path file, SegmentSink sink) throws IOException, TikaException {
+        Parser parser = tikaParserRegistry.parserFor(document);
+        try (InputStream stream = TikaInputStream.get(file)) {
+            parser.parse(stream, new StreamingSegmentContentHandler(document, sink),
+                    tikaParserRegistry.metadataFor(document), new ParseContext());
+        } catch (SAXException e) {
+            throw new TikaException("Failed to extract " + file.getFileName(), e);
+        }
+    }
+
+    private static void emit(PendingRange range, SegmentSink sink) throws IOException, TikaException {
+        List<String> chunks;
+        try {
+            chunks = range.chunks().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a page range");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof TikaException tikaException) {
+                throw tikaException;
+            }
+            throw new TikaException("Page range extraction failed", e.getCause());
+        }
+        sink.startPage(range.fromPage());
+        chunks.forEach(sink::accept);
+    }
+
+    private record PendingRange(int fromPage, Future<List<String>> chunks) {
+    }
+}
@@ -0,0 +1,145 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.model.Document;
+import com.insightlens.core.model.DocumentSegment;
+import com.insightlens.core.repository.DocumentSegmentBatchWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link SegmentSink} that segments each chunk and hands the resulting segments to the
+ * {@link DocumentSegmentBatchWriter} in bounded batches, so nothing but the current batch is
+ * kept in memory. Batches are only flushed on chunk boundaries, which keeps every committed
+ * batch aligned with a whole chunk, and each batch is committed together with the
+ * {@link ExtractionCheckpoint} it ends at. A sink created from a checkpoint drops the chunks
+ * that were already committed and continues the segment numbering.
+ * <p>
+ * The last segment of a chunk is usually a short leftover, so it is not emitted but segmented
+ * again together with the next chunk; it is only emitted as it is when a batch is flushed, which
+ * keeps checkpoints on chunk boundaries.
+ */
+@Slf4j
+public class PersistingSegmentSink implements SegmentSink {
+    // Part of the segmenter version of locally segmented documents; 1 segmented every chunk on its own
+    public static final int VERSION = 2;
+    private static final String CHUNK_SEPARATOR = "\n\n";
+
+    private final Document document;
+    private final SegmentationStrategy segmentationStrategy;
+    private final String segmenterVersion;
+    private final DocumentSegmentBatchWriter segmentBatchWriter;
+    private final int batchSize;
+    private final List<DocumentSegment> pendingSegments;
+    private int nextSegmentOrder;
+    private int page;
+    private int chunksSincePageStart;
+    private int chunksToSkip;
+    private long segmentationNanos;
+    private long characters;
+    private String carriedTail;
+
+    public PersistingSegmentSink(Document document,
+                                 SegmentationStrategy segmentationStrategy,
+                                 String segmenterVersion,
+                                 DocumentSegmentBatchWriter segmentBatchWriter,
+                                 int batchSize) {
+        this(document, segmentationStrategy, segmenterVersion, segmentBatchWriter, batchSize, ExtractionCheckpoint.START);
+    }
+
+    public PersistingSegmentSink(Document document,
+                                 SegmentationStrategy segmentationStrategy,
+                                 String segmenterVersion,
+                                 DocumentSegmentBatchWriter segmentBatchWriter,
+                                 int batchSize,
+                                 ExtractionCheckpoint resumeFrom) {
+        this.document = document;
+        this.segmentationStrategy = segmentationStrategy;
+        this.segmenterVersion = segmenterVersion;
+        this.segmentBatchWriter = segmentBatchWriter;
+        this.batchSize = batchSize;
+        this.pendingSegments = new ArrayList<>(batchSize);
+        this.nextSegmentOrder = resumeFrom.segmentOrder();
+        this.page = resumeFrom.page();
+        this.chunksToSkip = resumeFrom.chunks();
+    }
+
+    @Override
+    public void startPage(int page) {
+        this.page = page;
+        this.chunksSincePageStart = 0;
+    }
+
+    @Override
+    public void accept(String chunk) {
+        chunksSincePageStart++;
+        if (chunksToSkip > 0) {
+            // Already committed before the restart
+            chunksToSkip--;
+            return;
+        }
+        characters += chunk.length();
+        String text = carriedTail != null ? carriedTail + CHUNK_SEPARATOR + chunk : chunk;
+        carriedTail = null;
+        long started = System.nanoTime();
+        List<String> segmentTexts = segmentationStrategy.segmentText(text);
+        segmentationNanos += System.nanoTime() - started;
+        for (int i = 0; i < segmentTexts.size() - 1; i++) {
+            addSegment(segmentTexts.get(i));
+        }
+        if (!segmentTexts.isEmpty()) {
+            carriedTail = segmentTexts.get(segmentTexts.size() - 1);
+        }
+        if (pendingSegments.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes any pending segments, including the carried tail of the last chunk. Must be called
+     * once parsing has finished.
+     */
+    public void flush() {
+        if (carriedTail != null) {
+            addSegment(carriedTail);
+            carriedTail = null;
+        }
+        if (pendingSegments.isEmpty()) {
+            return;
+        }
+        segmentBatchWriter.writeBatch(document.getId(), pendingSegments,
+                new ExtractionCheckpoint(nextSegmentOrder, page, chunksSincePageStart));
+        log.trace("Persisted segments up to order {} for document {}", nextSegmentOrder - 1, document.getId());
+        pendingSegments.clear();
+    }
+
+    private void addSegment(String segmentText) {
+        pendingSegments.add(DocumentSegment.builder()
+                .id(UUID.randomUUID().toString())
+                .document(document)
+                .segmentOrder(nextSegmentOrder++)
+                .segmentText(segmentText)
+                .segmenterVersion(segmenterVersion)
+                .build());
+    }
+
+    public int getSegmentCount() {
+        return nextSegmentOrder;
+    }
+
+    /**
+     * Time spent in the segmentation strategy, excluding parsing and persisting.
+     */
+    public long getSegmentationNanos() {
+        return segmentationNanos;
+    }
+
+    /**
+     * Characters of text received in this run, including chunks skipped on resume.
+     */
+    public long getCharacters() {
+        return characters;
+    }
+}
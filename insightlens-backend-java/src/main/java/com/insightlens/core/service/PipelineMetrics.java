@@ -0,0 +1,176 @@
+package com.insightlens.core.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Observations and counters for the document pipeline. Every stage is an observation named
+ * {@code document.stage}, tagged with the stage, which Actuator turns into a timer (with
+ * {@code error} and {@code exception} tags) and, with tracing on the classpath, into a span that
+ * carries the document id. Stages opened while another is current become its children, so all
+ * work on one document shares a trace; stages that run on Reactor threads take their parent
+ * explicitly.
+ * <p>
+ * Segmentation runs interleaved with parsing and is recorded as one summed duration per document
+ * instead of a span per chunk.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String STAGE_OBSERVATION = "document.stage";
+
+    public enum Stage {
+        UPLOAD("upload"),
+        PROCESS("process"),
+        EXTRACTION("extraction"),
+        SEGMENTATION("segmentation"),
+        REMOTE_SEGMENTATION("remote-segmentation"),
+        PERSIST("persist"),
+        EMBEDDING("embedding"),
+        EMBEDDING_BATCH("embedding-batch"),
+        ANALYSIS("analysis"),
+        ANALYSIS_CALL("analysis-call");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final ObservationRegistry observationRegistry;
+    private final Timer segmentationTimer;
+    private final Map<Stage, Counter> bytesCounters = new EnumMap<>(Stage.class);
+    private final Counter charactersCounter;
+    private final Counter segmentsPersistedCounter;
+    private final Counter segmentsEmbeddedCounter;
+    private final Counter analysisCachedCounter;
+    private final Counter analysisCoalescedCounter;
+    private final Counter analysisRequestedCounter;
+
+    public PipelineMetrics(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        // Same name and tags as the observation timers, so all stages are one metric
+        this.segmentationTimer = Timer.builder(STAGE_OBSERVATION)
+                .tag("stage", Stage.SEGMENTATION.tag)
+                .tag("error", "none")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        for (Stage stage : new Stage[]{Stage.UPLOAD, Stage.EXTRACTION}) {
+            bytesCounters.put(stage, Counter.builder("document.bytes")
+                    .description("File bytes written on upload or read for extraction")
+                    .baseUnit("bytes")
+                    .tag("stage", stage.tag)
+                    .register(meterRegistry));
+        }
+        this.charactersCounter = Counter.builder("document.characters")
+                .description("Characters of text extracted")
+                .register(meterRegistry);
+        this.segmentsPersistedCounter = Counter.builder("document.segments")
+                .description("Segments persisted or embedded")
+                .tag("stage", Stage.PERSIST.tag)
+                .register(meterRegistry);
+        this.segmentsEmbeddedCounter = Counter.builder("document.segments")
+                .description("Segments persisted or embedded")
+                .tag("stage", Stage.EMBEDDING.tag)
+                .register(meterRegistry);
+        this.analysisCachedCounter = analysisCounter("cached", meterRegistry);
+        this.analysisCoalescedCounter = analysisCounter("coalesced", meterRegistry);
+        this.analysisRequestedCounter = analysisCounter("requested", meterRegistry);
+    }
+
+    private static Counter analysisCounter(String source, MeterRegistry meterRegistry) {
+        return Counter.builder("llm.analysis.texts")
+                .description("Texts to analyze, by where their output came from")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A started observation of {@code stage}, child of the observation current on this thread.
+     */
+    public Observation start(Stage stage, String documentId) {
+        return start(stage, documentId, observationRegistry.getCurrentObservation());
+    }
+
+    public Observation start(Stage stage, String documentId, Observation parent) {
+        Observation observation = Observation.createNotStarted(STAGE_OBSERVATION, observationRegistry)
+                .contextualName("document " + stage.tag)
+                .lowCardinalityKeyValue("stage", stage.tag)
+                .parentObservation(parent);
+        if (documentId != null) {
+            observation.highCardinalityKeyValue("document.id", documentId);
+        }
+        return observation.start();
+    }
+
+    /**
+     * The observation current on this thread, to pass as parent to work that moves to other threads.
+     */
+    public Observation current() {
+        return observationRegistry.getCurrentObservation();
+    }
+
+    /**
+     * Observes {@code flux} from subscription to termination; HTTP client calls inside it become children.
+     */
+    public <T> Flux<T> observe(Flux<T> flux, Stage stage, String documentId, Observation parent) {
+        return Flux.defer(() -> {
+            Observation observation = start(stage, documentId, parent);
+            return flux.doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    public <T> Mono<T> observe(Mono<T> mono, Stage stage, String documentId, Observation parent) {
+        return Mono.defer(() -> {
+            Observation observation = start(stage, documentId, parent);
+            return mono.doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    public void recordSegmentation(long nanos) {
+        segmentationTimer.record(Duration.ofNanos(nanos));
+    }
+
+    public void countBytes(Stage stage, long bytes) {
+        bytesCounters.get(stage).increment(bytes);
+    }
+
+    public void countCharacters(long characters) {
+        charactersCounter.increment(characters);
+    }
+
+    public void countSegmentsPersisted(int segments) {
+        segmentsPersistedCounter.increment(segments);
+    }
+
+    public void countSegmentsEmbedded(int segments) {
+        segmentsEmbeddedCounter.increment(segments);
+    }
+
+    /**
+     * @param cached    Texts answered from the cache
+     * @param coalesced Texts answered by a call another request already had in flight
+     * @param requested Texts sent to the LLM analysis service
+     */
+    public void countAnalysisTexts(int cached, int coalesced, int requested) {
+        analysisCachedCounter.increment(cached);
+        analysisCoalescedCounter.increment(coalesced);
+        analysisRequestedCounter.increment(requested);
+    }
+}
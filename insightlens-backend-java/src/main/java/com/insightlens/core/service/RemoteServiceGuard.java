@@ -0,0 +1,220 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.config.RemoteServiceProperties;
+import com.insightlens.core.util.AimdLimiter;
+import com.insightlens.core.util.CircuitBreaker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Guards the calls to one remote service: an adaptive concurrency limit ({@link AimdLimiter}),
+ * a {@link CircuitBreaker}, and bounded retries with jittered exponential backoff. Overload
+ * failures (5xx, 429, timeouts, connection errors) shrink the limit and count against the
+ * breaker; client errors count as a healthy service. A call rejected by the open breaker, or
+ * that could not get under the limit within the acquire timeout, fails with
+ * {@link RemoteServiceUnavailableException} and is not retried, so callers can park the work.
+ * <p>
+ * Slots are taken by blocking, so guarded publishers are subscribed on the bounded elastic scheduler.
+ */
+@Slf4j
+public class RemoteServiceGuard {
+
+    private final String name;
+    private final RemoteServiceProperties.Profile profile;
+    private final AimdLimiter limiter;
+    private final CircuitBreaker breaker;
+
+    public RemoteServiceGuard(String name, RemoteServiceProperties.Profile profile, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.profile = profile;
+        this.limiter = new AimdLimiter(profile.getInitialLimit(), profile.getMinLimit(), profile.getMaxLimit(),
+                profile.getLatencyTolerance(), profile.getBackoffRatio(), profile.getBaselineWindow());
+        this.breaker = new CircuitBreaker(profile.getWindowSize(), profile.getMinimumCalls(),
+                profile.getFailureRateThreshold(), profile.getOpenDuration(), profile.getHalfOpenCalls(),
+                state -> log.warn("Circuit breaker for the {} service is now {}", name, state));
+
+        Gauge.builder("remote.service.limit", limiter, AimdLimiter::getLimit)
+                .description("Adaptive concurrency limit")
+                .tag("service", name)
+                .register(meterRegistry);
+        Gauge.builder("remote.service.in.flight", limiter, AimdLimiter::getInFlight)
+                .tag("service", name)
+                .register(meterRegistry);
+        Gauge.builder("remote.service.breaker.state", breaker, b -> b.getState().ordinal())
+                .description("0 closed, 1 half-open, 2 open")
+                .tag("service", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Guards a single request/response call; each attempt, retries included, takes its own slot.
+     */
+    public <T> Mono<T> call(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+                    Lease lease = acquire();
+                    return call.get()
+                            .doOnSuccess(value -> lease.succeeded(true))
+                            .doOnError(lease::failed)
+                            .doOnCancel(lease::ignored);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .retryWhen(Retry.backoff(profile.getRetryMaxAttempts(), profile.getRetryMinBackoff())
+                        .maxBackoff(profile.getRetryMaxBackoff())
+                        .jitter(profile.getRetryJitter())
+                        .filter(error -> isOverload(error) && breaker.allowsRequests())
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /**
+     * Guards a streaming call, holding one slot until the stream ends. Streams are as long as
+     * their documents, so only their outcome, not their duration, adjusts the limit. Not retried:
+     * the request body can only be sent once.
+     */
+    public <T> Flux<T> stream(Supplier<Flux<T>> call) {
+        return Flux.defer(() -> {
+                    Lease lease = acquire();
+                    return call.get()
+                            .doOnComplete(() -> lease.succeeded(false))
+                            .doOnError(lease::failed)
+                            .doOnCancel(lease::ignored);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public boolean allowsRequests() {
+        return breaker.allowsRequests();
+    }
+
+    /**
+     * Fails fast if a call made now would be rejected by the breaker.
+     */
+    public void checkAvailable() {
+        if (!breaker.allowsRequests()) {
+            throw rejection();
+        }
+    }
+
+    /**
+     * The exception a call rejected by the breaker fails with.
+     */
+    public RemoteServiceUnavailableException rejection() {
+        return rejected(null);
+    }
+
+    /**
+     * Whether work that failed with {@code error} should be parked rather than failed: the call
+     * was rejected, or the service is overloaded and its breaker has opened since.
+     */
+    public Optional<RemoteServiceUnavailableException> unavailable(Throwable error) {
+        Optional<RemoteServiceUnavailableException> rejected = RemoteServiceUnavailableException.find(error);
+        if (rejected.isPresent() || breaker.allowsRequests()) {
+            return rejected;
+        }
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (isOverload(current)) {
+                return Optional.of(rejected(error));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Lease acquire() {
+        if (!breaker.tryAcquire()) {
+            throw rejection();
+        }
+        boolean acquired;
+        try {
+            acquired = limiter.acquire(profile.getAcquireTimeout());
+        } catch (InterruptedException e) {
+            breaker.onIgnored();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the " + name + " service", e);
+        }
+        if (!acquired) {
+            breaker.onIgnored();
+            throw new RemoteServiceUnavailableException("The " + name + " service stayed at its concurrency limit of "
+                    + limiter.getLimit() + " for " + profile.getAcquireTimeout(), Duration.ZERO, null);
+        }
+        return new Lease(System.nanoTime());
+    }
+
+    /**
+     * Whether {@code error}, or one of its causes, is a failure that may not recur when the call is retried:
+     * a 5xx or 429 response, a timeout or a connection error.
+     */
+    public static boolean isTransient(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (isOverload(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private RemoteServiceUnavailableException rejected(Throwable cause) {
+        return new RemoteServiceUnavailableException("The " + name + " service is unavailable (circuit breaker "
+                + breaker.getState() + ")", breaker.retryAfter(), cause);
+    }
+
+    // Signals that the service is struggling; anything else will fail the same way again
+    private static boolean isOverload(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException
+                || error instanceof IOException;
+    }
+
+    /**
+     * One admitted call; reports its outcome to the limiter and the breaker exactly once.
+     */
+    private class Lease {
+
+        private final long startedNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Lease(long startedNanos) {
+            this.startedNanos = startedNanos;
+        }
+
+        void succeeded(boolean latencySample) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(AimdLimiter.Outcome.SUCCESS, latencySample ? System.nanoTime() - startedNanos : -1);
+                breaker.onSuccess();
+            }
+        }
+
+        void failed(Throwable error) {
+            if (released.compareAndSet(false, true)) {
+                if (isOverload(error)) {
+                    limiter.release(AimdLimiter.Outcome.DROPPED, -1);
+                    breaker.onFailure();
+                } else {
+                    limiter.release(AimdLimiter.Outcome.IGNORED, -1);
+                    breaker.onSuccess();
+                }
+            }
+        }
+
+        void ignored() {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(AimdLimiter.Outcome.IGNORED, -1);
+                breaker.onIgnored();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.insightlens.core.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A remote service call was not made because the service's circuit breaker is open or its
+ * concurrency limit stayed saturated. Documents that hit this are parked in the queue, not failed.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class RemoteServiceUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RemoteServiceUnavailableException(String message, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * The exception itself or the first one in its cause chain.
+     */
+    public static Optional<RemoteServiceUnavailableException> find(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof RemoteServiceUnavailableException unavailable) {
+                return Optional.of(unavailable);
+            }
+        }
+        return Optional.empty();
+    }
+}
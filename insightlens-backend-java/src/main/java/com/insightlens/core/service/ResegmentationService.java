@@ -0,0 +1,161 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.model.Document;
+import com.insightlens.core.model.DocumentStatus;
+import com.insightlens.core.model.IngestPriority;
+import com.insightlens.core.repository.DocumentRepository;
+import com.insightlens.core.repository.DocumentSegmentBatchWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Re-segments documents whose segments were cut by another segmenter version
+ * ({@link SegmentationStrategyResolver#versionFor}) without re-embedding text that did not change.
+ * <p>
+ * Scheduling a document keeps its segments as the previous generation (see
+ * {@link DocumentSegmentBatchWriter#supersede}) and queues it again. The pipeline then cuts a new
+ * generation, and before embedding, every new segment takes over the vector of a previous one
+ * with the same content hash; only new or changed text reaches the embedding service. The
+ * previous generation is dropped once embedding has finished, and restored if the new one could
+ * not be cut.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ResegmentationService {
+
+    // Settled documents; anything else is queued, in flight, or never got segments
+    private static final List<DocumentStatus> RESEGMENTABLE_STATUSES = List.of(
+            DocumentStatus.TEXT_EXTRACTION_COMPLETED,
+            DocumentStatus.EMBEDDING_COMPLETED,
+            DocumentStatus.EMBEDDING_FAILED);
+
+    private final DocumentRepository documentRepository;
+    private final DocumentSegmentBatchWriter documentSegmentBatchWriter;
+    private final SegmentationStrategyResolver segmentationStrategyResolver;
+    private final VectorIndexService vectorIndexService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${resegmentation.page-size:500}")
+    private int pageSize;
+
+    public record ScheduleResult(int scanned, int scheduled) {}
+
+    /**
+     * Queues, as backfill, up to {@code limit} settled documents whose segmenter version is not
+     * the current one. Duplicates are skipped; they read the segments of their original.
+     */
+    public ScheduleResult scheduleStale(int limit) {
+        int scanned = 0;
+        int scheduled = 0;
+        String afterId = "";
+        while (scheduled < limit) {
+            List<Document> page = documentRepository.findByStatusInAndDuplicateOfDocumentIdIsNullAndIdGreaterThanOrderByIdAsc(
+                    RESEGMENTABLE_STATUSES, afterId, PageRequest.of(0, pageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            for (Document document : page) {
+                scanned++;
+                if (!Objects.equals(document.getSegmenterVersion(), segmentationStrategyResolver.versionFor(document))) {
+                    schedule(document, IngestPriority.BACKFILL);
+                    if (++scheduled >= limit) {
+                        break;
+                    }
+                }
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+        log.info("Scheduled {} of {} scanned documents for re-segmentation", scheduled, scanned);
+        return new ScheduleResult(scanned, scheduled);
+    }
+
+    /**
+     * Queues one document for re-segmentation, whatever its segmenter version.
+     *
+     * @return The document, or empty if it does not exist
+     * @throws IllegalStateException If the document is not settled, or is a duplicate
+     */
+    public Optional<Document> schedule(String documentId) {
+        return documentRepository.findById(documentId).map(document -> {
+            if (document.getDuplicateOfDocumentId() != null) {
+                throw new IllegalStateException("Document " + documentId + " is a duplicate of "
+                        + document.getDuplicateOfDocumentId() + "; re-segment that one instead");
+            }
+            if (!RESEGMENTABLE_STATUSES.contains(document.getStatus())) {
+                throw new IllegalStateException("Document " + documentId + " is " + document.getStatus()
+                        + "; only documents that finished processing can be re-segmented");
+            }
+            schedule(document, IngestPriority.INTERACTIVE);
+            return document;
+        });
+    }
+
+    /**
+     * Gives segments of the new generation that have no vector yet the vector of a previous
+     * segment with the same text, and adds them to the vector index.
+     *
+     * @return The number of vectors reused
+     */
+    public int reuseEmbeddings(String documentId) {
+        List<DocumentSegmentBatchWriter.ReusedEmbedding> reused = documentSegmentBatchWriter.reuseEmbeddings(documentId);
+        if (!reused.isEmpty()) {
+            vectorIndexService.add(documentId,
+                    reused.stream().map(DocumentSegmentBatchWriter.ReusedEmbedding::segmentId).toList(),
+                    reused.stream().map(DocumentSegmentBatchWriter.ReusedEmbedding::vector).toList());
+            log.info("Reused {} embeddings from the previous segments of document {}", reused.size(), documentId);
+        }
+        return reused.size();
+    }
+
+    /**
+     * Deletes the previous generation of a document, if any, and removes it from the vector index.
+     */
+    public void dropPreviousGeneration(String documentId) {
+        List<String> segmentIds = documentSegmentBatchWriter.deleteSuperseded(documentId);
+        if (!segmentIds.isEmpty()) {
+            vectorIndexService.remove(segmentIds);
+            log.info("Dropped {} previous segments of document {}", segmentIds.size(), documentId);
+        }
+    }
+
+    /**
+     * Undoes a re-segmentation whose extraction failed: the partial new generation is deleted, from
+     * the vector index too, and the previous one is current again, with the vectors it kept.
+     *
+     * @return The number of restored segments; 0 if the document was not being re-segmented
+     */
+    public int restorePreviousGeneration(String documentId) {
+        DocumentSegmentBatchWriter.RestoredGeneration restored = documentSegmentBatchWriter.restoreSuperseded(documentId);
+        if (!restored.discardedSegmentIds().isEmpty()) {
+            vectorIndexService.remove(restored.discardedSegmentIds());
+        }
+        if (restored.restored() > 0) {
+            log.info("Restored {} previous segments of document {}, discarded {} new ones",
+                    restored.restored(), documentId, restored.discardedSegmentIds().size());
+        }
+        return restored.restored();
+    }
+
+    // One transaction, so a document is never queued with its old segments still current
+    private void schedule(Document document, IngestPriority priority) {
+        String previousVersion = document.getSegmenterVersion();
+        transactionTemplate.executeWithoutResult(status -> {
+            int previous = documentSegmentBatchWriter.supersede(document.getId());
+            document.setStatus(DocumentStatus.TEXT_EXTRACTION_PENDING);
+            document.setStatusMessage("Queued for re-segmentation; " + previous + " segments were cut by "
+                    + (previousVersion != null ? previousVersion : "an unversioned segmenter"));
+            document.setPriority(priority);
+            documentRepository.save(document);
+        });
+        log.debug("Queued document {} for re-segmentation (was {})", document.getId(), previousVersion);
+    }
+}
@@ -0,0 +1,63 @@
+package com.insightlens.core.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Per-resource concurrency limits for document processing. In virtual mode the queue claims many
+ * more documents than there are cores ({@code document.queue.virtual-worker-concurrency}), so
+ * the scarce resources are guarded here instead: CPU-bound parsing and database connections get
+ * their own permits; remote services are limited adaptively by their {@link RemoteServiceGuard}.
+ * Database permits are only held for a single batch and never while waiting on another permit,
+ * so holding a parse permit while writing cannot deadlock.
+ */
+@Component
+@Slf4j
+public class ResourcePermits {
+
+    public enum Resource {
+        PARSE,
+        DATABASE
+    }
+
+    /**
+     * A held permit; closing it releases the permit.
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final Map<Resource, Semaphore> semaphores = new EnumMap<>(Resource.class);
+
+    public ResourcePermits(@Value("${resource.permits.parse:0}") int parse,
+                           @Value("${resource.permits.database:${spring.datasource.hikari.maximum-pool-size:10}}") int database) {
+        semaphores.put(Resource.PARSE, new Semaphore(parse > 0 ? parse : Runtime.getRuntime().availableProcessors(), true));
+        semaphores.put(Resource.DATABASE, new Semaphore(database, true));
+        semaphores.forEach((resource, semaphore) ->
+                log.info("Resource permits for {}: {}", resource, semaphore.availablePermits()));
+    }
+
+    /**
+     * Blocks until a permit for the resource is available. Cheap on virtual threads.
+     */
+    public Permit acquire(Resource resource) {
+        Semaphore semaphore = semaphores.get(resource);
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a " + resource + " permit", e);
+        }
+        return semaphore::release;
+    }
+
+    public int availablePermits(Resource resource) {
+        return semaphores.get(resource).availablePermits();
+    }
+}
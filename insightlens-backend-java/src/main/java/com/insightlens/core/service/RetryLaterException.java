@@ -0,0 +1,36 @@
+package com.insightlens.core.service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Processing of a document got part of the way and should be tried again, e.g. some embedding
+ * batches failed after their retries. The document keeps its status and is claimed again once
+ * {@link #getRetryAfter()} has passed; unlike a parked document, the attempt counts against
+ * {@code document.queue.max-attempts}.
+ */
+public class RetryLaterException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RetryLaterException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * The exception itself or the first one in its cause chain.
+     */
+    public static Optional<RetryLaterException> find(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof RetryLaterException retryLater) {
+                return Optional.of(retryLater);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,26 @@
+package com.insightlens.core.service;
+
+/**
+ * Receives text chunks from {@link StreamingSegmentContentHandler} as soon as they are cut,
+ * so downstream stages (segmentation, persistence, embedding) run while parsing is still going.
+ */
+@FunctionalInterface
+public interface SegmentSink {
+
+    /**
+     * Accepts one chunk of extracted text. Chunks arrive in document order and paragraphs
+     * inside a chunk are separated by a blank line.
+     *
+     * @param chunk The trimmed, non-blank chunk text
+     */
+    void accept(String chunk);
+
+    /**
+     * Called by extractors that work in page ranges before the first chunk of a range, so the
+     * sink can record positions relative to it (see {@link ExtractionCheckpoint}).
+     *
+     * @param page The 1-based first page of the range
+     */
+    default void startPage(int page) {
+    }
+}
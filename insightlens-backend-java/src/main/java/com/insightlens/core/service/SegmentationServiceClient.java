@@ -3,9 +3,12 @@ package com.insightlens.core.service;
 import com.insightlens.core.model.DocumentSegment;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
@@ -15,8 +18,13 @@ import java.util.UUID;
 @Slf4j
 @RequiredArgsConstructor
 public class SegmentationServiceClient {
+    @Qualifier("segmentationWebClient")
     private final WebClient webClient;
 
+    @Qualifier("segmentationGuard")
+    private final RemoteServiceGuard segmentationGuard;
+    private final PipelineMetrics pipelineMetrics;
+
     @Value("${segmentation.service.url}")
     private String segmentationServiceUrl;
 
@@ -29,11 +37,11 @@ public class SegmentationServiceClient {
         
         try {
             log.debug("Making POST request to {}/segment", segmentationServiceUrl);
-            return webClient.post()
-                    .uri(segmentationServiceUrl + "/segment")
-                    .bodyValue(request)
-                    .retrieve()
-                    .bodyToMono(SegmentationResponse.class)
+            return segmentationGuard.call(() -> webClient.post()
+                            .uri("/segment")
+                            .bodyValue(request)
+                            .retrieve()
+                            .bodyToMono(SegmentationResponse.class))
                     .map(response -> {
                         log.debug("Received segmentation response with {} segments", response.segments().size());
                         return response.segments().stream()
@@ -53,15 +61,66 @@ public class SegmentationServiceClient {
                         log.error("Error calling segmentation service: {}", e.getMessage(), e);
                         log.debug("Request details - URL: {}, DocumentId: {}, Text length: {}", 
                                 segmentationServiceUrl, documentId, text.length());
-                        return Mono.error(new RuntimeException("Failed to segment text: " + e.getMessage()));
+                        return Mono.error(new RuntimeException("Failed to segment text: " + e.getMessage(), e));
                     })
                     .block();
         } catch (Exception e) {
             log.error("Unexpected error during segmentation: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to segment text: " + e.getMessage());
+            throw new RuntimeException("Failed to segment text: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Streams text chunks to the segmentation service as NDJSON and emits segments as NDJSON lines
+     * come back. Neither side is buffered in full: the request body is pulled from {@code textChunks}
+     * as the connection can take it, and response lines are only read as fast as the subscriber
+     * requests segments, which propagates backpressure to the service over TCP.
+     *
+     * @param documentId The document being segmented
+     * @param textChunks Text chunks in document order
+     * @return Segments in the order assigned by the service, without the owning document set
+     */
+    public Flux<DocumentSegment> streamSegments(String documentId, Flux<String> textChunks) {
+        log.info("Streaming text to segmentation service for document: {}", documentId);
+
+        Flux<SegmentationRequest> requestBody = textChunks.map(chunk -> new SegmentationRequest(documentId, chunk));
+
+        Flux<DocumentSegment> segments = segmentationGuard.stream(() -> webClient.post()
+                        .uri("/segment/stream")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .body(requestBody, SegmentationRequest.class)
+                        .retrieve()
+                        .bodyToFlux(TextSegment.class))
+                .map(segment -> {
+                    log.trace("Received streamed segment {} with length {}",
+                            segment.segmentOrder(),
+                            segment.text().length());
+                    return DocumentSegment.builder()
+                            .id(UUID.randomUUID().toString())
+                            .segmentOrder(segment.segmentOrder())
+                            .segmentText(segment.text())
+                            .build();
+                })
+                .onErrorMap(e -> {
+                    log.error("Error streaming from segmentation service for document {}: {}", documentId, e.getMessage(), e);
+                    return new RuntimeException("Failed to segment text: " + e.getMessage(), e);
+                });
+        // Spans the whole exchange; the caller's observation is the parent
+        return pipelineMetrics.observe(segments, PipelineMetrics.Stage.REMOTE_SEGMENTATION, documentId,
+                pipelineMetrics.current());
+    }
+
+    /**
+     * Like {@link #streamSegments(String, Flux)} with the chunks a parse is pushing into
+     * {@code chunks}. However the exchange ends, the publisher is cancelled, so the parsing thread
+     * is never left waiting on a request body nobody reads.
+     */
+    public Flux<DocumentSegment> streamSegments(String documentId, BlockingChunkPublisher chunks) {
+        return streamSegments(documentId, chunks.asFlux())
+                .doFinally(signal -> chunks.cancel());
+    }
+
     private record SegmentationRequest(String documentId, String text) {}
     private record TextSegment(int segmentOrder, String text) {}
     private record SegmentationResponse(List<TextSegment> segments) {}
@@ -0,0 +1,40 @@
+package com.insightlens.core.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A way of cutting extracted text into segments. Implementations are Spring beans and are
+ * selected per document by {@link SegmentationStrategyResolver}.
+ */
+public interface SegmentationStrategy {
+
+    /**
+     * @return The name used to select this strategy in requests and configuration
+     */
+    String getName();
+
+    /**
+     * @return Identifies the rules and parameters this strategy cuts text with. Must change
+     * whenever its output would, so documents segmented the old way can be found and re-segmented.
+     */
+    String getVersion();
+
+    /**
+     * @param text The text to segment
+     * @return Ordered, non-empty segment spans into {@code text}
+     */
+    List<TextSpan> segmentRanges(CharSequence text);
+
+    default List<String> segmentText(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<TextSpan> spans = segmentRanges(text);
+        List<String> segments = new ArrayList<>(spans.size());
+        for (TextSpan span : spans) {
+            segments.add(text.substring(span.start(), span.end()));
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,77 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.config.SegmentationProperties;
+import com.insightlens.core.model.Document;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the {@link SegmentationStrategy} for a document: the strategy requested at upload time,
+ * then the one configured for its content type, then the configured default.
+ */
+@Component
+@Slf4j
+public class SegmentationStrategyResolver {
+
+    private final Map<String, SegmentationStrategy> strategiesByName;
+    private final SegmentationProperties properties;
+
+    @Value("${segmentation.remote.enabled:false}")
+    private boolean remoteSegmentationEnabled;
+
+    // The segmentation service does not report how it cuts text; bump this when it changes
+    @Value("${segmentation.remote.version:remote-1}")
+    private String remoteSegmentationVersion;
+
+    public SegmentationStrategyResolver(List<SegmentationStrategy> strategies, SegmentationProperties properties) {
+        this.strategiesByName = strategies.stream()
+                .collect(Collectors.toUnmodifiableMap(SegmentationStrategy::getName, Function.identity()));
+        this.properties = properties;
+        log.info("Available segmentation strategies: {}, default: {}", strategiesByName.keySet(), properties.getDefaultStrategy());
+    }
+
+    public boolean isKnown(String strategyName) {
+        return strategiesByName.containsKey(strategyName);
+    }
+
+    public SegmentationStrategy resolve(Document document) {
+        String name = document.getSegmentationStrategy();
+        if (name == null) {
+            name = properties.getContentTypes().get(baseContentType(document.getFileContentType()));
+        }
+        if (name == null) {
+            name = properties.getDefaultStrategy();
+        }
+        SegmentationStrategy strategy = strategiesByName.get(name);
+        if (strategy == null) {
+            throw new IllegalStateException("Unknown segmentation strategy: " + name);
+        }
+        return strategy;
+    }
+
+    /**
+     * The segmenter version a document processed now would be stamped with: how its text is cut
+     * into chunks and how chunks are cut into segments. Documents whose stored version differs are
+     * stale (see {@link ResegmentationService}).
+     */
+    public String versionFor(Document document) {
+        String segmenter = remoteSegmentationEnabled ? remoteSegmentationVersion
+                : resolve(document).getVersion() + "/sink-" + PersistingSegmentSink.VERSION;
+        return segmenter + "/chunks-" + StreamingSegmentContentHandler.CHUNKING_VERSION;
+    }
+
+    // "text/html; charset=UTF-8" -> "text/html"
+    private static String baseContentType(String contentType) {
+        if (contentType == null) {
+            return "";
+        }
+        int parameters = contentType.indexOf(';');
+        return (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim().toLowerCase();
+    }
+}
@@ -2,33 +2,46 @@ package com.insightlens.core.service;
 
 import com.insightlens.core.model.Document;
 import lombok.extern.slf4j.Slf4j;
-import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * SAX handler that cuts the extracted text into chunks while Tika is still parsing.
+ * A chunk is emitted to the {@link SegmentSink} once a block-level element closes and the
+ * buffer has passed {@link #CHARACTER_THRESHOLD_PER_CHUNK}, so the heap held per document
+ * stays bounded regardless of the file size.
+ */
 @Slf4j
 public class StreamingSegmentContentHandler extends DefaultHandler {
+    // Bump when chunk boundaries change; part of every segmenter version (SegmentationStrategyResolver#versionFor)
+    public static final int CHUNKING_VERSION = 1;
     private final Document document;
+    private final SegmentSink segmentSink;
     private final StringBuilder currentTextBuffer;
-    private final List<String> textChunks;
-    private static final int CHARACTER_THRESHOLD_PER_CHUNK = 10000; // Kept for reference
+    private static final int CHARACTER_THRESHOLD_PER_CHUNK = 10000; // Cut a chunk at the next block break past this size
+    private static final int MAX_BUFFERED_CHARACTERS = CHARACTER_THRESHOLD_PER_CHUNK * 4; // Hard cap for text without block breaks
     private static final Pattern MAJOR_BREAK_PATTERN = Pattern.compile("\\n\\s*\\n+");
+    private static final String BREAK_MARKER = "\n\n";
 
-    public StreamingSegmentContentHandler(Document document) {
+    private int chunkCount;
+    private long charactersEmitted;
+
+    public StreamingSegmentContentHandler(Document document, SegmentSink segmentSink) {
         this.document = document;
-        this.currentTextBuffer = new StringBuilder();
-        this.textChunks = new ArrayList<>();
+        this.segmentSink = segmentSink;
+        this.currentTextBuffer = new StringBuilder(CHARACTER_THRESHOLD_PER_CHUNK * 2);
         log.debug("Initialized StreamingSegmentContentHandler for document: {}", document.getId());
     }
 
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException {
         currentTextBuffer.append(ch, start, length);
+        if (currentTextBuffer.length() >= MAX_BUFFERED_CHARACTERS) {
+            // No block-level break for a long stretch (e.g. plain text without paragraphs)
+            cutAtLastWhitespace();
+        }
     }
 
     @Override
@@ -36,7 +49,10 @@ public class StreamingSegmentContentHandler extends DefaultHandler {
         // Add double newline for block-level elements to mark significant breaks
         if (isBlockLevelElement(localName)) {
             log.trace("Adding break marker after block-level element: {}", localName);
-            currentTextBuffer.append("\n\n");
+            currentTextBuffer.append(BREAK_MARKER);
+            if (currentTextBuffer.length() >= CHARACTER_THRESHOLD_PER_CHUNK) {
+                flushBuffer(currentTextBuffer.length());
+            }
         }
     }
 
@@ -44,11 +60,9 @@ public class StreamingSegmentContentHandler extends DefaultHandler {
     public void endDocument() throws SAXException {
         // Process any remaining text
         log.debug("Document parsing complete, processing final buffer ({} chars)", currentTextBuffer.length());
-        processBufferedText();
-        log.info("Completed document processing. Collected {} text chunks.", textChunks.size());
-        log.debug("Total characters processed: {}", textChunks.stream()
-                .mapToInt(String::length)
-                .sum());
+        flushBuffer(currentTextBuffer.length());
+        log.info("Completed document processing. Emitted {} text chunks.", chunkCount);
+        log.debug("Total characters processed: {}", charactersEmitted);
     }
 
     private boolean isBlockLevelElement(String localName) {
@@ -65,27 +79,47 @@ public class StreamingSegmentContentHandler extends DefaultHandler {
                localName.equalsIgnoreCase("li");
     }
 
-    private void processBufferedText() {
-        if (currentTextBuffer.length() > 0) {
-            String fullText = currentTextBuffer.toString();
-            String[] potentialChunks = MAJOR_BREAK_PATTERN.split(fullText);
-            
-            for (String chunk : potentialChunks) {
-                String trimmedChunk = chunk.trim();
-                if (!trimmedChunk.isBlank()) {
-                    log.trace("Adding text chunk of length {}", trimmedChunk.length());
-                    textChunks.add(trimmedChunk);
-                } else {
-                    log.trace("Skipping empty text block");
-                }
+    private void cutAtLastWhitespace() {
+        int cut = currentTextBuffer.length();
+        int lowerBound = currentTextBuffer.length() - CHARACTER_THRESHOLD_PER_CHUNK;
+        for (int i = currentTextBuffer.length() - 1; i > lowerBound; i--) {
+            if (Character.isWhitespace(currentTextBuffer.charAt(i))) {
+                cut = i + 1;
+                break;
             }
-            
-            currentTextBuffer.setLength(0); // Clear the buffer
         }
+        log.trace("Buffer reached {} chars without a block break, cutting at {}", currentTextBuffer.length(), cut);
+        flushBuffer(cut);
+    }
+
+    /**
+     * Emits the first {@code end} characters of the buffer as one chunk and keeps the rest.
+     */
+    private void flushBuffer(int end) {
+        if (end == 0) {
+            return;
+        }
+        // Collapse runs of blank lines to a single paragraph separator
+        String chunk = MAJOR_BREAK_PATTERN.matcher(currentTextBuffer.subSequence(0, end))
+                .replaceAll(BREAK_MARKER)
+                .trim();
+        currentTextBuffer.delete(0, end);
+
+        if (chunk.isBlank()) {
+            log.trace("Skipping empty text block");
+            return;
+        }
+        log.trace("Emitting text chunk of length {}", chunk.length());
+        chunkCount++;
+        charactersEmitted += chunk.length();
+        segmentSink.accept(chunk);
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
     }
 
-    public List<String> getTextChunks() {
-        log.debug("Retrieved {} text chunks", textChunks.size());
-        return textChunks;
+    public long getCharactersEmitted() {
+        return charactersEmitted;
     }
-} 
\ No newline at end of file
+}
@@ -4,16 +4,25 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-public class TextSegmenterService {
+public class TextSegmenterService implements SegmentationStrategy {
 
+    public static final String STRATEGY_NAME = "character";
     private static final int MAX_SEGMENT_LENGTH = 5000; // Maximum characters per segment
-    private static final String PARAGRAPH_SEPARATOR = "\n\n";
+    private static final int REVISION = 1; // Bump when the splitting rules change
+
+    @Override
+    public String getName() {
+        return STRATEGY_NAME;
+    }
+
+    @Override
+    public String getVersion() {
+        return STRATEGY_NAME + "-" + REVISION + ":max=" + MAX_SEGMENT_LENGTH;
+    }
 
     /**
      * Segments a text block into smaller chunks based on paragraphs and maximum length.
@@ -22,79 +31,136 @@ public class TextSegmenterService {
      * @param textBlock The text to segment
      * @return List of text segments
      */
+    @Override
     public List<String> segmentText(String textBlock) {
         if (textBlock == null || textBlock.isBlank()) {
             return List.of();
         }
 
-        // Split by paragraphs
-        List<String> paragraphs = Arrays.stream(textBlock.split(PARAGRAPH_SEPARATOR))
-                .map(String::trim)
-                .filter(p -> !p.isBlank())
-                .collect(Collectors.toList());
-
-        List<String> segments = new ArrayList<>();
-        StringBuilder currentSegment = new StringBuilder();
-
-        for (String paragraph : paragraphs) {
-            // If adding this paragraph would exceed the max length, save current segment and start new one
-            if (currentSegment.length() + paragraph.length() > MAX_SEGMENT_LENGTH) {
-                if (currentSegment.length() > 0) {
-                    segments.add(currentSegment.toString().trim());
-                    currentSegment.setLength(0);
-                }
+        List<TextSpan> spans = segmentRanges(textBlock);
+        List<String> segments = new ArrayList<>(spans.size());
+        for (TextSpan span : spans) {
+            segments.add(textBlock.substring(span.start(), span.end()));
+        }
 
-                // If paragraph itself is too long, split it
-                if (paragraph.length() > MAX_SEGMENT_LENGTH) {
-                    segments.addAll(splitLongParagraph(paragraph));
-                } else {
-                    currentSegment.append(paragraph);
-                }
+        log.debug("Segmented text into {} segments", segments.size());
+        return segments;
+    }
+
+    /**
+     * Single-pass variant of {@link #segmentText(String)} that returns segment boundaries instead
+     * of copies. Paragraphs (separated by a blank line) are packed into segments of at most
+     * {@code MAX_SEGMENT_LENGTH} characters; longer paragraphs are split at the last sentence end
+     * inside each window. Returned spans are trimmed and never empty.
+     *
+     * @param text The text to segment
+     * @return Ordered list of segment spans into {@code text}
+     */
+    @Override
+    public List<TextSpan> segmentRanges(CharSequence text) {
+        List<TextSpan> spans = new ArrayList<>();
+        int length = text.length();
+        int segmentStart = -1;
+        int segmentEnd = -1;
+        int cursor = 0;
+
+        while (cursor < length) {
+            int paragraphBreak = nextParagraphBreak(text, cursor);
+            int start = skipWhitespaceForward(text, cursor, paragraphBreak);
+            int end = skipWhitespaceBackward(text, start, paragraphBreak);
+            cursor = paragraphBreak + 2;
+
+            if (start == end) {
+                continue;
+            }
+
+            // If adding this paragraph would exceed the max length, close the current segment
+            if (segmentStart >= 0 && end - segmentStart > MAX_SEGMENT_LENGTH) {
+                spans.add(new TextSpan(segmentStart, segmentEnd));
+                segmentStart = -1;
+            }
+
+            if (end - start > MAX_SEGMENT_LENGTH) {
+                splitLongParagraph(text, start, end, spans);
             } else {
-                if (currentSegment.length() > 0) {
-                    currentSegment.append(PARAGRAPH_SEPARATOR);
+                if (segmentStart < 0) {
+                    segmentStart = start;
                 }
-                currentSegment.append(paragraph);
+                segmentEnd = end;
             }
         }
 
-        // Add the last segment if it has content
-        if (currentSegment.length() > 0) {
-            segments.add(currentSegment.toString().trim());
+        if (segmentStart >= 0) {
+            spans.add(new TextSpan(segmentStart, segmentEnd));
         }
-
-        log.info("Segmented text into {} segments", segments.size());
-        return segments;
+        return spans;
     }
 
     /**
-     * Splits a long paragraph into smaller chunks at sentence boundaries.
-     * Falls back to character-based splitting if no sentence boundaries are found.
+     * Splits a long paragraph into windows of at most {@code MAX_SEGMENT_LENGTH} characters,
+     * ending each window at its last sentence boundary when there is one.
      */
-    private List<String> splitLongParagraph(String paragraph) {
-        List<String> chunks = new ArrayList<>();
-        int startIndex = 0;
-
-        while (startIndex < paragraph.length()) {
-            int endIndex = Math.min(startIndex + MAX_SEGMENT_LENGTH, paragraph.length());
-            
-            // Try to find a sentence boundary
-            if (endIndex < paragraph.length()) {
-                int lastPeriod = paragraph.lastIndexOf('.', endIndex);
-                int lastQuestion = paragraph.lastIndexOf('?', endIndex);
-                int lastExclamation = paragraph.lastIndexOf('!', endIndex);
-                
-                int lastSentenceEnd = Math.max(Math.max(lastPeriod, lastQuestion), lastExclamation);
-                
-                if (lastSentenceEnd > startIndex) {
-                    endIndex = lastSentenceEnd + 1;
+    private void splitLongParagraph(CharSequence text, int start, int end, List<TextSpan> spans) {
+        int windowStart = start;
+
+        while (windowStart < end) {
+            int windowEnd = Math.min(windowStart + MAX_SEGMENT_LENGTH, end);
+
+            if (windowEnd < end) {
+                int sentenceEnd = lastSentenceEnd(text, windowStart, windowEnd);
+                if (sentenceEnd > windowStart) {
+                    windowEnd = sentenceEnd + 1;
                 }
             }
 
-            chunks.add(paragraph.substring(startIndex, endIndex).trim());
-            startIndex = endIndex;
+            int chunkStart = skipWhitespaceForward(text, windowStart, windowEnd);
+            int chunkEnd = skipWhitespaceBackward(text, chunkStart, windowEnd);
+            if (chunkStart < chunkEnd) {
+                spans.add(new TextSpan(chunkStart, chunkEnd));
+            }
+            windowStart = windowEnd;
+        }
+    }
+
+    /**
+     * Scans backwards from {@code windowEnd} once for '.', '?' or '!', never past {@code windowStart}.
+     */
+    private static int lastSentenceEnd(CharSequence text, int windowStart, int windowEnd) {
+        for (int i = windowEnd - 1; i > windowStart; i--) {
+            char c = text.charAt(i);
+            if (c == '.' || c == '?' || c == '!') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the next blank-line separator ("\n\n") at or after {@code from},
+     * or the text length if there is none.
+     */
+    private static int nextParagraphBreak(CharSequence text, int from) {
+        int last = text.length() - 1;
+        for (int i = from; i < last; i++) {
+            if (text.charAt(i) == '\n' && text.charAt(i + 1) == '\n') {
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    // Whitespace follows String.trim(): any char <= ' '
+    private static int skipWhitespaceForward(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
         }
+        return from;
+    }
 
-        return chunks;
+    private static int skipWhitespaceBackward(CharSequence text, int from, int to) {
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.insightlens.core.service;
+
+/**
+ * Half-open character range {@code [start, end)} into a source text, used so segmenters can
+ * report boundaries without copying the text they point into.
+ */
+public record TextSpan(int start, int end) {
+
+    public int length() {
+        return end - start;
+    }
+
+    public String materialize(CharSequence source) {
+        return source.subSequence(start, end).toString();
+    }
+}
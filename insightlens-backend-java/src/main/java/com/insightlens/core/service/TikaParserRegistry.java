@@ -0,0 +1,159 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.config.TikaProperties;
+import com.insightlens.core.model.Document;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MediaTypeRegistry;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tika configuration, detector and parsers, loaded once and shared by all processing threads
+ * (Tika parsers are stateless and thread-safe). Documents whose upload content type is on the
+ * trusted list are handed straight to the parser registered for that type; everything else,
+ * including generic types such as application/octet-stream, goes through auto-detection.
+ * <p>
+ * In {@link TikaProperties.Mode#FORKED} mode every parse runs in a pool of child JVMs instead,
+ * each with its own heap cap and a per-document timeout; SAX events stream back over the child's
+ * pipe. A child that runs out of memory, crashes or times out is discarded and replaced, and only
+ * the document it was parsing fails.
+ */
+@Component
+@Slf4j
+public class TikaParserRegistry {
+
+    private final TikaConfig tikaConfig;
+    private final AutoDetectParser autoDetectParser;
+    private final ForkParser forkParser;
+    private final Map<MediaType, Parser> parsersByType;
+    private final Set<MediaType> trustedContentTypes;
+    private final String warmUpDir;
+
+    public TikaParserRegistry(TikaProperties properties) {
+        long start = System.nanoTime();
+        this.tikaConfig = TikaConfig.getDefaultConfig();
+        this.autoDetectParser = new AutoDetectParser(tikaConfig);
+        this.parsersByType = autoDetectParser.getParsers();
+        this.warmUpDir = properties.getWarmUpDir();
+        MediaTypeRegistry registry = tikaConfig.getMediaTypeRegistry();
+        this.trustedContentTypes = properties.getTrustedContentTypes().stream()
+                .filter(type -> !type.isBlank())
+                .map(type -> registry.normalize(MediaType.parse(type.trim())))
+                .filter(parsersByType::containsKey)
+                .collect(Collectors.toUnmodifiableSet());
+        this.forkParser = properties.getMode() == TikaProperties.Mode.FORKED ? createForkParser(properties.getFork()) : null;
+        log.info("Loaded Tika ({} mode) with {} media types in {} ms; routing {} directly",
+                properties.getMode(), parsersByType.size(), (System.nanoTime() - start) / 1_000_000,
+                forkParser == null ? this.trustedContentTypes : Set.of());
+    }
+
+    /**
+     * The parser to use for a document: the fork pool in forked mode, else the type-specific parser
+     * when its content type is trusted, otherwise the shared auto-detecting parser.
+     */
+    public Parser parserFor(Document document) {
+        if (forkParser != null) {
+            return forkParser;
+        }
+        MediaType type = mediaTypeOf(document);
+        if (type != null && trustedContentTypes.contains(type)) {
+            return parsersByType.get(type);
+        }
+        return autoDetectParser;
+    }
+
+    /**
+     * Fresh metadata for one parse, pre-filled with the hints the detector and parsers use.
+     */
+    public Metadata metadataFor(Document document) {
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, document.getOriginalFileName());
+        MediaType type = mediaTypeOf(document);
+        if (type != null) {
+            metadata.set(Metadata.CONTENT_TYPE, type.toString());
+        }
+        return metadata;
+    }
+
+    /**
+     * Parses the sample files in {@code tika.warm-up-dir}, if set, so the class loading and JIT
+     * cost of the first real documents is paid before the node starts taking work.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmUpDir.isBlank()) {
+            return;
+        }
+        Path dir = Paths.get(warmUpDir);
+        if (!Files.isDirectory(dir)) {
+            log.warn("Tika warm-up directory {} does not exist", dir);
+            return;
+        }
+        long start = System.nanoTime();
+        int parsed = 0;
+        try (DirectoryStream<Path> samples = Files.newDirectoryStream(dir, Files::isRegularFile)) {
+            for (Path sample : samples) {
+                try (InputStream stream = TikaInputStream.get(sample)) {
+                    // Goes through the fork pool in forked mode, which also starts the child JVMs
+                    (forkParser != null ? forkParser : autoDetectParser)
+                            .parse(stream, new DefaultHandler(), new Metadata(), new ParseContext());
+                    parsed++;
+                } catch (Exception e) {
+                    log.warn("Tika warm-up failed for {}: {}", sample, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list Tika warm-up directory {}: {}", dir, e.getMessage());
+        }
+        log.info("Tika warm-up parsed {} sample files in {} ms", parsed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (forkParser != null) {
+            forkParser.close();
+        }
+    }
+
+    private ForkParser createForkParser(TikaProperties.Fork fork) {
+        ForkParser parser = new ForkParser(TikaParserRegistry.class.getClassLoader(), autoDetectParser);
+        parser.setJavaCommand(List.of(fork.getJavaCommand(),
+                "-Xmx" + fork.getMaxHeap().toMegabytes() + "m",
+                "-XX:+ExitOnOutOfMemoryError",
+                "-Djava.awt.headless=true"));
+        parser.setPoolSize(fork.getPoolSize());
+        parser.setServerParseTimeoutMillis(fork.getParseTimeout().toMillis());
+        parser.setMaxFilesProcessedPerServer(fork.getMaxFilesPerWorker());
+        log.info("Tika fork pool: {} workers, {} MB heap each, {} parse timeout",
+                fork.getPoolSize(), fork.getMaxHeap().toMegabytes(), fork.getParseTimeout());
+        return parser;
+    }
+
+    private MediaType mediaTypeOf(Document document) {
+        MediaType type = MediaType.parse(document.getFileContentType());
+        return type != null ? tikaConfig.getMediaTypeRegistry().normalize(type.getBaseType()) : null;
+    }
+}
@@ -0,0 +1,116 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.util.TokenEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Segments text by an estimated token budget instead of a character count, so every segment
+ * fills the embedding model's context without being truncated by it. Segments end at the last
+ * sentence or paragraph boundary in the second half of the budget when there is one, and each
+ * segment repeats the last {@code overlapTokens} of the previous one.
+ */
+@Service
+@Slf4j
+public class TokenBudgetSegmenter implements SegmentationStrategy {
+
+    public static final String STRATEGY_NAME = "token";
+    private static final int REVISION = 1; // Bump when the splitting rules or the token estimate change
+
+    private final int maxTokens;
+    private final int overlapTokens;
+
+    public TokenBudgetSegmenter(@Value("${segmentation.token.max-tokens:480}") int maxTokens,
+                                @Value("${segmentation.token.overlap-tokens:48}") int overlapTokens) {
+        if (maxTokens <= 0 || overlapTokens < 0 || overlapTokens >= maxTokens / 2) {
+            throw new IllegalArgumentException("segmentation.token.overlap-tokens must be between 0 and half of max-tokens");
+        }
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+    }
+
+    @Override
+    public String getName() {
+        return STRATEGY_NAME;
+    }
+
+    @Override
+    public String getVersion() {
+        return STRATEGY_NAME + "-" + REVISION + ":max=" + maxTokens + ",overlap=" + overlapTokens;
+    }
+
+    @Override
+    public List<TextSpan> segmentRanges(CharSequence text) {
+        List<TextSpan> spans = new ArrayList<>();
+        // Pieces of the segment being built; each costs at least one token, so maxTokens bounds the count
+        int[] pieceStarts = new int[maxTokens];
+        int[] pieceEnds = new int[maxTokens];
+        int[] cumulativeTokens = new int[maxTokens];
+        int pieceCount = 0;
+        int breakAfter = -1; // Index of the last piece followed by a sentence or paragraph boundary
+        boolean hasNewPieces = false; // False while the segment only holds the previous segment's overlap
+
+        int length = text.length();
+        int pos = 0;
+        while (pos < length) {
+            int newlines = 0;
+            while (pos < length && text.charAt(pos) <= ' ') {
+                if (text.charAt(pos) == '\n') {
+                    newlines++;
+                }
+                pos++;
+            }
+            if (pos >= length) {
+                break;
+            }
+            if (newlines >= 2 && pieceCount > 0) {
+                breakAfter = pieceCount - 1;
+            }
+
+            int pieceEnd = TokenEstimator.pieceEnd(text, pos);
+            int cost = TokenEstimator.pieceCost(pieceEnd - pos);
+
+            while (pieceCount > 0 && cumulativeTokens[pieceCount - 1] + cost > maxTokens) {
+                int cutAfter = breakAfter >= pieceCount / 2 ? breakAfter : pieceCount - 1;
+                spans.add(new TextSpan(pieceStarts[0], pieceEnds[cutAfter]));
+
+                // Carry the overlap plus anything after the cut into the next segment
+                int keepFrom = cutAfter + 1;
+                while (keepFrom > 1 && cumulativeTokens[cutAfter] - cumulativeTokens[keepFrom - 2] <= overlapTokens) {
+                    keepFrom--;
+                }
+                int carried = pieceCount - keepFrom;
+                int base = cumulativeTokens[keepFrom - 1];
+                for (int i = 0; i < carried; i++) {
+                    pieceStarts[i] = pieceStarts[keepFrom + i];
+                    pieceEnds[i] = pieceEnds[keepFrom + i];
+                    cumulativeTokens[i] = cumulativeTokens[keepFrom + i] - base;
+                }
+                pieceCount = carried;
+                breakAfter = breakAfter > cutAfter ? breakAfter - keepFrom : -1;
+                hasNewPieces = pieceCount > cutAfter + 1 - keepFrom;
+            }
+
+            pieceStarts[pieceCount] = pos;
+            pieceEnds[pieceCount] = pieceEnd;
+            cumulativeTokens[pieceCount] = (pieceCount > 0 ? cumulativeTokens[pieceCount - 1] : 0) + cost;
+            char c = text.charAt(pos);
+            if (c == '.' || c == '?' || c == '!') {
+                breakAfter = pieceCount;
+            }
+            pieceCount++;
+            hasNewPieces = true;
+            pos = pieceEnd;
+        }
+
+        if (pieceCount > 0 && hasNewPieces) {
+            spans.add(new TextSpan(pieceStarts[0], pieceEnds[pieceCount - 1]));
+        }
+        log.debug("Segmented {} chars into {} token-bounded segments", length, spans.size());
+        return spans;
+    }
+}
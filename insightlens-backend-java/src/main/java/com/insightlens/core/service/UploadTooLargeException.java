@@ -0,0 +1,18 @@
+package com.insightlens.core.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.IOException;
+
+/**
+ * Uploaded content, or one file of a bulk import, is larger than {@code file.max-upload-size}.
+ * Thrown while the content is copied; the partial file has been deleted.
+ */
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class UploadTooLargeException extends IOException {
+
+    public UploadTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,283 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.util.HnswIndex;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns the in-process {@link HnswIndex} over segment embeddings. Vectors are added as soon as the
+ * embedding stage stores them; a periodic catch-up picks up vectors written by other instances,
+ * and replays the segment deletions logged in {@code vector_index_removals}, so segments deleted
+ * anywhere leave every index. Once tombstones make up {@code vector-index.compact-tombstone-ratio}
+ * of the index, the catch-up compacts it.
+ * The index is snapshotted to disk and reloaded on start, after which only vectors embedded and
+ * segments removed since the snapshot's watermark are read from PostgreSQL. Removals are kept for
+ * {@code vector-index.removal-retention}; older snapshots are discarded and rebuilt instead.
+ */
+@Service
+@Slf4j
+public class VectorIndexService {
+
+    private static final String CATCH_UP_SQL =
+            "SELECT id, document_id, embedding, embedded_at FROM document_segments "
+                    + "WHERE embedding IS NOT NULL AND embedded_at > ? ORDER BY embedded_at";
+
+    private static final String REMOVALS_SQL =
+            "SELECT segment_id, removed_at FROM vector_index_removals WHERE removed_at > ? ORDER BY removed_at";
+
+    private static final String PRUNE_REMOVALS_SQL = "DELETE FROM vector_index_removals WHERE removed_at < ?";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    // Keeps a snapshot from being written of an index that is being replaced
+    private final Object compactionLock = new Object();
+    private volatile HnswIndex index;
+    private volatile Timestamp watermark = new Timestamp(0);
+
+    @Value("${vector-index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vector-index.snapshot-path:./insightlens_index/segments.hnsw}")
+    private String snapshotPath;
+
+    @Value("${vector-index.m:16}")
+    private int m;
+
+    @Value("${vector-index.ef-construction:200}")
+    private int efConstruction;
+
+    @Value("${vector-index.ef-search:100}")
+    private int efSearch;
+
+    // Re-read this far behind the watermark, since other instances may commit out of order
+    @Value("${vector-index.catch-up-overlap:PT5M}")
+    private Duration catchUpOverlap;
+
+    @Value("${vector-index.compact-tombstone-ratio:0.2}")
+    private double compactTombstoneRatio;
+
+    @Value("${vector-index.removal-retention:P7D}")
+    private Duration removalRetention;
+
+    public VectorIndexService(DataSource dataSource, TransactionTemplate transactionTemplate) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        // PostgreSQL only streams with a fetch size inside a transaction, see catchUp()
+        this.streamingJdbcTemplate.setFetchSize(1000);
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        if (!enabled) {
+            return;
+        }
+        Path path = Paths.get(snapshotPath);
+        if (Files.exists(path)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                Timestamp snapshotWatermark = new Timestamp(in.readLong());
+                if (snapshotWatermark.toInstant().isBefore(Instant.now().minus(removalRetention))) {
+                    // The removals it has missed may already be pruned
+                    log.info("Vector index snapshot {} is older than the removal retention, rebuilding from database", path);
+                } else {
+                    watermark = snapshotWatermark;
+                    index = HnswIndex.readFrom(in);
+                    log.info("Loaded vector index snapshot with {} vectors (watermark {})", index.size(), watermark);
+                }
+            } catch (IOException e) {
+                log.warn("Could not load vector index snapshot {}, rebuilding from database: {}", path, e.getMessage());
+                index = null;
+                watermark = new Timestamp(0);
+            }
+        }
+        catchUp();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds freshly stored embeddings of one document to the index.
+     */
+    public void add(String documentId, List<String> segmentIds, List<float[]> vectors) {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < segmentIds.size(); i++) {
+            indexFor(vectors.get(i).length).add(segmentIds.get(i), documentId, vectors.get(i));
+        }
+        dirty.set(true);
+    }
+
+    public void remove(List<String> segmentIds) {
+        HnswIndex current = index;
+        if (current == null) {
+            return;
+        }
+        segmentIds.forEach(current::remove);
+        dirty.set(true);
+    }
+
+    /**
+     * Top-k most similar segments, across the corpus or within one document when {@code documentId} is set.
+     */
+    public List<HnswIndex.Match> search(float[] query, int k, String documentId) {
+        HnswIndex current = index;
+        if (current == null) {
+            return List.of();
+        }
+        return documentId != null
+                ? current.searchDocument(query, k, documentId)
+                : current.search(query, k, efSearch);
+    }
+
+    @Scheduled(fixedDelayString = "${vector-index.catch-up-interval:PT1M}",
+               initialDelayString = "${vector-index.catch-up-interval:PT1M}")
+    public void catchUp() {
+        if (!enabled) {
+            return;
+        }
+        Timestamp from = new Timestamp(Math.max(0, watermark.getTime() - catchUpOverlap.toMillis()));
+        int[] added = {0};
+        transactionTemplate.executeWithoutResult(status ->
+                streamingJdbcTemplate.query(CATCH_UP_SQL, rs -> {
+                    Array array = rs.getArray("embedding");
+                    Float[] boxed = (Float[]) array.getArray();
+                    float[] vector = new float[boxed.length];
+                    for (int i = 0; i < boxed.length; i++) {
+                        vector[i] = boxed[i];
+                    }
+                    indexFor(vector.length).add(rs.getString("id"), rs.getString("document_id"), vector);
+                    Timestamp embeddedAt = rs.getTimestamp("embedded_at");
+                    if (embeddedAt.after(watermark)) {
+                        watermark = embeddedAt;
+                    }
+                    added[0]++;
+                }, from));
+        int removed = replayRemovals(from);
+        if (added[0] > 0 || removed > 0) {
+            dirty.set(true);
+            log.info("Vector index caught up on {} embeddings and {} removals, watermark now {}",
+                    added[0], removed, watermark);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Deletes logged removals older than {@code vector-index.removal-retention}; every running
+     * instance has replayed them long before.
+     */
+    @Scheduled(fixedDelayString = "${vector-index.removal-prune-interval:PT1H}",
+               initialDelayString = "${vector-index.removal-prune-interval:PT1H}")
+    public void pruneRemovals() {
+        int pruned = streamingJdbcTemplate.update(PRUNE_REMOVALS_SQL,
+                Timestamp.from(Instant.now().minus(removalRetention)));
+        if (pruned > 0) {
+            log.info("Pruned {} vector index removals older than {}", pruned, removalRetention);
+        }
+    }
+
+    // Removals are never undone: segment ids are not reused, so a removed id is never added again
+    private int replayRemovals(Timestamp from) {
+        HnswIndex current = index;
+        int[] removed = {0};
+        transactionTemplate.executeWithoutResult(status ->
+                streamingJdbcTemplate.query(REMOVALS_SQL, rs -> {
+                    if (current != null) {
+                        current.remove(rs.getString("segment_id"));
+                    }
+                    Timestamp removedAt = rs.getTimestamp("removed_at");
+                    if (removedAt.after(watermark)) {
+                        watermark = removedAt;
+                    }
+                    removed[0]++;
+                }, from));
+        return removed[0];
+    }
+
+    private void compactIfNeeded() {
+        HnswIndex current = index;
+        if (current == null) {
+            return;
+        }
+        double ratio = current.tombstoneRatio();
+        if (ratio < compactTombstoneRatio) {
+            return;
+        }
+        long started = System.nanoTime();
+        synchronized (compactionLock) {
+            index = current.compact();
+            dirty.set(true);
+        }
+        log.info("Compacted vector index with {}% tombstones to {} vectors in {} ms", Math.round(ratio * 100),
+                index.size(), Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    @Scheduled(fixedDelayString = "${vector-index.snapshot-interval:PT5M}",
+               initialDelayString = "${vector-index.snapshot-interval:PT5M}")
+    @PreDestroy
+    public void writeSnapshot() {
+        synchronized (compactionLock) {
+            writeSnapshot(index);
+        }
+    }
+
+    private void writeSnapshot(HnswIndex current) {
+        if (!enabled || current == null || !dirty.getAndSet(false)) {
+            return;
+        }
+        Path path = Paths.get(snapshotPath);
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeLong(watermark.getTime());
+                current.writeTo(out);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote vector index snapshot with {} vectors to {}", current.size(), path);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("Failed to write vector index snapshot {}: {}", path, e.getMessage(), e);
+        }
+    }
+
+    private HnswIndex indexFor(int dimension) {
+        HnswIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    index = new HnswIndex(dimension, m, efConstruction);
+                    log.info("Created vector index with dimension {}", dimension);
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,137 @@
+package com.insightlens.core.util;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to the latency of the calls it admits: additive increase,
+ * multiplicative decrease. A call that failed with an overload signal, or that took longer than
+ * {@code latencyTolerance} times the no-load latency, shrinks the limit by {@code backoffRatio};
+ * any other call grows it by {@code 1/limit}, i.e. about one slot per limit's worth of calls,
+ * but only while the limit is actually being used.
+ * <p>
+ * The no-load latency is the lowest latency seen, re-learned every {@code baselineWindow}
+ * samples so that a service that has become slower for good does not pin the limit at its floor.
+ */
+public final class AimdLimiter {
+
+    public enum Outcome {
+        /** The call succeeded; its latency is a sample. */
+        SUCCESS,
+        /** Overload: 5xx, 429, timeout or connection failure. */
+        DROPPED,
+        /** Says nothing about load, e.g. a client error or a cancelled call. */
+        IGNORED
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final int baselineWindow;
+
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long nextBaselineNanos = Long.MAX_VALUE;
+    private int baselineSamples;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double latencyTolerance, double backoffRatio,
+                       int baselineWindow) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max, got " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.baselineWindow = baselineWindow;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Waits up to {@code timeout} for a slot under the current limit.
+     *
+     * @return Whether a slot was taken; if so, {@link #release} must follow
+     */
+    public boolean acquire(Duration timeout) throws InterruptedException {
+        long remainingNanos = timeout.toNanos();
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = released.awaitNanos(remainingNanos);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param latencyNanos Latency of the call, or a negative value if it is not a usable sample
+     */
+    public void release(Outcome outcome, long latencyNanos) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= limit / 2;
+            inFlight--;
+            switch (outcome) {
+                case DROPPED -> decrease();
+                case SUCCESS -> {
+                    if (latencyNanos >= 0 && isSlow(latencyNanos)) {
+                        decrease();
+                    } else if (saturated) {
+                        limit = Math.min(maxLimit, limit + 1 / limit);
+                    }
+                }
+                case IGNORED -> {
+                }
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isSlow(long latencyNanos) {
+        nextBaselineNanos = Math.min(nextBaselineNanos, latencyNanos);
+        baselineNanos = Math.min(baselineNanos, latencyNanos);
+        if (++baselineSamples >= baselineWindow) {
+            baselineNanos = nextBaselineNanos;
+            nextBaselineNanos = Long.MAX_VALUE;
+            baselineSamples = 0;
+        }
+        // Sub-millisecond baselines are noise; never call a call slow below a millisecond
+        return latencyNanos > Math.max(baselineNanos * latencyTolerance, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+}
@@ -0,0 +1,156 @@
+package com.insightlens.core.util;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Count-based circuit breaker. While closed it tracks the outcome of the last
+ * {@code windowSize} calls and opens once at least {@code minimumCalls} have been seen and the
+ * share of failures reaches {@code failureRateThreshold}. Open, it rejects every call for
+ * {@code openDuration}, then lets {@code halfOpenCalls} trial calls through: if all succeed it
+ * closes, the first failure opens it again.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final Consumer<State> onTransition;
+    private final boolean[] window;
+
+    private State state = State.CLOSED;
+    private int windowPosition;
+    private int windowCalls;
+    private int windowFailures;
+    private long openUntilNanos;
+    private int trialsLeft;
+    private int trialsSucceeded;
+
+    /**
+     * @param onTransition Called with the new state on every change, under the breaker's lock
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                          int halfOpenCalls, Consumer<State> onTransition) {
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.onTransition = onTransition;
+    }
+
+    /**
+     * Admits a call, or not. An admitted call must be followed by exactly one of
+     * {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openUntilNanos >= 0) {
+            trialsLeft = halfOpenCalls;
+            trialsSucceeded = 0;
+            transition(State.HALF_OPEN);
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialsLeft == 0) {
+                    yield false;
+                }
+                trialsLeft--;
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * Whether a call made now could be admitted, without taking a trial slot.
+     */
+    public synchronized boolean allowsRequests() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> System.nanoTime() - openUntilNanos >= 0;
+            case HALF_OPEN -> trialsLeft > 0;
+        };
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= halfOpenCalls) {
+                resetWindow();
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCalls >= minimumCalls && windowFailures >= failureRateThreshold * windowCalls) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * For admitted calls that say nothing about the service, e.g. cancelled ones; a trial slot is handed back.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            trialsLeft++;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Time until an open breaker lets trial calls through; zero otherwise.
+     */
+    public synchronized Duration retryAfter() {
+        return state == State.OPEN ? Duration.ofNanos(Math.max(0, openUntilNanos - System.nanoTime())) : Duration.ZERO;
+    }
+
+    private void record(boolean failure) {
+        if (windowCalls == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+
+    private void open() {
+        openUntilNanos = System.nanoTime() + openNanos;
+        resetWindow();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow() {
+        windowPosition = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+    }
+
+    private void transition(State next) {
+        state = next;
+        onTransition.accept(next);
+    }
+}
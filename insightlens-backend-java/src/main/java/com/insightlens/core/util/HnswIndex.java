@@ -0,0 +1,585 @@
+package com.insightlens.core.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory HNSW (hierarchical navigable small world) graph for approximate cosine-similarity search.
+ * Vectors are normalized on insert and kept off-heap in direct buffers, so large indexes do not
+ * weigh on the garbage collector; only the graph links and labels live on the heap.
+ * Removed or replaced entries are tombstoned: they still route searches but are never returned,
+ * until {@link #compact()} rebuilds the graph without them. Inserts take a write lock, searches a
+ * shared read lock.
+ */
+public class HnswIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x484e5357; // "HNSW"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int VECTORS_PER_BLOCK = 8192;
+    // Nodes copied per read lock while compacting, so writers never wait long
+    private static final int COMPACT_STEP = 256;
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<FloatBuffer> vectorBlocks = new ArrayList<>();
+    private final List<String> segmentIds = new ArrayList<>();
+    private final List<String> documentIds = new ArrayList<>();
+    private final Map<String, Integer> nodeBySegmentId = new HashMap<>();
+    private final Map<String, IntList> nodesByDocument = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    // links[node][level] = {count, neighbour...}
+    private int[][][] links = new int[1024][][];
+    private int size;
+    private int liveCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    // Set once compacted; writes to this index go there instead
+    private HnswIndex successor;
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    public record Match(String segmentId, String documentId, float score) {}
+
+    private record Candidate(int node, float distance) {}
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Share of nodes that are tombstones, i.e. graph and off-heap memory a {@link #compact()} would reclaim.
+     */
+    public double tombstoneRatio() {
+        lock.readLock().lock();
+        try {
+            return size == 0 ? 0 : (double) (size - liveCount) / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a vector, replacing any earlier vector for the same segment. Re-adding an identical
+     * vector is a no-op, so callers may replay overlapping ranges.
+     */
+    public void add(String segmentId, String documentId, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        float[] query = normalize(vector);
+
+        HnswIndex target;
+        lock.writeLock().lock();
+        try {
+            target = successor;
+            if (target == null) {
+                Integer existing = nodeBySegmentId.get(segmentId);
+                if (existing != null) {
+                    if (sameVector(existing, query)) {
+                        return;
+                    }
+                    markDeleted(existing);
+                }
+                insert(segmentId, documentId, query);
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        target.add(segmentId, documentId, vector);
+    }
+
+    public void remove(String segmentId) {
+        HnswIndex target;
+        lock.writeLock().lock();
+        try {
+            target = successor;
+            if (target == null) {
+                Integer node = nodeBySegmentId.get(segmentId);
+                if (node != null) {
+                    markDeleted(node);
+                }
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        target.remove(segmentId);
+    }
+
+    /**
+     * Builds a copy of this index without its tombstones. Searches and writes go on meanwhile: live
+     * nodes are copied a few at a time, and the last ones, together with removals made during
+     * the copy, under the write lock, after which this index forwards every write to the copy.
+     * Callers then replace this index with the copy; searches still on this one see a slightly
+     * stale but consistent graph. Only one compaction may run at a time.
+     *
+     * @return The compacted copy
+     */
+    public HnswIndex compact() {
+        HnswIndex copy = new HnswIndex(dimension, m, efConstruction);
+        int next = 0;
+        boolean done = false;
+        while (!done) {
+            List<String> stepSegmentIds = new ArrayList<>(COMPACT_STEP);
+            List<String> stepDocumentIds = new ArrayList<>(COMPACT_STEP);
+            List<float[]> stepVectors = new ArrayList<>(COMPACT_STEP);
+            lock.readLock().lock();
+            try {
+                int end = Math.min(size, next + COMPACT_STEP);
+                for (; next < end; next++) {
+                    if (!deleted.get(next)) {
+                        stepSegmentIds.add(segmentIds.get(next));
+                        stepDocumentIds.add(documentIds.get(next));
+                        stepVectors.add(vectorOf(next));
+                    }
+                }
+                done = next == size;
+            } finally {
+                lock.readLock().unlock();
+            }
+            // Inserted outside the lock, as they are the slow part
+            for (int i = 0; i < stepSegmentIds.size(); i++) {
+                copy.add(stepSegmentIds.get(i), stepDocumentIds.get(i), stepVectors.get(i));
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (; next < size; next++) {
+                if (!deleted.get(next)) {
+                    copy.add(segmentIds.get(next), documentIds.get(next), vectorOf(next));
+                }
+            }
+            // Replaced nodes were appended and copied above; only removals are left to catch up on
+            for (String segmentId : new ArrayList<>(copy.nodeBySegmentId.keySet())) {
+                if (!nodeBySegmentId.containsKey(segmentId)) {
+                    copy.remove(segmentId);
+                }
+            }
+            successor = copy;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return copy;
+    }
+
+    /**
+     * Approximate top-k search over the whole corpus.
+     */
+    public List<Match> search(float[] vector, int k, int ef) {
+        float[] query = normalize(vector);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                current = greedyClosest(query, current, level);
+            }
+            PriorityQueue<Candidate> found = searchLayer(query, current, Math.max(ef, k), 0);
+            List<Candidate> sorted = new ArrayList<>(found);
+            sorted.sort(Comparator.comparingDouble(Candidate::distance));
+            return toMatches(sorted, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact top-k search restricted to one document's vectors.
+     */
+    public List<Match> searchDocument(float[] vector, int k, String documentId) {
+        float[] query = normalize(vector);
+        lock.readLock().lock();
+        try {
+            IntList nodes = nodesByDocument.get(documentId);
+            return nodes == null ? List.of() : exactSearch(query, k, nodes.values, nodes.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact top-k search over every vector. Used as the recall baseline.
+     */
+    public List<Match> bruteForceSearch(float[] vector, int k) {
+        float[] query = normalize(vector);
+        lock.readLock().lock();
+        try {
+            int[] all = new int[size];
+            Arrays.setAll(all, i -> i);
+            return exactSearch(query, k, all, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(dimension);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int node = 0; node < size; node++) {
+                out.writeUTF(segmentIds.get(node));
+                out.writeUTF(documentIds.get(node));
+                out.writeBoolean(deleted.get(node));
+                FloatBuffer block = vectorBlocks.get(node / VECTORS_PER_BLOCK);
+                int offset = (node % VECTORS_PER_BLOCK) * dimension;
+                for (int i = 0; i < dimension; i++) {
+                    out.writeFloat(block.get(offset + i));
+                }
+                out.writeInt(links[node].length);
+                for (int[] levelLinks : links[node]) {
+                    out.writeInt(levelLinks[0]);
+                    for (int i = 1; i <= levelLinks[0]; i++) {
+                        out.writeInt(levelLinks[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static HnswIndex readFrom(DataInput in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Not an HNSW snapshot or unsupported snapshot version");
+        }
+        HnswIndex index = new HnswIndex(in.readInt(), in.readInt(), in.readInt());
+        int count = in.readInt();
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+        float[] vector = new float[index.dimension];
+        for (int node = 0; node < count; node++) {
+            String segmentId = in.readUTF();
+            String documentId = in.readUTF();
+            boolean isDeleted = in.readBoolean();
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = in.readFloat();
+            }
+            int levels = in.readInt();
+            int[][] nodeLinks = new int[levels][];
+            for (int level = 0; level < levels; level++) {
+                int linkCount = in.readInt();
+                nodeLinks[level] = new int[1 + (level == 0 ? index.maxM0 : index.m)];
+                nodeLinks[level][0] = linkCount;
+                for (int i = 1; i <= linkCount; i++) {
+                    nodeLinks[level][i] = in.readInt();
+                }
+            }
+            index.append(segmentId, documentId, vector, nodeLinks);
+            if (isDeleted) {
+                index.markDeleted(node);
+            }
+        }
+        return index;
+    }
+
+    private void insert(String segmentId, String documentId, float[] query) {
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[1 + (l == 0 ? maxM0 : m)];
+        }
+        int node = append(segmentId, documentId, query, nodeLinks);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PriorityQueue<Candidate> candidates = searchLayer(query, current, efConstruction, l);
+            List<Candidate> sorted = new ArrayList<>(candidates);
+            sorted.sort(Comparator.comparingDouble(Candidate::distance));
+            int maxLinks = l == 0 ? maxM0 : m;
+            for (int i = 0; i < Math.min(m, sorted.size()); i++) {
+                int neighbour = sorted.get(i).node();
+                connect(node, neighbour, l, maxLinks);
+                connect(neighbour, node, l, maxLinks);
+            }
+            if (!sorted.isEmpty()) {
+                current = sorted.get(0).node();
+            }
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    private int append(String segmentId, String documentId, float[] vector, int[][] nodeLinks) {
+        int node = size;
+        if (node % VECTORS_PER_BLOCK == 0) {
+            vectorBlocks.add(ByteBuffer.allocateDirect(VECTORS_PER_BLOCK * dimension * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer());
+        }
+        vectorBlocks.get(node / VECTORS_PER_BLOCK).put((node % VECTORS_PER_BLOCK) * dimension, vector);
+        if (node == links.length) {
+            links = Arrays.copyOf(links, links.length * 2);
+        }
+        links[node] = nodeLinks;
+        segmentIds.add(segmentId);
+        documentIds.add(documentId);
+        nodeBySegmentId.put(segmentId, node);
+        nodesByDocument.computeIfAbsent(documentId, id -> new IntList()).add(node);
+        size++;
+        liveCount++;
+        return node;
+    }
+
+    private void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            liveCount--;
+            nodeBySegmentId.remove(segmentIds.get(node), node);
+        }
+    }
+
+    /**
+     * Adds {@code to} to the links of {@code from}; when full, keeps the closest {@code maxLinks}.
+     */
+    private void connect(int from, int to, int level, int maxLinks) {
+        int[] fromLinks = links[from][level];
+        int count = fromLinks[0];
+        for (int i = 1; i <= count; i++) {
+            if (fromLinks[i] == to) {
+                return;
+            }
+        }
+        if (count < maxLinks) {
+            fromLinks[count + 1] = to;
+            fromLinks[0] = count + 1;
+            return;
+        }
+        // Replace the farthest neighbour if the new one is closer
+        int farthestSlot = -1;
+        float farthestDistance = distance(from, to);
+        for (int i = 1; i <= count; i++) {
+            float d = distance(from, fromLinks[i]);
+            if (d > farthestDistance) {
+                farthestDistance = d;
+                farthestSlot = i;
+            }
+        }
+        if (farthestSlot > 0) {
+            fromLinks[farthestSlot] = to;
+        }
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(current, query);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] currentLinks = linksAt(current, level);
+            for (int i = 1; i <= currentLinks[0]; i++) {
+                int neighbour = currentLinks[i];
+                float d = distance(neighbour, query);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer; returns up to {@code ef} closest nodes as a max-heap.
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+
+        Candidate first = new Candidate(entry, distance(entry, query));
+        visited.set(entry);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.distance() > results.peek().distance()) {
+                break;
+            }
+            int[] closestLinks = linksAt(closest.node(), level);
+            for (int i = 1; i <= closestLinks[0]; i++) {
+                int neighbour = closestLinks[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float d = distance(neighbour, query);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbour, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<Match> exactSearch(float[] query, int k, int[] nodes, int count) {
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+        for (int i = 0; i < count; i++) {
+            int node = nodes[i];
+            if (deleted.get(node)) {
+                continue;
+            }
+            float d = distance(node, query);
+            if (best.size() < k) {
+                best.add(new Candidate(node, d));
+            } else if (d < best.peek().distance()) {
+                best.poll();
+                best.add(new Candidate(node, d));
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort(Comparator.comparingDouble(Candidate::distance));
+        return toMatches(sorted, k);
+    }
+
+    private List<Match> toMatches(List<Candidate> sorted, int k) {
+        List<Match> matches = new ArrayList<>(Math.min(k, sorted.size()));
+        for (Candidate candidate : sorted) {
+            if (matches.size() == k) {
+                break;
+            }
+            if (!deleted.get(candidate.node())) {
+                matches.add(new Match(segmentIds.get(candidate.node()), documentIds.get(candidate.node()),
+                        1 - candidate.distance()));
+            }
+        }
+        return matches;
+    }
+
+    private int[] linksAt(int node, int level) {
+        int[][] nodeLinks = links[node];
+        return level < nodeLinks.length ? nodeLinks[level] : new int[1];
+    }
+
+    // Cosine distance on normalized vectors: 1 - dot product
+    private float distance(int node, float[] query) {
+        FloatBuffer block = vectorBlocks.get(node / VECTORS_PER_BLOCK);
+        int offset = (node % VECTORS_PER_BLOCK) * dimension;
+        float dot = 0;
+        for (int i = 0; i < dimension; i++) {
+            dot += block.get(offset + i) * query[i];
+        }
+        return 1 - dot;
+    }
+
+    private float distance(int a, int b) {
+        FloatBuffer blockA = vectorBlocks.get(a / VECTORS_PER_BLOCK);
+        FloatBuffer blockB = vectorBlocks.get(b / VECTORS_PER_BLOCK);
+        int offsetA = (a % VECTORS_PER_BLOCK) * dimension;
+        int offsetB = (b % VECTORS_PER_BLOCK) * dimension;
+        float dot = 0;
+        for (int i = 0; i < dimension; i++) {
+            dot += blockA.get(offsetA + i) * blockB.get(offsetB + i);
+        }
+        return 1 - dot;
+    }
+
+    private float[] vectorOf(int node) {
+        float[] vector = new float[dimension];
+        vectorBlocks.get(node / VECTORS_PER_BLOCK).get((node % VECTORS_PER_BLOCK) * dimension, vector);
+        return vector;
+    }
+
+    private boolean sameVector(int node, float[] vector) {
+        FloatBuffer block = vectorBlocks.get(node / VECTORS_PER_BLOCK);
+        int offset = (node % VECTORS_PER_BLOCK) * dimension;
+        for (int i = 0; i < dimension; i++) {
+            if (block.get(offset + i) != vector[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
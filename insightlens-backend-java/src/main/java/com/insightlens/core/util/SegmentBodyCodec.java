@@ -0,0 +1,98 @@
+package com.insightlens.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encoding of stored segment bodies: raw deflate, optionally primed with a preset dictionary of
+ * text that recurs across documents, so even short segments full of boilerplate compress well.
+ * A body that would not get smaller is kept as plain UTF-8.
+ */
+public final class SegmentBodyCodec {
+
+    public static final int CODEC_PLAIN = 0;
+    public static final int CODEC_DEFLATE = 1;
+
+    // Deflate only looks back 32KB, so a longer dictionary is never used
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    public record Encoded(int codec, byte[] content) {}
+
+    private SegmentBodyCodec() {
+    }
+
+    public static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @param dictionary Preset dictionary, or null
+     */
+    public static Encoded encode(byte[] utf8, byte[] dictionary, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(utf8);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 2 + 16);
+            byte[] buffer = new byte[Math.max(64, Math.min(utf8.length, 8192))];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.size() < utf8.length ? new Encoded(CODEC_DEFLATE, out.toByteArray()) : new Encoded(CODEC_PLAIN, utf8);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param dictionary The dictionary the body was encoded with, or null
+     * @param rawSize    Size of the UTF-8 text, as recorded when encoding
+     */
+    public static String decode(int codec, byte[] content, byte[] dictionary, int rawSize) {
+        if (codec == CODEC_PLAIN) {
+            return new String(content, StandardCharsets.UTF_8);
+        }
+        if (codec != CODEC_DEFLATE) {
+            throw new IllegalArgumentException("Unknown segment body codec " + codec);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            if (dictionary != null) {
+                // Raw streams take the dictionary up front instead of asking for it
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(content);
+            byte[] utf8 = new byte[rawSize];
+            int read = 0;
+            while (read < rawSize) {
+                int n = inflater.inflate(utf8, read, rawSize - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != rawSize) {
+                throw new IllegalStateException("Segment body inflated to " + read + " bytes, expected " + rawSize);
+            }
+            return new String(utf8, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt segment body", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.insightlens.core.util;
+
+/**
+ * Fast, allocation-free approximation of subword (BPE/WordPiece) token counts.
+ * Text is split into pieces: runs of letters/digits (capped at {@value #MAX_PIECE_LENGTH} chars)
+ * and single symbols. A symbol costs one token, a word costs one token per started
+ * {@value #CHARS_PER_TOKEN} characters, which slightly over-estimates English prose so
+ * budgets computed with it stay inside the model limit.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 5;
+    private static final int MAX_PIECE_LENGTH = 64;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimateTokens(CharSequence text) {
+        int tokens = 0;
+        int pos = 0;
+        int length = text.length();
+        while (pos < length) {
+            if (text.charAt(pos) <= ' ') {
+                pos++;
+                continue;
+            }
+            int end = pieceEnd(text, pos);
+            tokens += pieceCost(end - pos);
+            pos = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the exclusive end of the piece starting at {@code start}, which must not be whitespace.
+     */
+    public static int pieceEnd(CharSequence text, int start) {
+        if (!Character.isLetterOrDigit(text.charAt(start))) {
+            return start + 1;
+        }
+        int limit = Math.min(text.length(), start + MAX_PIECE_LENGTH);
+        int end = start + 1;
+        while (end < limit && Character.isLetterOrDigit(text.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    public static int pieceCost(int pieceLength) {
+        return (pieceLength + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
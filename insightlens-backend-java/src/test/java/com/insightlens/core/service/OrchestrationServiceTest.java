@@ -0,0 +1,308 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.repository.DocumentSegmentRepository;
+import com.insightlens.core.repository.LlmAnalysisCache;
+import com.insightlens.core.repository.SegmentBodyStore;
+import com.insightlens.core.repository.SegmentTextView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link OrchestrationService} with a stub LLM analysis client and an in-memory cache: identical
+ * requests in flight share one call, failures are not cached, and map-reduce ends in one answer.
+ */
+class OrchestrationServiceTest {
+
+    private static final String DOCUMENT_ID = "doc-1";
+    private static final int TIMEOUT_SECONDS = 15;
+
+    private final DocumentSegmentRepository segmentRepository = mock(DocumentSegmentRepository.class);
+    private final Map<String, String> bodies = new HashMap<>();
+    private final InMemoryCache cache = new InMemoryCache();
+    private final StubClient client = new StubClient();
+    private final ExecutorService requests = Executors.newCachedThreadPool();
+    private OrchestrationService service;
+
+    @BeforeEach
+    void setUp() {
+        SegmentBodyStore bodyStore = new SegmentBodyStore(null, null) {
+            @Override
+            public Map<String, String> loadTexts(Collection<String> hashes) {
+                Map<String, String> texts = new HashMap<>();
+                hashes.stream().filter(bodies::containsKey).forEach(hash -> texts.put(hash, bodies.get(hash)));
+                return texts;
+            }
+        };
+        service = new OrchestrationService(segmentRepository, bodyStore, cache, client,
+                new PipelineMetrics(ObservationRegistry.NOOP, new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(service, "maxTextsPerCall", 16);
+        ReflectionTestUtils.setField(service, "maxTokensPerCall", 12_000);
+        ReflectionTestUtils.setField(service, "maxTokensPerChunk", 6_000);
+        ReflectionTestUtils.setField(service, "maxCallsInFlight", 4);
+        ReflectionTestUtils.setField(service, "modelVersion", "test");
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.release.countDown();
+        requests.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalPromptsMakeOneCall() throws Exception {
+        givenSegments(texts(5, 20));
+        client.release = new CountDownLatch(1);
+
+        Future<OrchestrationService.SegmentAnalysisResult> first = requests.submit(() -> analyzeSegments());
+        client.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Future<OrchestrationService.SegmentAnalysisResult> second = requests.submit(() -> analyzeSegments());
+        // The second request has looked up the cache, found nothing, and joined the call in flight
+        awaitLookups(2);
+        Thread.sleep(200);
+        client.release.countDown();
+
+        OrchestrationService.SegmentAnalysisResult firstResult = first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        OrchestrationService.SegmentAnalysisResult secondResult = second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(client.calls).hasValue(1);
+        assertThat(secondResult.segments()).isEqualTo(firstResult.segments());
+        assertThat(firstResult.usage().requested()).isEqualTo(5);
+        assertThat(secondResult.usage().coalesced()).isEqualTo(5);
+        assertThat(secondResult.usage().requested()).isZero();
+        assertThat(cache.outputs).hasSize(5);
+    }
+
+    @Test
+    void failedCallFailsItsWaitersAndIsNotCached() throws Exception {
+        givenSegments(texts(3, 20));
+        client.release = new CountDownLatch(1);
+        client.failure = new IllegalStateException("LLM analysis service returned 500");
+
+        Future<OrchestrationService.SegmentAnalysisResult> first = requests.submit(() -> analyzeSegments());
+        client.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Future<OrchestrationService.SegmentAnalysisResult> second = requests.submit(() -> analyzeSegments());
+        awaitLookups(2);
+        Thread.sleep(200);
+        client.release.countDown();
+
+        assertThatThrownBy(() -> first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                .hasRootCauseMessage("LLM analysis service returned 500");
+        assertThatThrownBy(() -> second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                .hasRootCauseMessage("LLM analysis service returned 500");
+        assertThat(client.calls).hasValue(1);
+        assertThat(cache.outputs).isEmpty();
+
+        // Nothing is left in flight, so the next request calls again
+        client.failure = null;
+        OrchestrationService.SegmentAnalysisResult retried = analyzeSegments();
+        assertThat(client.calls).hasValue(2);
+        assertThat(retried.usage().requested()).isEqualTo(3);
+        assertThat(cache.outputs).hasSize(3);
+    }
+
+    @Test
+    void reduceConvergesToOneOutput() {
+        // One segment per chunk, and every answer is over the chunk budget: groups of two, the worst case
+        ReflectionTestUtils.setField(service, "maxTokensPerChunk", 100);
+        client.outputWords = 150;
+        givenSegments(texts(9, 80));
+
+        OrchestrationService.DocumentAnalysisResult result =
+                service.analyzeDocument(DOCUMENT_ID, "Summarize").orElseThrow();
+
+        assertThat(result.chunks()).isEqualTo(9);
+        // 9 -> 5 -> 3 -> 2 -> 1
+        assertThat(result.reduceRounds()).isEqualTo(4);
+        assertThat(result.output()).startsWith("reduced");
+    }
+
+    @Test
+    void documentThatFitsOneChunkIsAnsweredDirectly() {
+        givenSegments(texts(4, 20));
+
+        OrchestrationService.DocumentAnalysisResult result =
+                service.analyzeDocument(DOCUMENT_ID, "Summarize").orElseThrow();
+
+        assertThat(result.chunks()).isEqualTo(1);
+        assertThat(result.reduceRounds()).isZero();
+        assertThat(result.output()).startsWith("answered");
+        assertThat(client.calls).hasValue(1);
+    }
+
+    @Test
+    void missingBodyFailsWithTheSegmentItBelongsTo() {
+        when(segmentRepository.findSegmentTexts(eq(DOCUMENT_ID), anyInt(), any(Pageable.class)))
+                .thenReturn(List.of(new Row("seg-0", 0, null, "body-0", "body-0")));
+
+        assertThatThrownBy(() -> service.analyzeSegments(DOCUMENT_ID, "Summarize", -1, 10))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("seg-0")
+                .hasMessageContaining("body body-0 is missing");
+        assertThat(client.calls).hasValue(0);
+    }
+
+    private OrchestrationService.SegmentAnalysisResult analyzeSegments() {
+        return service.analyzeSegments(DOCUMENT_ID, "Summarize", -1, 10);
+    }
+
+    private void awaitLookups(int lookups) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (cache.lookups.get() < lookups && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(cache.lookups).hasValueGreaterThanOrEqualTo(lookups);
+    }
+
+    // Keyset paging over the given texts; half the segments keep their text in segment_bodies
+    private void givenSegments(List<String> texts) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String hash = "hash-" + i;
+            if (i % 2 == 0) {
+                rows.add(new Row("seg-" + i, i, texts.get(i), null, hash));
+            } else {
+                bodies.put(hash, texts.get(i));
+                rows.add(new Row("seg-" + i, i, null, hash, hash));
+            }
+        }
+        when(segmentRepository.findSegmentTexts(eq(DOCUMENT_ID), anyInt(), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    int afterOrder = invocation.getArgument(1);
+                    Pageable pageable = invocation.getArgument(2);
+                    return rows.stream()
+                            .filter(row -> row.getSegmentOrder() > afterOrder)
+                            .limit(pageable.getPageSize())
+                            .toList();
+                });
+    }
+
+    private static List<String> texts(int count, int words) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            texts.add(words("segment" + i, words));
+        }
+        return texts;
+    }
+
+    private static String words(String prefix, int count) {
+        StringBuilder text = new StringBuilder(prefix);
+        for (int i = 1; i < count; i++) {
+            text.append(" word").append(i);
+        }
+        return text.toString();
+    }
+
+    private record Row(String id, int order, String text, String bodyHash, String contentHash)
+            implements SegmentTextView {
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public int getSegmentOrder() {
+            return order;
+        }
+
+        @Override
+        public String getSegmentText() {
+            return text;
+        }
+
+        @Override
+        public String getBodyHash() {
+            return bodyHash;
+        }
+
+        @Override
+        public String getContentHash() {
+            return contentHash;
+        }
+    }
+
+    private static final class InMemoryCache extends LlmAnalysisCache {
+
+        private final Map<String, String> outputs = new ConcurrentHashMap<>();
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        InMemoryCache() {
+            super(null);
+        }
+
+        @Override
+        public Map<String, String> find(Collection<String> cacheKeys) {
+            lookups.incrementAndGet();
+            Map<String, String> found = new HashMap<>();
+            cacheKeys.stream().filter(outputs::containsKey).forEach(key -> found.put(key, outputs.get(key)));
+            return found;
+        }
+
+        @Override
+        public void store(List<Entry> entries) {
+            entries.forEach(entry -> outputs.putIfAbsent(entry.cacheKey(), entry.output()));
+        }
+    }
+
+    /**
+     * Answers every text, after {@link #release} when one is set; "reduced" for a reduce
+     * instruction, "mapped" for a map instruction, "answered" otherwise.
+     */
+    private static final class StubClient extends LlmAnalysisServiceClient {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch release = new CountDownLatch(0);
+        private volatile RuntimeException failure;
+        private volatile int outputWords = 5;
+
+        StubClient() {
+            super(null, null);
+        }
+
+        @Override
+        public Mono<List<String>> analyze(String instruction, List<String> texts) {
+            return Mono.fromCallable(() -> {
+                calls.incrementAndGet();
+                started.countDown();
+                if (!release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Stub call was never released");
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                String kind = instruction.startsWith("The text holds partial answers") ? "reduced"
+                        : instruction.startsWith("The text is one part") ? "mapped" : "answered";
+                return texts.stream()
+                        .map(text -> words(kind + "-" + Integer.toHexString(text.hashCode()), outputWords))
+                        .toList();
+            }).subscribeOn(Schedulers.boundedElastic());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.config.TikaProperties;
+import com.insightlens.core.model.Document;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.parser.ParseContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link ParallelPdfExtractor} on a generated PDF with more page ranges than are parsed at once:
+ * the text must come out in the order of a sequential parse of the whole file.
+ */
+class ParallelPdfExtractorTest {
+
+    private static final int PAGES = 60;
+    private static final int PAGES_PER_RANGE = 5;
+    private static final int LINES_PER_PAGE = 50;
+    private static final Pattern PAGE_MARKER = Pattern.compile("page-(\\d+)-line-(\\d+)");
+
+    @TempDir
+    Path tempDir;
+
+    private final TikaParserRegistry registry = new TikaParserRegistry(new TikaProperties());
+    private final Document document = Document.builder()
+            .id("parallel-pdf")
+            .originalFileName("report.pdf")
+            .fileContentType("application/pdf")
+            .build();
+    private ParallelPdfExtractor extractor;
+    private Path pdf;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Two threads, so at most four of the twelve ranges are in flight
+        extractor = new ParallelPdfExtractor(registry, 2);
+        ReflectionTestUtils.setField(extractor, "pagesPerRange", PAGES_PER_RANGE);
+        pdf = writePdf(tempDir.resolve("report.pdf"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        extractor.shutdown();
+        registry.close();
+    }
+
+    @Test
+    void emitsTextInTheOrderOfASequentialParse() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        extractor.extract(document, pdf, sink, 1);
+
+        assertThat(sink.startPages).containsExactly(1, 6, 11, 16, 21, 26, 31, 36, 41, 46, 51, 56);
+        assertThat(markers(sink.chunks)).isEqualTo(markers(sequentialChunks()));
+        assertThat(markers(sink.chunks)).hasSize(PAGES * LINES_PER_PAGE);
+        assertThat(normalized(sink.chunks)).isEqualTo(normalized(sequentialChunks()));
+    }
+
+    @Test
+    void resumesAtTheRequestedPage() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        extractor.extract(document, pdf, sink, 26);
+
+        List<String> expected = markers(sequentialChunks());
+        int firstOfPage26 = expected.indexOf("page-26-line-1");
+        assertThat(sink.startPages).containsExactly(26, 31, 36, 41, 46, 51, 56);
+        assertThat(markers(sink.chunks)).isEqualTo(expected.subList(firstOfPage26, expected.size()));
+    }
+
+    @Test
+    void refusesToResumeAPdfTooShortToSplit() {
+        ReflectionTestUtils.setField(extractor, "pagesPerRange", PAGES);
+
+        assertThatThrownBy(() -> extractor.extract(document, pdf, new RecordingSink(), 2))
+                .isInstanceOf(TikaException.class)
+                .hasMessageContaining("Cannot resume");
+    }
+
+    private List<String> sequentialChunks() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        try (InputStream stream = TikaInputStream.get(pdf)) {
+            registry.parserFor(document).parse(stream, new StreamingSegmentContentHandler(document, sink),
+                    registry.metadataFor(document), new ParseContext());
+        }
+        return sink.chunks;
+    }
+
+    private static List<String> markers(List<String> chunks) {
+        List<String> markers = new ArrayList<>();
+        for (String chunk : chunks) {
+            Matcher matcher = PAGE_MARKER.matcher(chunk);
+            while (matcher.find()) {
+                markers.add(matcher.group());
+            }
+        }
+        return markers;
+    }
+
+    // Ranges start new chunks, so only the text, not where it was cut, has to match
+    private static String normalized(List<String> chunks) {
+        return String.join(" ", chunks).replaceAll("\\s+", " ");
+    }
+
+    private static Path writePdf(Path file) throws Exception {
+        try (PDDocument pdf = new PDDocument()) {
+            for (int page = 1; page <= PAGES; page++) {
+                PDPage pdPage = new PDPage(PDRectangle.A4);
+                pdf.addPage(pdPage);
+                try (PDPageContentStream content = new PDPageContentStream(pdf, pdPage)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 790);
+                    for (int line = 1; line <= LINES_PER_PAGE; line++) {
+                        content.showText("page-" + page + "-line-" + line + " the queue leases a batch of segments");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            pdf.save(file.toFile());
+        }
+        assertThat(Files.size(file)).isPositive();
+        return file;
+    }
+
+    private static final class RecordingSink implements SegmentSink {
+
+        private final List<String> chunks = new ArrayList<>();
+        private final List<Integer> startPages = new ArrayList<>();
+
+        @Override
+        public void accept(String chunk) {
+            chunks.add(chunk);
+        }
+
+        @Override
+        public void startPage(int page) {
+            startPages.add(page);
+        }
+    }
+}
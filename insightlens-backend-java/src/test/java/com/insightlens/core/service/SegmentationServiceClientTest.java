@@ -0,0 +1,202 @@
+package com.insightlens.core.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.insightlens.core.config.RemoteServiceProperties;
+import com.insightlens.core.model.DocumentSegment;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link SegmentationServiceClient#streamSegments(String, BlockingChunkPublisher)} against a local
+ * NDJSON stub, with a thread pushing chunks the way a parse does.
+ */
+class SegmentationServiceClientTest {
+
+    private static final int CHUNKS = 200;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService parseThreads = Executors.newCachedThreadPool();
+    private HttpServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+        parseThreads.shutdownNow();
+    }
+
+    @Test
+    void streamsOneSegmentPerChunkInOrder() throws Exception {
+        SegmentationServiceClient client = clientFor(startServer(this::echoSegments));
+        BlockingChunkPublisher chunks = new BlockingChunkPublisher(QUEUE_CAPACITY);
+
+        CompletableFuture<List<DocumentSegment>> segments = client.streamSegments("doc-1", chunks)
+                .collectList()
+                .toFuture();
+        CompletableFuture<Void> parse = parse(chunks);
+
+        List<DocumentSegment> received = segments.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        parse.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        assertThat(received).hasSize(CHUNKS);
+        for (int i = 0; i < CHUNKS; i++) {
+            assertThat(received.get(i).getSegmentOrder()).isEqualTo(i);
+            assertThat(received.get(i).getSegmentText()).isEqualTo("chunk " + i);
+        }
+    }
+
+    @Test
+    void refusedConnectionUnblocksTheParsingThread() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        SegmentationServiceClient client = clientFor("http://localhost:" + closedPort);
+        BlockingChunkPublisher chunks = new BlockingChunkPublisher(QUEUE_CAPACITY);
+
+        CompletableFuture<List<DocumentSegment>> segments = client.streamSegments("doc-1", chunks)
+                .collectList()
+                .toFuture();
+        CompletableFuture<Void> parse = parse(chunks);
+
+        assertThatThrownBy(() -> segments.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> parse.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void requestRejectedBeforeTheBodyIsReadUnblocksTheParsingThread() throws Exception {
+        SegmentationServiceClient client = clientFor(startServer(exchange -> {
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+        }));
+        BlockingChunkPublisher chunks = new BlockingChunkPublisher(QUEUE_CAPACITY);
+
+        CompletableFuture<List<DocumentSegment>> segments = client.streamSegments("doc-1", chunks)
+                .collectList()
+                .toFuture();
+        // A finite body may fit in the socket buffers before the response arrives; this one only ends when cancelled
+        CompletableFuture<Void> parse = parseUntilCancelled(chunks);
+
+        assertThatThrownBy(() -> segments.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> parse.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void exchangeRejectedByAnOpenBreakerNeverStartsTheParse() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        RemoteServiceProperties.Profile profile = new RemoteServiceProperties.Profile();
+        profile.setWindowSize(1);
+        profile.setMinimumCalls(1);
+        SegmentationServiceClient client = clientFor("http://localhost:" + closedPort, profile);
+
+        // One refused connection opens the breaker
+        BlockingChunkPublisher first = new BlockingChunkPublisher(QUEUE_CAPACITY);
+        assertThatThrownBy(() -> client.streamSegments("doc-1", first).blockLast(TIMEOUT))
+                .isInstanceOf(RuntimeException.class);
+
+        BlockingChunkPublisher chunks = new BlockingChunkPublisher(QUEUE_CAPACITY);
+        CompletableFuture<List<DocumentSegment>> segments = client.streamSegments("doc-2", chunks)
+                .collectList()
+                .toFuture();
+        CompletableFuture<Boolean> admitted = CompletableFuture.supplyAsync(chunks::awaitSubscribed, parseThreads);
+
+        assertThat(admitted.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isFalse();
+        assertThatThrownBy(() -> segments.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(RemoteServiceUnavailableException.class);
+    }
+
+    // Far more chunks than the queue holds, so the thread blocks unless the exchange reads them
+    private CompletableFuture<Void> parse(BlockingChunkPublisher chunks) {
+        return CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < CHUNKS; i++) {
+                chunks.accept("chunk " + i);
+            }
+            chunks.complete();
+        }, parseThreads);
+    }
+
+    private CompletableFuture<Void> parseUntilCancelled(BlockingChunkPublisher chunks) {
+        return CompletableFuture.runAsync(() -> {
+            for (int i = 0; ; i++) {
+                chunks.accept("chunk " + i);
+            }
+        }, parseThreads);
+    }
+
+    // Reads the whole NDJSON request, then answers one segment per chunk
+    private void echoSegments(HttpExchange exchange) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        List<String> texts = reader.lines()
+                .filter(line -> !line.isBlank())
+                .map(line -> {
+                    try {
+                        JsonNode request = objectMapper.readTree(line);
+                        return request.get("text").asText();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .toList();
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < texts.size(); i++) {
+                out.write(objectMapper.writeValueAsBytes(Map.of("segmentOrder", i, "text", texts.get(i))));
+                out.write('\n');
+            }
+        }
+    }
+
+    private String startServer(HttpHandler handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/segment/stream", handler);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private static SegmentationServiceClient clientFor(String baseUrl) {
+        return clientFor(baseUrl, new RemoteServiceProperties.Profile());
+    }
+
+    private static SegmentationServiceClient clientFor(String baseUrl, RemoteServiceProperties.Profile profile) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RemoteServiceGuard guard = new RemoteServiceGuard("segmentation", profile, meterRegistry);
+        return new SegmentationServiceClient(WebClient.create(baseUrl), guard,
+                new PipelineMetrics(ObservationRegistry.NOOP, meterRegistry));
+    }
+}
@@ -0,0 +1,186 @@
+package com.insightlens.core.service;
+
+import com.insightlens.core.model.Document;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.txt.TXTParser;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Where {@link StreamingSegmentContentHandler} cuts chunks, and its heap on a document far larger
+ * than the heap it may use.
+ */
+class StreamingSegmentContentHandlerTest {
+
+    private static final long DOCUMENT_BYTES = 384L << 20;
+    private static final long SAMPLE_EVERY_CHARACTERS = 16L << 20;
+    // Headroom for the parser, the sink's samples and GC noise; the text itself is ~768 MB as UTF-16
+    private static final long MAX_HEAP_GROWTH_BYTES = 48L << 20;
+
+    @Test
+    void cutsAtTheFirstBlockBreakPastTheThreshold() throws Exception {
+        List<String> chunks = new ArrayList<>();
+        StreamingSegmentContentHandler handler = new StreamingSegmentContentHandler(
+                Document.builder().id("blocks").build(), chunks::add);
+
+        // 3,000 characters per paragraph: the fourth closing </p> takes the buffer past 10,000
+        List<String> paragraphs = new ArrayList<>();
+        handler.startDocument();
+        for (int i = 0; i < 10; i++) {
+            String paragraph = paragraph(i, 3_000);
+            paragraphs.add(paragraph);
+            handler.startElement("", "p", "p", null);
+            // Inline elements and split character events don't end a block
+            characters(handler, paragraph.substring(0, 1_000));
+            handler.startElement("", "b", "b", null);
+            characters(handler, paragraph.substring(1_000, 2_000));
+            handler.endElement("", "b", "b");
+            characters(handler, paragraph.substring(2_000));
+            handler.endElement("", "p", "p");
+        }
+        handler.endDocument();
+
+        assertThat(chunks).containsExactly(
+                String.join("\n\n", paragraphs.subList(0, 4)),
+                String.join("\n\n", paragraphs.subList(4, 8)),
+                String.join("\n\n", paragraphs.subList(8, 10)));
+    }
+
+    @Test
+    void cutsTextWithoutBlockBreaksAtWhitespaceBeforeTheHardCap() throws Exception {
+        List<String> chunks = new ArrayList<>();
+        StreamingSegmentContentHandler handler = new StreamingSegmentContentHandler(
+                Document.builder().id("no-blocks").build(), chunks::add);
+
+        String text = paragraph(1, 100_000);
+        handler.startDocument();
+        for (int offset = 0; offset < text.length(); offset += 1_000) {
+            characters(handler, text.substring(offset, Math.min(offset + 1_000, text.length())));
+        }
+        handler.endDocument();
+
+        assertThat(chunks).hasSize(3);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.length()).isLessThanOrEqualTo(40_000));
+        // No word was split: the chunks only lost the whitespace they were cut at
+        assertThat(String.join(" ", chunks)).isEqualTo(text);
+    }
+
+    @Test
+    @Tag("large")
+    void heapStaysFlatWhileParsingAMultiHundredMegabyteDocument() throws Exception {
+        Document document = Document.builder().id("synthetic").build();
+        HeapSamplingSink sink = new HeapSamplingSink();
+        StreamingSegmentContentHandler handler = new StreamingSegmentContentHandler(document, sink);
+
+        long baseline = usedHeapAfterGc();
+        try (InputStream content = new SyntheticTextStream(DOCUMENT_BYTES)) {
+            new TXTParser().parse(content, handler, new Metadata(), new ParseContext());
+        }
+
+        long peakGrowth = sink.samples.stream().mapToLong(Long::longValue).max().orElseThrow() - baseline;
+
+        // All text came through, in chunks, and nothing of it was kept
+        assertThat(handler.getCharactersEmitted()).isGreaterThan(DOCUMENT_BYTES * 9 / 10);
+        assertThat(handler.getChunkCount()).isGreaterThan((int) (DOCUMENT_BYTES / 50_000));
+        assertThat(sink.samples).hasSizeGreaterThan(10);
+        assertThat(peakGrowth).isLessThan(MAX_HEAP_GROWTH_BYTES);
+    }
+
+    private static void characters(StreamingSegmentContentHandler handler, String text) throws Exception {
+        handler.characters(text.toCharArray(), 0, text.length());
+    }
+
+    // Words separated by single spaces, exactly length characters long, not ending in whitespace
+    private static String paragraph(int number, int length) {
+        StringBuilder text = new StringBuilder("Paragraph ").append(number).append('.');
+        for (int i = 0; text.length() < length; i++) {
+            text.append(' ').append(SyntheticTextStream.WORDS[(number * 31 + i * 7) % SyntheticTextStream.WORDS.length]);
+        }
+        text.setLength(length);
+        while (Character.isWhitespace(text.charAt(text.length() - 1))) {
+            text.setCharAt(text.length() - 1, 'x');
+        }
+        return text.toString();
+    }
+
+    // Discards chunks like a sink that persists and forgets them, sampling retained heap as they pass
+    private static final class HeapSamplingSink implements SegmentSink {
+
+        private final List<Long> samples = new ArrayList<>();
+        private long characters;
+        private long nextSampleAt = SAMPLE_EVERY_CHARACTERS;
+
+        @Override
+        public void accept(String chunk) {
+            characters += chunk.length();
+            if (characters >= nextSampleAt) {
+                samples.add(usedHeapAfterGc());
+                nextSampleAt += SAMPLE_EVERY_CHARACTERS;
+            }
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Plain text of paragraphs separated by blank lines, generated as it is read.
+     */
+    private static final class SyntheticTextStream extends InputStream {
+
+        private static final String[] WORDS = ("segment pipeline extraction parser document embedding "
+                + "vector index tenant queue lease heartbeat batch storage").split(" ");
+
+        private final long size;
+        private long position;
+        private byte[] paragraph = new byte[0];
+        private int offset;
+        private int paragraphs;
+
+        SyntheticTextStream(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) {
+            if (position >= size) {
+                return -1;
+            }
+            if (offset == paragraph.length) {
+                paragraph = nextParagraph();
+                offset = 0;
+            }
+            int n = (int) Math.min(Math.min(len, paragraph.length - offset), size - position);
+            System.arraycopy(paragraph, offset, buffer, off, n);
+            offset += n;
+            position += n;
+            return n;
+        }
+
+        private byte[] nextParagraph() {
+            StringBuilder text = new StringBuilder("Paragraph ").append(++paragraphs).append('.');
+            int words = 40 + paragraphs % 200;
+            for (int i = 0; i < words; i++) {
+                text.append(' ').append(WORDS[(paragraphs * 31 + i * 7) % WORDS.length]);
+            }
+            return text.append(".\n\n").toString().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+}
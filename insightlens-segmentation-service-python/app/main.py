@@ -1,4 +1,8 @@
-from fastapi import FastAPI, HTTPException
+import json
+
+from fastapi import FastAPI, HTTPException, Request
+from fastapi.concurrency import run_in_threadpool
+from fastapi.responses import StreamingResponse
 from loguru import logger
 import uvicorn
 
@@ -44,6 +48,39 @@ async def segment_text(request: SegmentationRequest):
             detail=f"Failed to process document: {str(e)}"
         )
 
+@app.post("/segment/stream")
+async def segment_text_stream(request: Request):
+    """
+    Streaming variant of /segment using NDJSON on both sides.
+    Each request line is a SegmentationRequest holding one chunk of the document;
+    each response line is a TextSegment, emitted as soon as its chunk is segmented.
+    Segment order continues across chunks.
+    """
+    async def segments():
+        order = 0
+        pending = b""
+        async for data in request.stream():
+            pending += data
+            while b"\n" in pending:
+                line, pending = pending.split(b"\n", 1)
+                for segment in await _segment_line(line, order):
+                    order += 1
+                    yield segment
+        for segment in await _segment_line(pending, order):
+            yield segment
+
+    return StreamingResponse(segments(), media_type="application/x-ndjson")
+
+async def _segment_line(line: bytes, first_order: int) -> list:
+    if not line.strip():
+        return []
+    chunk = SegmentationRequest(**json.loads(line))
+    segments = await run_in_threadpool(segmenter.segment_text, chunk.text)
+    return [
+        TextSegment(segmentOrder=first_order + i, text=text).model_dump_json() + "\n"
+        for i, (_, text) in enumerate(segments)
+    ]
+
 if __name__ == "__main__":
     uvicorn.run(
         "app.main:app",